@@ -0,0 +1,123 @@
+package com.example.ide.benchmarks;
+
+import com.example.ide.assembler.MachineCodeWriter;
+import com.example.ide.assembler.OutputFormat;
+import com.example.ide.assembler.SourceText;
+import com.example.ide.assembler.RISCV.AssemblerError;
+import com.example.ide.assembler.RISCV.Instruction;
+import com.example.ide.assembler.RISCV.Lexer;
+import com.example.ide.assembler.RISCV.Parser;
+import com.example.ide.assembler.RISCV.RiscVAssembler;
+import com.example.ide.assembler.RISCV.TokenBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of each assembler phase, and of a whole file, in source lines per second.
+// Run with -prof gc (the default when started through main) to get the allocation rate per phase.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssemblerBenchmark {
+
+    @Param({"1000", "100000"})
+    public int lines;
+
+    @Param({"nn", "mixed"})
+    public String mix;
+
+    private String source;
+    private List<Instruction> instructions;
+    private Path sourceFile;
+    private Path outputFile;
+
+    // Counts source lines, so JMH reports lines/s next to the per-call score
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class LineCounter {
+        public long lines;
+    }
+
+    // The parser appends operand lists to the token buffer, so every parse gets a freshly lexed one
+    @State(Scope.Thread)
+    public static class LexedProgram {
+        TokenBuffer tokens;
+        List<AssemblerError> errors;
+
+        @Setup(Level.Invocation)
+        public void lex(AssemblerBenchmark program) {
+            errors = new ArrayList<>();
+            tokens = new Lexer(program.source, errors).tokenize();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        source = ProgramGenerator.generate(lines, mix);
+        List<AssemblerError> errors = new ArrayList<>();
+        instructions = new Parser(errors).parse(new Lexer(source, errors).tokenize());
+        Instruction.encode(instructions);
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Generated program does not assemble: " + errors.get(0));
+        }
+        sourceFile = Files.createTempFile("benchmark-" + mix + "-" + lines, ".asm");
+        Files.writeString(sourceFile, source);
+        outputFile = Files.createTempFile("benchmark-" + mix + "-" + lines, OutputFormat.RAW.getExtension());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(sourceFile);
+        Files.deleteIfExists(outputFile);
+    }
+
+    @Benchmark
+    public TokenBuffer lex(LineCounter counter) {
+        counter.lines += lines;
+        return new Lexer(source, new ArrayList<>()).tokenize();
+    }
+
+    @Benchmark
+    public List<Instruction> parse(LexedProgram program, LineCounter counter) {
+        counter.lines += lines;
+        return new Parser(program.errors).parse(program.tokens);
+    }
+
+    @Benchmark
+    public int[] encode(LineCounter counter) {
+        counter.lines += lines;
+        return Instruction.encode(instructions);
+    }
+
+    @Benchmark
+    public List<AssemblerError> assembleFile(LineCounter counter) throws IOException {
+        counter.lines += lines;
+        List<AssemblerError> errors = new ArrayList<>();
+        int[] words = RiscVAssembler.assemble(SourceText.open(sourceFile), errors);
+        if (words != null) {
+            MachineCodeWriter.write(outputFile, words, OutputFormat.RAW);
+        }
+        return errors;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AssemblerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
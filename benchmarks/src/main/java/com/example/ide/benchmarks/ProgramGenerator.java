@@ -0,0 +1,72 @@
+package com.example.ide.benchmarks;
+
+import java.util.Random;
+
+// Generates synthetic, error-free assembly programs of a given size and instruction mix.
+// Output is deterministic for a given size and mix, so runs are comparable.
+public class ProgramGenerator {
+
+    // "nn": the LUI/FMUL/FADD/FSUB matrix kernel style of testing/nn.asm
+    // "integer": R- and I-type integer arithmetic
+    // "mixed": every instruction format the assembler encodes, including loads, stores, branches and jumps
+    public static String generate(int lines, String mix) {
+        Random random = new Random(42);
+        StringBuilder program = new StringBuilder(lines * 16);
+        for (int i = 0; i < lines; i++) {
+            switch (mix) {
+                case "nn" -> nnLine(program, random, i);
+                case "integer" -> integerLine(program, random);
+                case "mixed" -> mixedLine(program, random);
+                default -> throw new IllegalArgumentException("Unknown instruction mix: " + mix);
+            }
+            program.append('\n');
+        }
+        return program.toString();
+    }
+
+    private static void nnLine(StringBuilder program, Random random, int index) {
+        // A block of constants followed by multiply/accumulate, like the kernels in nn.asm
+        switch (index % 16) {
+            case 0, 1, 2, 3, 4, 5, 6, 7 -> program.append("LUI ").append(register(random)).append(',').append(random.nextInt(16));
+            case 8, 9, 10, 11 -> threeRegisters(program.append("FMUL "), random);
+            case 12, 13, 14 -> threeRegisters(program.append("FADD "), random);
+            default -> threeRegisters(program.append("FSUB "), random);
+        }
+    }
+
+    private static void integerLine(StringBuilder program, Random random) {
+        String[] rType = {"ADD", "SUB", "XOR", "OR", "AND"};
+        String[] iType = {"ADDI", "XORI", "ORI", "ANDI"};
+        if (random.nextBoolean()) {
+            threeRegisters(program.append(rType[random.nextInt(rType.length)]).append(' '), random);
+        } else {
+            program.append(iType[random.nextInt(iType.length)]).append(' ')
+                    .append(register(random)).append(", ").append(register(random)).append(", ")
+                    .append(random.nextInt(4096) - 2048);
+        }
+    }
+
+    private static void mixedLine(StringBuilder program, Random random) {
+        switch (random.nextInt(8)) {
+            case 0 -> integerLine(program, random);
+            case 1 -> program.append("LW ").append(register(random)).append(", ").append(register(random))
+                    .append(", ").append(random.nextInt(256));
+            case 2 -> program.append("SW ").append(random.nextInt(256)).append('(').append(register(random))
+                    .append("), ").append(register(random));
+            case 3 -> program.append(random.nextBoolean() ? "BEQ " : "BNE ").append(random.nextInt(64) * 2 - 64)
+                    .append(", ").append(register(random)).append(", ").append(register(random));
+            case 4 -> program.append("JAL ").append(register(random)).append(", 0x").append(Integer.toHexString(random.nextInt(2048) * 2));
+            case 5 -> program.append("LUI ").append(register(random)).append(", ").append(random.nextFloat() * 100);
+            case 6 -> threeRegisters(program.append(random.nextBoolean() ? "FMIN " : "FMAX "), random);
+            default -> threeRegisters(program.append("FDIV "), random);
+        }
+    }
+
+    private static void threeRegisters(StringBuilder program, Random random) {
+        program.append(register(random)).append(',').append(register(random)).append(',').append(register(random));
+    }
+
+    private static String register(Random random) {
+        return "X" + (1 + random.nextInt(31));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.ide;
+
+import com.example.ide.assembler.BuildCache;
+import com.example.ide.assembler.OutputFormat;
+import com.example.ide.assembler.RISCV.AssemblerError;
+import com.example.ide.assembler.RISCV.IncrementalAssembler;
+import com.example.ide.assembler.RISCV.RiscVAssembler;
+import com.example.ide.editor.CodeEditor;
+import com.example.ide.editor.Document;
+import javafx.application.Platform;
+import javafx.scene.control.Tab;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+// Runs the assembler for the open tabs off the JavaFX application thread.
+// Edits are debounced: the tab is re-checked once typing pauses, on a virtual thread, through its incremental cache.
+// A run whose text has been edited again in the meantime is dropped, and each finished run is published back to the
+// UI in a single Platform.runLater. Only the explicit Assemble command writes output files, through the BuildCache.
+public class AssemblyService {
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    // Tab state; the map and the pending field are only touched on the FX thread
+    private static final class TabState {
+        final IncrementalAssembler assembler = new IncrementalAssembler();
+        final ReentrantLock lock = new ReentrantLock(); // one run per tab at a time
+        final AtomicLong generation = new AtomicLong(); // bumped on every edit
+        ScheduledFuture<?> pending;
+    }
+
+    private final Map<Tab, TabState> tabs = new HashMap<>();
+    private final ScheduledExecutorService debouncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "assembly-debouncer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final BiConsumer<Tab, List<AssemblerError>> diagnosticsListener;
+
+    // diagnosticsListener is called on the FX thread with the errors of each as-you-type check
+    public AssemblyService(BiConsumer<Tab, List<AssemblerError>> diagnosticsListener) {
+        this.diagnosticsListener = diagnosticsListener;
+    }
+
+    // Start checking the tab's editor as it is edited; each check reads a snapshot of the document, which costs a copy
+    // of its piece list rather than of its text
+    public void watch(Tab tab, CodeEditor editor) {
+        TabState state = tabs.computeIfAbsent(tab, key -> new TabState());
+        Document document = editor.getDocument();
+        document.addLineChangeListener(change -> scheduleCheck(tab, state, document.snapshot()));
+        scheduleCheck(tab, state, document.snapshot());
+    }
+
+    // Stop tracking a closed tab and drop its cache
+    public void forget(Tab tab) {
+        TabState state = tabs.remove(tab);
+        if (state != null) {
+            state.generation.incrementAndGet();
+            if (state.pending != null) {
+                state.pending.cancel(false);
+            }
+        }
+    }
+
+    // Assemble the text and write the output file into the build directory in the background; the future completes
+    // with the errors. text must not change meanwhile (pass a Document snapshot).
+    public CompletableFuture<List<AssemblerError>> assemble(CharSequence text, String filePath, BuildCache cache,
+                                                            OutputFormat format) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                List<AssemblerError> errors = RiscVAssembler.assemble(text, filePath, cache, error -> { }, format);
+                cache.flush();
+                return errors;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, workers);
+    }
+
+    private void scheduleCheck(Tab tab, TabState state, CharSequence text) {
+        long generation = state.generation.incrementAndGet();
+        if (state.pending != null) {
+            state.pending.cancel(false);
+        }
+        state.pending = debouncer.schedule(() -> workers.execute(() -> check(tab, state, generation, text)),
+                DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void check(Tab tab, TabState state, long generation, CharSequence text) {
+        List<AssemblerError> errors;
+        state.lock.lock();
+        try {
+            if (state.generation.get() != generation) {
+                return; // edited again while waiting, a newer check is on its way
+            }
+            errors = state.assembler.update(text);
+        } finally {
+            state.lock.unlock();
+        }
+        Platform.runLater(() -> {
+            if (state.generation.get() == generation) {
+                diagnosticsListener.accept(tab, errors);
+            }
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.ide;
+
+import com.example.ide.assembler.RISCV.AssemblerError;
+import javafx.scene.control.Tab;
+
+import java.nio.file.Path;
+
+// One row of the Problems panel: an assembler error and where it came from, either an open editor tab (as-you-type
+// checks, Assemble, Run) or a file on disk (Build project)
+public class Diagnostic {
+    private final AssemblerError error;
+    private final Tab tab;   // null for a file that may not be open
+    private final Path file; // null for an editor tab that was never saved
+
+    public Diagnostic(AssemblerError error, Tab tab, Path file) {
+        this.error = error;
+        this.tab = tab;
+        this.file = file;
+    }
+
+    public AssemblerError getError() {
+        return error;
+    }
+
+    public int getLine() {
+        return error.getLine();
+    }
+
+    public String getMessage() {
+        return error.getMessage();
+    }
+
+    public Tab getTab() {
+        return tab;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // File name, or the tab title for unsaved text
+    public String getSource() {
+        if (file != null) {
+            return file.getFileName().toString();
+        }
+        return tab != null ? tab.getText() : "";
+    }
+}
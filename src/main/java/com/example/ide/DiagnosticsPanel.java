@@ -0,0 +1,84 @@
+package com.example.ide;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.BorderPane;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// The Problems tab: assembler errors as rows of a TableView instead of text.
+// The table only creates cells for the rows on screen, and a new set of errors replaces the rows in one change, so
+// showing thousands of errors costs about as much as showing a screenful. At most MAX_SHOWN rows are kept; the
+// summary line says how many more there were. Sorting by a column header reorders the rows through a SortedList
+// without touching the error list; clicking a row (or pressing Enter on it) hands it to the jump handler.
+public class DiagnosticsPanel extends BorderPane {
+    private static final int MAX_SHOWN = 10_000;
+
+    private final ObservableList<Diagnostic> rows = FXCollections.observableArrayList();
+    private final TableView<Diagnostic> table = new TableView<>();
+    private final Label summary = new Label();
+    private Consumer<Diagnostic> jumpHandler = diagnostic -> { };
+
+    public DiagnosticsPanel() {
+        TableColumn<Diagnostic, String> source = new TableColumn<>("File");
+        source.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getSource()));
+        source.setPrefWidth(140);
+        TableColumn<Diagnostic, Integer> line = new TableColumn<>("Line");
+        line.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getLine()));
+        line.setPrefWidth(60);
+        TableColumn<Diagnostic, String> message = new TableColumn<>("Message");
+        message.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getMessage()));
+        message.setPrefWidth(600);
+        table.getColumns().setAll(List.of(source, line, message));
+
+        SortedList<Diagnostic> sorted = new SortedList<>(rows);
+        sorted.comparatorProperty().bind(table.comparatorProperty());
+        table.setItems(sorted);
+        table.setPlaceholder(new Label("No problems"));
+        table.setRowFactory(view -> {
+            TableRow<Diagnostic> row = new TableRow<>();
+            row.setOnMouseClicked(event -> {
+                if (!row.isEmpty()) {
+                    jumpHandler.accept(row.getItem());
+                }
+            });
+            return row;
+        });
+        table.setOnKeyPressed(event -> {
+            Diagnostic selected = table.getSelectionModel().getSelectedItem();
+            if (event.getCode() == KeyCode.ENTER && selected != null) {
+                jumpHandler.accept(selected);
+            }
+        });
+
+        setCenter(table);
+        setBottom(summary);
+    }
+
+    // Called with the row the user picked
+    public void setOnJump(Consumer<Diagnostic> jumpHandler) {
+        this.jumpHandler = jumpHandler;
+    }
+
+    // Replaces the rows; diagnostics beyond MAX_SHOWN are only counted
+    public void show(List<Diagnostic> diagnostics) {
+        int shown = Math.min(diagnostics.size(), MAX_SHOWN);
+        rows.setAll(diagnostics.subList(0, shown));
+        if (diagnostics.isEmpty()) {
+            summary.setText("");
+        } else if (shown < diagnostics.size()) {
+            summary.setText("Showing the first " + shown + " of " + diagnostics.size() + " problems");
+        } else {
+            summary.setText(diagnostics.size() + " problem(s)");
+        }
+    }
+}
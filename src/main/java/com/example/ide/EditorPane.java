@@ -0,0 +1,25 @@
+package com.example.ide;
+
+import com.example.ide.editor.CodeEditor;
+import javafx.scene.layout.BorderPane;
+
+// Content of an editor tab: the code editor, with the execution heat gutter on its left
+public class EditorPane extends BorderPane {
+    private final CodeEditor editor;
+    private final HeatGutter gutter;
+
+    public EditorPane(CodeEditor editor) {
+        this.editor = editor;
+        this.gutter = new HeatGutter(editor);
+        setCenter(editor);
+        setLeft(gutter);
+    }
+
+    public CodeEditor getEditor() {
+        return editor;
+    }
+
+    public HeatGutter getGutter() {
+        return gutter;
+    }
+}
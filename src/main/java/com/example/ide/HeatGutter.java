@@ -0,0 +1,86 @@
+package com.example.ide;
+
+import com.example.ide.editor.CodeEditor;
+import com.example.ide.simulator.SourceProfile;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+
+// Strip beside an editor that shades every line by how often it executed in the last profiled run, from yellow
+// (rarely) to red (the hottest line), on a log scale. Only the visible lines are drawn, following the editor's
+// scrolling; hovering a line shows its counts.
+public class HeatGutter extends Region {
+    private static final double WIDTH = 12;
+
+    private final CodeEditor editor;
+    private final Canvas canvas = new Canvas(WIDTH, 0);
+    private final Tooltip tooltip = new Tooltip();
+    private SourceProfile profile;
+
+    public HeatGutter(CodeEditor editor) {
+        this.editor = editor;
+        setMinWidth(WIDTH);
+        setPrefWidth(WIDTH);
+        getChildren().add(canvas);
+        editor.scrollTopProperty().addListener(observable -> redraw());
+        editor.fontProperty().addListener(observable -> redraw());
+        heightProperty().addListener(observable -> {
+            canvas.setHeight(getHeight());
+            redraw();
+        });
+        setOnMouseMoved(event -> {
+            int line = lineAt(event.getY());
+            if (profile != null && profile.getExecutions(line) > 0) {
+                tooltip.setText(describe(line));
+                tooltip.show(this, event.getScreenX() + 10, event.getScreenY() + 10);
+            } else {
+                tooltip.hide();
+            }
+        });
+        setOnMouseExited(event -> tooltip.hide());
+    }
+
+    // Shows a new profile; null clears the gutter
+    public void setProfile(SourceProfile profile) {
+        this.profile = profile;
+        redraw();
+    }
+
+    private void redraw() {
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (profile == null || profile.getMaxExecutions() == 0) {
+            return;
+        }
+        double lineHeight = editor.getLineHeight();
+        double top = -editor.getScrollTop();
+        int first = Math.max(1, (int) (-top / lineHeight) + 1);
+        int last = Math.min(profile.getLineCount(), (int) ((getHeight() - top) / lineHeight) + 1);
+        double max = Math.log1p(profile.getMaxExecutions());
+        for (int line = first; line <= last; line++) {
+            long executions = profile.getExecutions(line);
+            if (executions > 0) {
+                double heat = Math.log1p(executions) / max;
+                graphics.setFill(Color.hsb(60 * (1 - heat), 0.9, 1.0, 0.35 + 0.65 * heat));
+                graphics.fillRect(0, top + (line - 1) * lineHeight, WIDTH, lineHeight);
+            }
+        }
+    }
+
+    private int lineAt(double y) {
+        return (int) ((y + editor.getScrollTop()) / editor.getLineHeight()) + 1;
+    }
+
+    private String describe(int line) {
+        String text = "Line " + line + ": " + profile.getExecutions(line) + " executions";
+        long taken = profile.getTaken(line);
+        long notTaken = profile.getNotTaken(line);
+        if (taken + notTaken > 0) {
+            text += String.format("%nBranch taken %d, not taken %d (%.1f%% taken)",
+                    taken, notTaken, taken * 100.0 / (taken + notTaken));
+        }
+        return text;
+    }
+}
@@ -1,18 +1,45 @@
 package com.example.ide;
 
+import com.example.ide.assembler.BuildCache;
+import com.example.ide.assembler.OutputFormat;
+import com.example.ide.assembler.ProjectBuilder;
+import com.example.ide.assembler.ProjectWatcher;
 import com.example.ide.assembler.RISCV.AssemblerError;
-import com.example.ide.assembler.RISCV.RiscVAssembler;
+import com.example.ide.editor.CodeEditor;
+import com.example.ide.editor.Document;
+import com.example.ide.editor.LineChange;
 import com.example.ide.file.FileManager;
+import com.example.ide.file.PagedText;
+import com.example.ide.simulator.ExecutionHarness;
+import com.example.ide.simulator.SimulationException;
+import com.example.ide.simulator.Simulator;
+import com.example.ide.simulator.SourceProfile;
+import com.example.ide.simulator.Uart;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.prefs.Preferences;
 
 public class HelloController implements Initializable {
+    private static final long RUN_INSTRUCTION_LIMIT = 1_000_000_000L; // stops runaway programs
+    private static final int PROFILE_LINES_SHOWN = 10;
+    private static final int PROBLEMS_TAB = 2; // index in outputTabPane, after Output and Serial Monitor
+    private static final String BUILD_DIRECTORY_PREFERENCE = "buildDirectory";
+    private static final int OUTPUT_LIMIT_CHARS = 200_000; // watch mode appends forever; older lines are dropped
 
     @FXML
     private TabPane tabPane;  // TabPane to hold all open tabs
@@ -28,24 +55,89 @@ public class HelloController implements Initializable {
     private Label statusLabel;  // Label to show the status of save operations
 
     @FXML
-    private TextArea codeEditor;
+    private Tab outputTab;
 
     @FXML
-    private TextArea outputTextArea;
+    private Tab serialMonitorTab;
 
     @FXML
-    private TextArea serialMonitorTextArea;
+    private Tab problemsTab;
+
+    @FXML
+    private ChoiceBox<OutputFormat> outputFormatChoiceBox;  // Format the assembler writes machine code in
+
+    @FXML
+    private MenuItem watchMenuItem;
 
 
 
     private FileManager fileManager;  // Instance of FileManager class
     private Map<Tab, String> tabFileMap = new HashMap<>();
+    private final Map<Tab, PagedText> pagedFiles = new HashMap<>();  // Large files open in a tab, read on demand
+    // Created on first use, so that startup only pays for the editor: see the accessors below
+    private AssemblyService assemblyService;  // Background, as-you-type assembly of the open tabs
+    private TextArea outputTextArea;  // Content of the Output tab
+    private SerialMonitor serialMonitor;  // Shows the UART output of programs run from the Build menu
+    private DiagnosticsPanel diagnosticsPanel;  // Content of the Problems tab
+    private final Preferences preferences = Preferences.userNodeForPackage(HelloController.class);
+    private BuildCache buildCache;  // Output directory and cache of assembled sources, opened on first use
+    private ProjectWatcher projectWatcher;  // Rebuilds a project as its files change; null when not watching
+    private final Map<Path, List<Diagnostic>> watchDiagnostics = new TreeMap<>();  // Latest errors of each watched file
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         mainSplitPane.setDividerPositions(1);
         tabPane.getSelectionModel().selectedItemProperty().addListener((obs, oldTab, newTab) -> updateCurrentFile(newTab));
-        fileManager = new FileManager();
+        outputFormatChoiceBox.getItems().setAll(OutputFormat.values());
+        outputFormatChoiceBox.setValue(OutputFormat.TEXT);
+        CodeEditor firstEditor = new CodeEditor();
+        tabPane.getTabs().get(0).setContent(new EditorPane(firstEditor));
+        watchOnFirstEdit(tabPane.getTabs().get(0), firstEditor);
+    }
+
+    private AssemblyService assemblyService() {
+        if (assemblyService == null) {
+            assemblyService = new AssemblyService(this::showDiagnostics);
+        }
+        return assemblyService;
+    }
+
+    private TextArea outputTextArea() {
+        if (outputTextArea == null) {
+            outputTextArea = new TextArea();
+            outputTab.setContent(outputTextArea);
+        }
+        return outputTextArea;
+    }
+
+    private SerialMonitor serialMonitor() {
+        if (serialMonitor == null) {
+            TextArea textArea = new TextArea();
+            serialMonitorTab.setContent(textArea);
+            serialMonitor = new SerialMonitor(textArea);
+        }
+        return serialMonitor;
+    }
+
+    private DiagnosticsPanel diagnosticsPanel() {
+        if (diagnosticsPanel == null) {
+            diagnosticsPanel = new DiagnosticsPanel();
+            diagnosticsPanel.setOnJump(this::jumpTo);
+            problemsTab.setContent(diagnosticsPanel);
+        }
+        return diagnosticsPanel;
+    }
+
+    // An empty editor has nothing to check: the assembler is started (and its classes loaded) by the first keystroke
+    private void watchOnFirstEdit(Tab tab, CodeEditor editor) {
+        Consumer<LineChange> firstEdit = new Consumer<>() {
+            @Override
+            public void accept(LineChange change) {
+                editor.getDocument().removeLineChangeListener(this);
+                assemblyService().watch(tab, editor);
+            }
+        };
+        editor.getDocument().addLineChangeListener(firstEdit);
     }
 
     private void updateCurrentFile(Tab tab) {
@@ -73,12 +165,15 @@ public class HelloController implements Initializable {
             alert.setContentText("Do you want to save the file?");
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
-                saveAs();  // This should update filePath in tabFileMap if the user proceeds
-                filePath = tabFileMap.get(currentTab);  // Update filePath after saving
-                if (filePath == null) {
-                    statusLabel.setText("File save cancelled. Assembly aborted.");
-                    return;
-                }
+                // Assemble once the file is saved, which happens in the background
+                saveCurrentAs().thenAccept(saved -> {
+                    if (saved) {
+                        assemble();
+                    } else {
+                        statusLabel.setText("File save cancelled. Assembly aborted.");
+                    }
+                });
+                return;
             } else {
                 statusLabel.setText("Assembly cancelled.");
                 return;  // Exit the method if the user cancels or doesn't save
@@ -87,20 +182,414 @@ public class HelloController implements Initializable {
 
         // Proceed with assembling only if there is a file to assemble
         if (filePath != null) {
-            outputTextArea.clear(); // Clear any previous output
-            List<AssemblerError> errors = RiscVAssembler.assemble(filePath, outputTextArea);
+            // Assemble the editor text in the background
+            CodeEditor editor = editorOf(currentTab);
+            String fileName = new File(filePath).getName();
+            BuildCache cache = openBuildCache();
+            if (cache == null) {
+                return;
+            }
+            statusLabel.setText("Assembling " + fileName + "...");
+            assemblyService().assemble(editor.getDocument().snapshot(), filePath, cache, outputFormatChoiceBox.getValue())
+                    .thenAccept(errors -> Platform.runLater(() -> {
+                        showProblems(currentTab, errors);
+                        if (errors.isEmpty()) {
+                            statusLabel.setText("Assembly completed successfully for " + fileName);
+                            outputTextArea().setText("Assembly completed successfully.\n");
+                        } else {
+                            outputTextArea().setText("Assembly completed with " + errors.size() + " error(s).\n");
+                            statusLabel.setText("Assembly completed with errors for " + fileName);
+                            adjustSplitPane(false, PROBLEMS_TAB); // Ensure the problems are visible
+                        }
+                    }))
+                    .exceptionally(e -> {
+                        Platform.runLater(() -> statusLabel.setText("Assembly failed for " + fileName + ": " + e.getMessage()));
+                        return null;
+                    });
+        }
+    }
 
-            if (errors.isEmpty()) {
-                statusLabel.setText("Assembly completed successfully for " + new File(filePath).getName());
-                outputTextArea.appendText("Assembly completed successfully.\n");
-            } else {
-                statusLabel.setText("Assembly completed with errors for " + new File(filePath).getName());
-                toggleOutput(); // Ensure the output console is visible
+    // Assemble every .asm file under a chosen directory, in parallel and off the FX thread
+    public void buildProject() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Build project");
+        File directory = directoryChooser.showDialog(new Stage());
+        if (directory == null) {
+            statusLabel.setText("Build cancelled.");
+            return;
+        }
+
+        OutputFormat format = outputFormatChoiceBox.getValue();
+        BuildCache cache = openBuildCache();
+        if (cache == null) {
+            return;
+        }
+        statusLabel.setText("Building " + directory.getName() + "...");
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return ProjectBuilder.build(directory.toPath(), format, cache);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((result, failure) -> Platform.runLater(() -> {
+            if (failure != null) {
+                statusLabel.setText("Build failed: " + failure.getMessage());
+                return;
+            }
+            List<Diagnostic> diagnostics = new ArrayList<>();
+            for (Map.Entry<Path, List<AssemblerError>> entry : result.getErrors().entrySet()) {
+                for (AssemblerError error : entry.getValue()) {
+                    diagnostics.add(new Diagnostic(error, null, entry.getKey()));
+                }
+            }
+            diagnosticsPanel().show(diagnostics);
+            outputTextArea().setText("Built " + result.getFileCount() + " file(s) into " + cache.getDirectory() + ", "
+                    + result.getCachedCount() + " from cache, " + result.getErrors().size() + " with errors, in "
+                    + result.getElapsedMillis() + " ms\n");
+            statusLabel.setText(result.hasErrors() ? "Build completed with errors." : "Build completed successfully.");
+            adjustSplitPane(false, result.hasErrors() ? PROBLEMS_TAB : 0); // Show the problems or the output console
+        }));
+    }
+
+    // Starts watching a project directory, rebuilding its changed files in the background, or stops the watch
+    public void watchProject() {
+        if (projectWatcher != null) {
+            stopWatching();
+            statusLabel.setText("Stopped watching.");
+            return;
+        }
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Watch project");
+        File directory = directoryChooser.showDialog(new Stage());
+        if (directory == null) {
+            statusLabel.setText("Watch cancelled.");
+            return;
+        }
+        BuildCache cache = openBuildCache();
+        if (cache == null) {
+            return;
+        }
+        watchDiagnostics.clear();
+        outputTextArea().clear();
+        ProjectWatcher[] started = new ProjectWatcher[1]; // results of a watch stopped meanwhile are dropped
+        ProjectWatcher.Listener listener = new ProjectWatcher.Listener() {
+            @Override
+            public void built(List<Path> sources, ProjectBuilder.BuildResult result) {
+                Platform.runLater(() -> {
+                    if (projectWatcher == started[0]) {
+                        showWatchResult(sources, result);
+                    }
+                });
+            }
+
+            @Override
+            public void deleted(List<Path> sources) {
+                Platform.runLater(() -> {
+                    if (projectWatcher == started[0]) {
+                        showWatchDeletions(sources);
+                    }
+                });
+            }
+
+            @Override
+            public void failed(IOException error) {
+                Platform.runLater(() -> {
+                    if (projectWatcher == started[0]) {
+                        stopWatching();
+                        statusLabel.setText("Watch stopped: " + error.getMessage());
+                    }
+                });
+            }
+        };
+        try {
+            started[0] = ProjectWatcher.start(directory.toPath(), outputFormatChoiceBox.getValue(), cache, listener);
+        } catch (IOException e) {
+            statusLabel.setText("Cannot watch " + directory.getName() + ": " + e.getMessage());
+            return;
+        }
+        projectWatcher = started[0];
+        watchMenuItem.setText("Stop watching");
+        statusLabel.setText("Watching " + directory.getName() + " (" + projectWatcher.getDirectoryCount() + " directories)");
+        adjustSplitPane(false, 0);
+    }
+
+    private void stopWatching() {
+        try {
+            projectWatcher.close();
+        } catch (IOException e) {
+            // the watch thread is gone either way
+        }
+        projectWatcher = null;
+        watchMenuItem.setText("Watch project...");
+    }
+
+    // Appends one line per rebuild to the output and keeps the Problems tab showing every watched file's latest errors
+    private void showWatchResult(List<Path> sources, ProjectBuilder.BuildResult result) {
+        for (Path source : sources) {
+            watchDiagnostics.remove(source);
+        }
+        for (Map.Entry<Path, List<AssemblerError>> entry : result.getErrors().entrySet()) {
+            List<Diagnostic> diagnostics = new ArrayList<>();
+            for (AssemblerError error : entry.getValue()) {
+                diagnostics.add(new Diagnostic(error, null, entry.getKey()));
+            }
+            watchDiagnostics.put(entry.getKey(), diagnostics);
+        }
+        showWatchDiagnostics();
+
+        StringBuilder line = new StringBuilder();
+        line.append('[').append(LocalTime.now().withNano(0)).append("] ");
+        if (sources.size() == 1) {
+            line.append(projectWatcher.getRoot().relativize(sources.get(0)));
+        } else {
+            line.append(sources.size()).append(" file(s)");
+        }
+        line.append(": ").append(result.getCachedCount()).append(" from cache, ").append(result.getErrors().size())
+                .append(" with errors, in ").append(result.getElapsedMillis()).append(" ms\n");
+        appendWatchOutput(line);
+    }
+
+    // Drops the errors of deleted files (the watcher already removed their outputs)
+    private void showWatchDeletions(List<Path> sources) {
+        for (Path source : sources) {
+            watchDiagnostics.remove(source);
+        }
+        showWatchDiagnostics();
+
+        StringBuilder line = new StringBuilder();
+        line.append('[').append(LocalTime.now().withNano(0)).append("] ");
+        if (sources.size() == 1) {
+            line.append(projectWatcher.getRoot().relativize(sources.get(0)));
+        } else {
+            line.append(sources.size()).append(" file(s)");
+        }
+        line.append(": deleted\n");
+        appendWatchOutput(line);
+    }
+
+    private void showWatchDiagnostics() {
+        List<Diagnostic> all = new ArrayList<>();
+        watchDiagnostics.values().forEach(all::addAll);
+        diagnosticsPanel().show(all);
+        statusLabel.setText(watchDiagnostics.isEmpty() ? "Watching: no errors." : "Watching: " + watchDiagnostics.size()
+                + " file(s) with errors.");
+    }
+
+    private void appendWatchOutput(CharSequence line) {
+        if (outputTextArea().getLength() + line.length() > OUTPUT_LIMIT_CHARS) {
+            outputTextArea().deleteText(0, Math.min(outputTextArea().getLength(), OUTPUT_LIMIT_CHARS / 2));
+        }
+        outputTextArea().appendText(line.toString());
+    }
+
+    // Lets the user pick where assembled programs (and the build cache) go; remembered across sessions
+    public void chooseBuildDirectory() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Build directory");
+        File current = Paths.get(preferences.get(BUILD_DIRECTORY_PREFERENCE, BuildCache.DEFAULT_DIRECTORY.toString())).toFile();
+        if (current.isDirectory()) {
+            directoryChooser.setInitialDirectory(current);
+        }
+        File directory = directoryChooser.showDialog(new Stage());
+        if (directory == null) {
+            statusLabel.setText("Build directory unchanged.");
+            return;
+        }
+        preferences.put(BUILD_DIRECTORY_PREFERENCE, directory.getPath());
+        buildCache = null;  // a running watch keeps building into the directory it started with
+        statusLabel.setText("Build directory: " + directory.getPath());
+    }
+
+    // The build cache of the configured directory, or null (with the reason in the status bar) if it cannot be used
+    private BuildCache openBuildCache() {
+        if (buildCache == null) {
+            Path directory = Paths.get(preferences.get(BUILD_DIRECTORY_PREFERENCE, BuildCache.DEFAULT_DIRECTORY.toString()));
+            try {
+                buildCache = BuildCache.open(directory);
+            } catch (IOException e) {
+                statusLabel.setText("Cannot use build directory " + directory + ": " + e.getMessage());
+                return null;
+            }
+        }
+        return buildCache;
+    }
+
+    // Assemble the current tab in memory and run it on the simulator; what it writes to the UART appears in the
+    // Serial Monitor as it runs
+    public void run() {
+        runProgram(false);
+    }
+
+    // Run with profiling, then show where the program spent its instructions: heat in the editor gutter, the hottest
+    // lines in the output console
+    public void runWithProfiler() {
+        runProgram(true);
+    }
+
+    private void runProgram(boolean profiling) {
+        Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
+        if (currentTab == null) {
+            statusLabel.setText("No tab selected.");
+            return;
+        }
+        EditorPane pane = (EditorPane) currentTab.getContent();
+        String text = pane.getEditor().getText();
+        Uart uart = new Uart();
+        serialMonitor().connect(uart);
+        statusLabel.setText("Running " + currentTab.getText() + "...");
+        CompletableFuture.supplyAsync(() -> ExecutionHarness.run(text, RUN_INSTRUCTION_LIMIT, profiling, uart))
+                .whenComplete((result, failure) -> Platform.runLater(() -> {
+                    serialMonitor().finish(uart);
+                    if (failure != null) {
+                        statusLabel.setText("Run failed: " + failure.getMessage());
+                        return;
+                    }
+                    if (result.hasErrors()) {
+                        pane.getGutter().setProfile(null);
+                        showProblems(currentTab, result.getErrors());
+                        statusLabel.setText("Fix the assembler errors before running.");
+                        adjustSplitPane(false, PROBLEMS_TAB);
+                        return;
+                    }
+                    outputTextArea().setText(formatRun(result, text));
+                    statusLabel.setText(result.getTrap() != null ? "Program trapped." : "Run completed.");
+                    if (profiling) {
+                        pane.getGutter().setProfile(result.getProfile());
+                        adjustSplitPane(false, 0);
+                    }
+                }));
+        if (!profiling) {
+            adjustSplitPane(false, 1); // Show the Serial Monitor while the program runs
+        }
+    }
+
+    private static String formatRun(ExecutionHarness.Result result, String text) {
+        StringBuilder report = new StringBuilder();
+        SimulationException trap = result.getTrap();
+        if (trap != null) {
+            report.append("Trap: ").append(trap.getMessage()).append('\n');
+        } else if (result.getRunResult() == Simulator.RunResult.STEP_LIMIT) {
+            report.append("Stopped after ").append(RUN_INSTRUCTION_LIMIT).append(" instructions.\n");
+        } else {
+            report.append("Program finished.\n");
+        }
+        long count = result.getSimulator().getInstructionCount();
+        report.append(String.format("%d instructions in %.1f ms%n", count, result.getElapsedNanos() / 1e6));
+
+        SourceProfile profile = result.getProfile();
+        if (profile == null) {
+            return report.toString();
+        }
+        String[] lines = text.split("\n", -1);
+        report.append("Hottest lines:\n");
+        for (int line : profile.hottestLines(PROFILE_LINES_SHOWN)) {
+            long executions = profile.getExecutions(line);
+            report.append(String.format("%6d %14d %5.1f%%  %s", line, executions, executions * 100.0 / Math.max(1, count),
+                    line <= lines.length ? lines[line - 1].strip() : ""));
+            long taken = profile.getTaken(line);
+            long notTaken = profile.getNotTaken(line);
+            if (taken + notTaken > 0) {
+                report.append(String.format("  (taken %.1f%%)", taken * 100.0 / (taken + notTaken)));
+            }
+            report.append('\n');
+        }
+        return report.toString();
+    }
+
+    private static CodeEditor editorOf(Tab tab) {
+        return ((EditorPane) tab.getContent()).getEditor();
+    }
+
+    // Called on the FX thread with the result of each as-you-type check
+    private void showDiagnostics(Tab tab, List<AssemblerError> errors) {
+        if (tab != tabPane.getSelectionModel().getSelectedItem()) {
+            return;  // Only the tab being edited drives the output area
+        }
+        showProblems(tab, errors);
+        statusLabel.setText(errors.isEmpty() ? "No errors in " + tab.getText() : errors.size() + " error(s) in " + tab.getText());
+    }
+
+    private void showProblems(Tab tab, List<AssemblerError> errors) {
+        String filePath = tabFileMap.get(tab);
+        Path file = filePath != null ? Path.of(filePath) : null;
+        List<Diagnostic> diagnostics = new ArrayList<>(errors.size());
+        for (AssemblerError error : errors) {
+            diagnostics.add(new Diagnostic(error, tab, file));
+        }
+        diagnosticsPanel().show(diagnostics);
+    }
+
+    // Brings the line of a problem into view: in its tab if that is still open, otherwise in the tab of its file,
+    // opening the file if needed
+    private void jumpTo(Diagnostic diagnostic) {
+        Tab tab = diagnostic.getTab() != null && tabPane.getTabs().contains(diagnostic.getTab()) ? diagnostic.getTab() : null;
+        if (tab == null && diagnostic.getFile() != null) {
+            tab = findTab(diagnostic.getFile());
+            if (tab == null) {
+                openInTab(diagnostic.getFile().toFile()).thenAccept(opened -> showLine(opened, diagnostic.getLine()));
+                return;
             }
         }
+        if (tab == null) {
+            statusLabel.setText("The file of this problem is no longer open.");
+            return;
+        }
+        showLine(tab, diagnostic.getLine());
+    }
+
+    // Selects a line (from 1) in a tab and scrolls it into view
+    private void showLine(Tab tab, int lineNumber) {
+        tabPane.getSelectionModel().select(tab);
+        CodeEditor editor = editorOf(tab);
+        Document document = editor.getDocument();
+        int line = Math.max(0, Math.min(lineNumber - 1, document.getLineCount() - 1));
+        editor.requestFocus();
+        editor.selectRange(document.getLineEnd(line), document.getLineStart(line)); // caret at the line start, so it scrolls there
+    }
+
+    private Tab findTab(Path file) {
+        for (Map.Entry<Tab, String> entry : tabFileMap.entrySet()) {
+            if (entry.getValue() != null && Path.of(entry.getValue()).toAbsolutePath().equals(file.toAbsolutePath())) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+
+
+    // Edit menu: act on the editor of the current tab
+    public void undo() {
+        withCurrentEditor(CodeEditor::undo);
+    }
+
+    public void redo() {
+        withCurrentEditor(CodeEditor::redo);
+    }
+
+    public void cut() {
+        withCurrentEditor(CodeEditor::cut);
+    }
+
+    public void copy() {
+        withCurrentEditor(CodeEditor::copy);
+    }
+
+    public void paste() {
+        withCurrentEditor(CodeEditor::paste);
     }
 
+    public void selectAll() {
+        withCurrentEditor(CodeEditor::selectAll);
+    }
 
+    private void withCurrentEditor(Consumer<CodeEditor> action) {
+        Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
+        if (currentTab != null && currentTab.getContent() instanceof EditorPane pane) {
+            action.accept(pane.getEditor());
+            pane.getEditor().requestFocus();
+        }
+    }
 
     public void toggleOutput() {
         adjustSplitPane(outputTabPane.isVisible() && outputTabPane.getSelectionModel().getSelectedIndex() == 0, 0);
@@ -110,6 +599,10 @@ public class HelloController implements Initializable {
         adjustSplitPane(outputTabPane.isVisible() && outputTabPane.getSelectionModel().getSelectedIndex() == 1, 1);
     }
 
+    public void toggleProblems() {
+        adjustSplitPane(outputTabPane.isVisible() && outputTabPane.getSelectionModel().getSelectedIndex() == PROBLEMS_TAB, PROBLEMS_TAB);
+    }
+
     private void adjustSplitPane(boolean shouldHide, int tabIndex) {
         if (shouldHide) {
             // Hide the pane if it's currently visible and the tab to be toggled is active
@@ -125,12 +618,13 @@ public class HelloController implements Initializable {
     // Method to create a new "Untitled" file
     public void newFile() {
         Tab newTab = new Tab("Untitled");
-        TextArea editor = new TextArea();
-        newTab.setContent(editor);
+        CodeEditor editor = new CodeEditor();
+        newTab.setContent(new EditorPane(editor));
         newTab.setClosable(true);
         tabPane.getTabs().add(newTab);
         tabPane.getSelectionModel().select(newTab);
         tabFileMap.put(newTab, null);
+        watchOnFirstEdit(newTab, editor);
         statusLabel.setText("New file created.");
     }
 
@@ -139,55 +633,104 @@ public class HelloController implements Initializable {
         Stage stage = new Stage();
         File file = fileManager.openFile(stage);
         if (file != null) {
-            String content = fileManager.readFileContent(file);
-            Tab newTab = new Tab(file.getName());
-            TextArea editor = new TextArea(content);
-            newTab.setContent(editor);
-            tabPane.getTabs().add(newTab);
-            tabPane.getSelectionModel().select(newTab);
-            tabFileMap.put(newTab, file.getPath());
-            statusLabel.setText("File opened successfully: " + file.getName());
+            openInTab(file).thenAccept(tab -> statusLabel.setText("File opened successfully: " + file.getName()));
         } else {
             statusLabel.setText("File opening canceled.");
         }
     }
 
+    // Reads the file in the background, then adds its tab on the FX thread. Large files are read on demand (their
+    // lines were indexed while reading) and are not checked as you type.
+    private CompletableFuture<Tab> openInTab(File file) {
+        statusLabel.setText("Opening " + file.getName() + "...");
+        CompletableFuture<Tab> opened = fileManager.openAsync(file, progress -> showProgress("Opening", file, progress))
+                .thenApplyAsync(content -> {
+                    Tab newTab = new Tab(file.getName());
+                    CodeEditor editor;
+                    if (content instanceof PagedText paged) {
+                        editor = new CodeEditor(new Document(paged, paged.getLineStarts(), paged.getLineCount()));
+                        pagedFiles.put(newTab, paged);
+                    } else {
+                        editor = new CodeEditor(content.toString());
+                        assemblyService().watch(newTab, editor);
+                    }
+                    newTab.setContent(new EditorPane(editor));
+                    tabPane.getTabs().add(newTab);
+                    tabPane.getSelectionModel().select(newTab);
+                    tabFileMap.put(newTab, file.getPath());
+                    return newTab;
+                }, Platform::runLater);
+        opened.exceptionally(e -> {
+            Platform.runLater(() -> statusLabel.setText("Error opening " + file.getName() + ": " + rootMessage(e)));
+            return null;
+        });
+        return opened;
+    }
+
     // Method to save the content of the current tab
     public void save() {
         Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
         if (currentTab != null) {
-            TextArea editor = (TextArea) currentTab.getContent();
-            String content = editor.getText();
             String filePath = tabFileMap.get(currentTab);
             if (filePath == null) {
                 saveAs();  // Trigger Save As dialog if file has no path
             } else {
-                File file = new File(filePath);
-                boolean success = fileManager.save(file, content);
-                if (success) {
-                    statusLabel.setText("File saved: " + file.getName());
-                } else {
-                    statusLabel.setText("Error saving file.");
-                }
+                writeTab(currentTab, new File(filePath));
             }
         }
     }
 
     // Save As method - lets the user choose where to save the file
     public void saveAs() {
+        saveCurrentAs();
+    }
+
+    // Completes on the FX thread with whether the current tab was saved
+    private CompletableFuture<Boolean> saveCurrentAs() {
         Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
-        if (currentTab != null) {
-            TextArea editor = (TextArea) currentTab.getContent();
-            String content = editor.getText();
-            File file = fileManager.saveAs(new Stage(), content);
-            if (file != null) {
+        if (currentTab == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        File file = fileManager.chooseSaveFile(new Stage());
+        if (file == null) {
+            statusLabel.setText("Save cancelled.");
+            return CompletableFuture.completedFuture(false);
+        }
+        return writeTab(currentTab, file).thenApply(saved -> {
+            if (saved) {
                 currentTab.setText(file.getName());
                 tabFileMap.put(currentTab, file.getPath());
                 statusLabel.setText("File saved as: " + file.getName());
-            } else {
-                statusLabel.setText("Error saving file.");
             }
+            return saved;
+        });
+    }
+
+    // Writes a snapshot of the tab's text in the background; completes on the FX thread with whether it worked
+    private CompletableFuture<Boolean> writeTab(Tab tab, File file) {
+        CharSequence content = editorOf(tab).getDocument().snapshot();
+        statusLabel.setText("Saving " + file.getName() + "...");
+        return fileManager.saveAsync(file, content, progress -> showProgress("Saving", file, progress))
+                .handleAsync((ignored, failure) -> {
+                    if (failure != null) {
+                        statusLabel.setText("Error saving " + file.getName() + ": " + rootMessage(failure));
+                        return false;
+                    }
+                    statusLabel.setText("File saved: " + file.getName());
+                    return true;
+                }, Platform::runLater);
+    }
+
+    // Called on a background thread with the fraction done
+    private void showProgress(String action, File file, double progress) {
+        Platform.runLater(() -> statusLabel.setText(action + " " + file.getName() + "... " + (int) (progress * 100) + "%"));
+    }
+
+    private static String rootMessage(Throwable failure) {
+        while (failure.getCause() != null) {
+            failure = failure.getCause();
         }
+        return failure.getMessage();
     }
 
     // Method to handle the Close action on the "File" menu
@@ -199,32 +742,55 @@ public class HelloController implements Initializable {
     }
 
     private void confirmSaveBeforeClose(Tab tab) {
-        TextArea editor = (TextArea) tab.getContent();
+        CodeEditor editor = editorOf(tab);
         String filePath = tabFileMap.get(tab);
-        if (editor.getText().isEmpty() || filePath != null) {
-            tabPane.getTabs().remove(tab);
-            tabFileMap.remove(tab);
+        if (editor.getDocument().length() == 0 || filePath != null) {
+            removeTab(tab);
             statusLabel.setText("Tab closed.");
         } else {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "You have unsaved changes. Do you want to save them before closing?", ButtonType.YES, ButtonType.NO, ButtonType.CANCEL);
             alert.showAndWait().ifPresent(response -> {
                 if (response == ButtonType.YES) {
-                    saveAs();
+                    saveCurrentAs().thenAccept(saved -> {
+                        if (saved) {
+                            removeTab(tab);
+                        }
+                    });
                 } else if (response == ButtonType.NO) {
-                    tabPane.getTabs().remove(tab);
-                    tabFileMap.remove(tab);
+                    removeTab(tab);
                     statusLabel.setText("Tab closed without saving.");
                 }
             });
         }
     }
 
+    private void removeTab(Tab tab) {
+        tabPane.getTabs().remove(tab);
+        tabFileMap.remove(tab);
+        if (assemblyService != null) {
+            assemblyService.forget(tab);
+        }
+        PagedText paged = pagedFiles.remove(tab);
+        if (paged != null) {
+            // A save of the tab may still be reading its text from the file
+            fileManager.afterSaves().thenRunAsync(() -> {
+                try {
+                    paged.close();
+                } catch (IOException e) {
+                    statusLabel.setText("Error closing " + tab.getText() + ": " + e.getMessage());
+                }
+            }, Platform::runLater);
+        }
+    }
 
-
+    // Waits for saves still being written, so quitting never loses one
+    public void shutdown() {
+        fileManager.shutdown();
+    }
 
     // Method to handle the "Exit" action from the menu
     public void exit() {
-        // Exit the application (you can add confirmation dialog if needed)
+        shutdown();
         System.exit(0);
     }
 
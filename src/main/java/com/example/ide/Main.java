@@ -6,21 +6,50 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 
+// Launched with -Dide.traceStartup=true, prints how long the process took to lay out the first editable tab
 public class Main extends Application {
+    private HelloController controller;
+
     @Override
     public void start(Stage stage) throws IOException {
         try {
             FXMLLoader fxmlLoader = new FXMLLoader(Main.class.getResource("scene.fxml"));
             Scene scene = new Scene(fxmlLoader.load());
+            controller = fxmlLoader.getController();
             stage.setTitle("IDE");
             stage.setScene(scene);
+            if (Boolean.getBoolean("ide.traceStartup")) {
+                traceStartup(scene);
+            }
             stage.show();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    // The last window was closed
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+    }
+
+    private static void traceStartup(Scene scene) {
+        Runnable firstLayout = new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                Instant started = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+                System.err.println("First editable tab after " + Duration.between(started, Instant.now()).toMillis() + " ms");
+            }
+        };
+        scene.addPostLayoutPulseListener(firstLayout);
+    }
+
     public static void main(String[] args) {
         launch();
     }
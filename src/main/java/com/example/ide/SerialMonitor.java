@@ -0,0 +1,104 @@
+package com.example.ide;
+
+import com.example.ide.simulator.ByteRingBuffer;
+import com.example.ide.simulator.Uart;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.TextArea;
+import javafx.util.Duration;
+
+import java.nio.charset.StandardCharsets;
+
+// Shows what a running program transmits on its Uart in the Serial Monitor text area.
+// The simulator thread only fills the UART's lock-free ring buffer; this side drains it on the FX thread at a fixed
+// frame rate, turning everything that arrived since the last frame into one appendText call. The text area keeps at
+// most MAX_RETAINED_CHARS (older output is cut in large steps, so trimming is rare), and of a burst bigger than that
+// only the end is ever turned into text, so a program printing megabytes per second costs a few layouts a second.
+public class SerialMonitor {
+    private static final Duration FRAME = Duration.millis(33);
+    private static final int MAX_RETAINED_CHARS = 256 * 1024;
+    private static final int TRIMMED_CHARS = MAX_RETAINED_CHARS * 3 / 4; // what is left after a trim
+
+    private final TextArea textArea;
+    private final Timeline frames;
+    private final byte[] chunk = new byte[64 * 1024];
+    private final byte[] tail = new byte[MAX_RETAINED_CHARS]; // last bytes drained this frame
+    private Uart uart;
+    private long reportedOverruns;
+    private boolean finished;
+
+    public SerialMonitor(TextArea textArea) {
+        this.textArea = textArea;
+        this.frames = new Timeline(new KeyFrame(FRAME, event -> drain()));
+        frames.setCycleCount(Animation.INDEFINITE);
+        textArea.setEditable(false);
+    }
+
+    // Clears the monitor and starts showing the output of uart; a previous UART is no longer drained
+    public void connect(Uart uart) {
+        this.uart = uart;
+        reportedOverruns = 0;
+        finished = false;
+        textArea.clear();
+        frames.play();
+    }
+
+    // The program writing to uart has stopped: polling ends once what is left in the buffer has been shown. Ignored
+    // if another UART has been connected since, whose program is still running.
+    public void finish(Uart uart) {
+        if (uart != this.uart) {
+            return;
+        }
+        finished = true;
+        drain();
+    }
+
+    private void drain() {
+        if (uart == null) {
+            frames.stop();
+            return;
+        }
+        ByteRingBuffer output = uart.getOutput();
+        int kept = 0;
+        long budget = output.capacity(); // a frame never chases a producer that keeps refilling the buffer
+        int count;
+        while (budget > 0 && (count = output.drain(chunk)) > 0) {
+            budget -= count;
+            int overflow = kept + count - tail.length;
+            if (overflow > 0) {
+                System.arraycopy(tail, overflow, tail, 0, kept - overflow);
+                kept -= overflow;
+            }
+            System.arraycopy(chunk, 0, tail, kept, count);
+            kept += count;
+        }
+        StringBuilder text = new StringBuilder(new String(tail, 0, kept, StandardCharsets.ISO_8859_1));
+        long overruns = uart.getOverruns();
+        if (overruns != reportedOverruns) {
+            text.append("\n[").append(overruns - reportedOverruns).append(" byte(s) dropped, output buffer full]\n");
+            reportedOverruns = overruns;
+        }
+        if (text.length() > 0) {
+            append(text);
+        }
+        if (finished && output.available() == 0) {
+            uart = null;
+            frames.stop();
+        }
+    }
+
+    private void append(CharSequence text) {
+        int length = textArea.getLength();
+        if (length + text.length() > MAX_RETAINED_CHARS) {
+            int keep = Math.max(0, TRIMMED_CHARS - text.length());
+            if (keep == 0) {
+                textArea.setText(text.subSequence(Math.max(0, text.length() - TRIMMED_CHARS), text.length()).toString());
+                textArea.positionCaret(textArea.getLength());
+                return;
+            }
+            textArea.deleteText(0, length - Math.min(keep, length));
+        }
+        textArea.appendText(text.toString());
+    }
+}
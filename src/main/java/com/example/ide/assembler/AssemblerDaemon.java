@@ -0,0 +1,240 @@
+package com.example.ide.assembler;
+
+import com.example.ide.assembler.RISCV.AssemblerError;
+import com.example.ide.assembler.RISCV.RiscVAssembler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// A resident assembler, so that repeated command line and CI builds do not each pay for JVM startup and for running
+// the Lexer, Parser and encoder cold. The daemon warms the assembler up once, then serves requests on a Unix domain
+// socket, each connection on its own virtual thread (RiscVAssembler keeps no shared state, so requests run in parallel).
+//
+// Protocol, big-endian as written by DataOutputStream; a connection carries any number of requests:
+//   request:  int PROTOCOL_VERSION, int byte count, the source as UTF-8
+//   response: int word count, or -1 if nothing could be encoded, the words,
+//             int error count, then per error int line and the message as modified UTF-8 (writeUTF)
+// A request the daemon cannot read closes the connection. Output formatting and files stay with the client.
+public class AssemblerDaemon implements Closeable {
+    public static final int PROTOCOL_VERSION = 1;
+    private static final int MAX_SOURCE_BYTES = 64 * 1024 * 1024;
+    private static final int MAX_MESSAGE_CHARS = 1024;
+    private static final int WARM_UP_ROUNDS = 20_000;
+    private static final String WARM_UP_PROGRAM = """
+            START:
+            ADDI X1,X1,10
+            ADD X2,X1,X1
+            SUB X3,X2,X1
+            AND X4,X3,X2
+            OR X5,X4,X1
+            XOR X6,X5,X2
+            XORI X7,X6,2
+            LW X8,X2,0
+            SW 4,X8,X2
+            LUI X9,1
+            FMUL X10,X1,X2
+            FADD X11,X10,X1
+            BEQ START,X1,X2
+            BNE END,X3,X4 # comment
+            JAL X1,START
+            ADD X1,X2
+            END:
+            """;
+
+    private final Path socket;
+    private final ServerSocketChannel server;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+
+    private AssemblerDaemon(Path socket, ServerSocketChannel server) {
+        this.socket = socket;
+        this.server = server;
+    }
+
+    // Binds the socket, readable and writable by this user only. A socket file left by a daemon that is gone is
+    // replaced; one that still answers is not.
+    public static AssemblerDaemon bind(Path socket) throws IOException {
+        if (Files.exists(socket)) {
+            if (isListening(socket)) {
+                throw new IOException("An assembler daemon is already listening on " + socket);
+            }
+            Files.delete(socket);
+        }
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            try {
+                Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // not a POSIX file system
+            }
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+        return new AssemblerDaemon(socket, server);
+    }
+
+    // Assembles a sample program (with one bad line, for the error paths) until the JIT has compiled the assembler's hot
+    // paths; clients that connect meanwhile wait in the socket's backlog
+    public void warmUp() {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            RiscVAssembler.assemble(WARM_UP_PROGRAM, new ArrayList<>());
+        }
+    }
+
+    // Accepts connections until close(); each one is served on a virtual thread
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            connections.submit(() -> handle(channel));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+        Files.deleteIfExists(socket);
+    }
+
+    private static boolean isListening(Path socket) {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            return channel.isConnected();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            while (true) {
+                int version;
+                try {
+                    version = in.readInt();
+                } catch (EOFException e) {
+                    return; // the client is done
+                }
+                int length = in.readInt();
+                if (version != PROTOCOL_VERSION || length < 0 || length > MAX_SOURCE_BYTES) {
+                    return;
+                }
+                byte[] source = new byte[length];
+                in.readFully(source);
+
+                List<AssemblerError> errors = new ArrayList<>();
+                int[] words = RiscVAssembler.assemble(new String(source, StandardCharsets.UTF_8), errors);
+                if (words == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(words.length);
+                    for (int word : words) {
+                        out.writeInt(word);
+                    }
+                }
+                out.writeInt(errors.size());
+                for (AssemblerError error : errors) {
+                    String message = error.getMessage();
+                    out.writeInt(error.getLine());
+                    out.writeUTF(message.length() > MAX_MESSAGE_CHARS ? message.substring(0, MAX_MESSAGE_CHARS) : message);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away mid-request
+        }
+    }
+
+    // Sends sources to a daemon. Safe for concurrent use: every thread borrows its own connection, opening one when
+    // none is idle, so parallel builds become parallel requests.
+    public static class Client implements ProjectBuilder.SourceAssembler, Closeable {
+        private final UnixDomainSocketAddress address;
+        private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+        private static final class Connection {
+            final SocketChannel channel;
+            final DataInputStream in;
+            final DataOutputStream out;
+
+            Connection(SocketChannel channel) {
+                this.channel = channel;
+                this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            }
+        }
+
+        // Connects once to fail early if no daemon is listening
+        public Client(Path socket) throws IOException {
+            this.address = UnixDomainSocketAddress.of(socket);
+            idle.add(new Connection(SocketChannel.open(address)));
+        }
+
+        @Override
+        public int[] assemble(Path source, CharSequence code, List<AssemblerError> errors) throws IOException {
+            Connection connection = idle.poll();
+            if (connection == null) {
+                connection = new Connection(SocketChannel.open(address));
+            }
+            try {
+                byte[] bytes = code.toString().getBytes(StandardCharsets.UTF_8);
+                connection.out.writeInt(PROTOCOL_VERSION);
+                connection.out.writeInt(bytes.length);
+                connection.out.write(bytes);
+                connection.out.flush();
+
+                int wordCount = connection.in.readInt();
+                int[] words = null;
+                if (wordCount >= 0) {
+                    words = new int[wordCount];
+                    for (int i = 0; i < wordCount; i++) {
+                        words[i] = connection.in.readInt();
+                    }
+                }
+                int errorCount = connection.in.readInt();
+                for (int i = 0; i < errorCount; i++) {
+                    int line = connection.in.readInt();
+                    errors.add(new AssemblerError(line, connection.in.readUTF()));
+                }
+                idle.add(connection);
+                return words;
+            } catch (IOException | RuntimeException e) {
+                connection.channel.close(); // the stream is out of step now
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.example.ide.assembler;
+
+import com.example.ide.assembler.RISCV.AssemblerError;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Where assembled programs go, and a persistent cache of what the assembler made of each source.
+// Entries are content-addressed: the key is a SHA-256 of the source bytes, the output format, the variant and VERSION, so a source
+// that was assembled before (under any name, in any build) is served from the cache without being lexed. The index
+// records which key every output file currently holds; when a source's key matches, the output is already right and
+// nothing is read or written, so an unchanged file costs one hash.
+// Sources are named by their path below the project root, and outputs mirror that path in the build directory, so
+// a/main.asm and b/main.asm of one project get outputs of their own.
+// The cache lives in CACHE_DIRECTORY inside the build directory. Entries are written to a temporary file and renamed
+// into place, so concurrent builds (ProjectBuilder assembles in parallel) and crashes never leave a partial entry.
+// Nothing is evicted; deleting the directory clears the cache.
+public final class BuildCache {
+    // Where output went before the build directory could be configured
+    public static final Path DEFAULT_DIRECTORY = Paths.get("src/main/resources/com/example/ide/output");
+    private static final String CACHE_DIRECTORY = ".cache";
+    private static final String INDEX_FILE = "index";
+    private static final int VERSION = 1; // part of every key: bump whenever the assembler's output changes
+    private static final int NO_OUTPUT = -1; // assembly stopped before encoding, nothing was written
+    private static final int ENCODE_CHUNK_CHARS = 16 * 1024;
+
+    public static class Result {
+        private final List<AssemblerError> errors;
+        private final Path outputFile;
+        private final boolean cached;
+
+        Result(List<AssemblerError> errors, Path outputFile, boolean cached) {
+            this.errors = errors;
+            this.outputFile = outputFile;
+            this.cached = cached;
+        }
+
+        // Errors ordered by line
+        public List<AssemblerError> getErrors() {
+            return errors;
+        }
+
+        public Path getOutputFile() {
+            return outputFile;
+        }
+
+        // Served from the cache, without running the assembler
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    // Runs the assembler on a cache miss: adds its errors to the list and returns the words, or null if assembly
+    // stopped before anything could be encoded. An IOException (a remote assembler that cannot be reached) fails the
+    // build without caching anything.
+    @FunctionalInterface
+    public interface Assembly {
+        int[] assemble(List<AssemblerError> errors) throws IOException;
+    }
+
+    // What an output file holds, as recorded in the index
+    private static final class IndexEntry {
+        final String key;
+        final long size;
+        final int errorCount;
+
+        IndexEntry(String key, long size, int errorCount) {
+            this.key = key;
+            this.size = size;
+            this.errorCount = errorCount;
+        }
+    }
+
+    // A cache entry as read back: the errors, and the output file contents or null if there was no output
+    private static final class Entry {
+        final List<AssemblerError> errors;
+        final ByteBuffer contents;
+
+        Entry(List<AssemblerError> errors, ByteBuffer contents) {
+            this.errors = errors;
+            this.contents = contents;
+        }
+    }
+
+    private final Path directory;
+    private final Path cacheDirectory;
+    private final String variant;
+    private final Map<String, IndexEntry> index = new ConcurrentHashMap<>(); // by output path, '/'-separated
+    private volatile boolean indexChanged;
+
+    private BuildCache(Path directory, String variant) {
+        this.directory = directory;
+        this.cacheDirectory = directory.resolve(CACHE_DIRECTORY);
+        this.variant = variant;
+    }
+
+    // Creates the build directory if needed and loads its index
+    public static BuildCache open(Path directory) throws IOException {
+        return open(directory, "");
+    }
+
+    // A cache for outputs that differ from the plain assembler's for the same source (such as optimized builds): the
+    // variant name is part of every key, so the two never serve each other's entries
+    public static BuildCache open(Path directory, String variant) throws IOException {
+        BuildCache cache = new BuildCache(directory, variant);
+        Files.createDirectories(cache.cacheDirectory);
+        cache.loadIndex();
+        return cache;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Where a source belongs in the project: its path below the first of roots that contains it, or just its name if
+    // none does (a file assembled on its own)
+    public static Path projectPath(List<Path> roots, Path source) {
+        Path file = source.toAbsolutePath().normalize();
+        for (Path root : roots) {
+            Path directory = root.toAbsolutePath().normalize();
+            if (file.startsWith(directory) && !file.equals(directory)) {
+                return directory.relativize(file);
+            }
+        }
+        return file.getFileName();
+    }
+
+    // The output file of a source, given by its projectPath: the same path with the format's extension, in the build
+    // directory
+    public Path outputFile(Path name, OutputFormat format) {
+        if (name.isAbsolute() || name.normalize().startsWith("..") || name.getFileName() == null) {
+            throw new IllegalArgumentException("Not a path inside a project: " + name);
+        }
+        String fileName = name.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return directory.resolve(name).resolveSibling((dot > 0 ? fileName.substring(0, dot) : fileName)
+                + format.getExtension());
+    }
+
+    // Builds a source file as read from disk; name is its projectPath
+    public Result build(Path name, SourceText text, OutputFormat format, Assembly assembly) throws IOException {
+        return build(key(format, variant, text::digest), name, format, assembly);
+    }
+
+    // Builds the text of an editor; it hashes like the same text saved as UTF-8, so a saved file and its editor share
+    // an entry
+    public Result build(Path name, CharSequence text, OutputFormat format, Assembly assembly) throws IOException {
+        return build(key(format, variant, digest -> digestUtf8(text, digest)), name, format, assembly);
+    }
+
+    // Deletes the output of a source that is gone; the cache entry stays, in case the same text comes back
+    public void remove(Path name, OutputFormat format) throws IOException {
+        Path output = outputFile(name, format);
+        Files.deleteIfExists(output);
+        if (index.remove(indexName(output)) != null) {
+            indexChanged = true;
+        }
+    }
+
+    // Writes the index if builds changed it
+    public synchronized void flush() throws IOException {
+        if (!indexChanged) {
+            return;
+        }
+        indexChanged = false;
+        Map<String, IndexEntry> sorted = new TreeMap<>(index);
+        Path temp = Files.createTempFile(cacheDirectory, INDEX_FILE, ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, IndexEntry> entry : sorted.entrySet()) {
+                IndexEntry value = entry.getValue();
+                writer.write(entry.getKey() + '\t' + value.key + '\t' + value.size + '\t' + value.errorCount + '\n');
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            indexChanged = true;
+            throw e;
+        }
+        moveIntoPlace(temp, cacheDirectory.resolve(INDEX_FILE));
+    }
+
+    private Result build(String key, Path name, OutputFormat format, Assembly assembly) throws IOException {
+        Path output = outputFile(name, format);
+        String outputName = indexName(output);
+        Path entryFile = cacheDirectory.resolve(key);
+
+        IndexEntry current = index.get(outputName);
+        if (current != null && current.key.equals(key) && outputIntact(output, current.size)) {
+            List<AssemblerError> errors = current.errorCount == 0 ? new ArrayList<>() : readErrors(entryFile);
+            if (errors != null) {
+                return new Result(errors, output, true);
+            }
+        }
+        Entry entry = Files.exists(entryFile) ? readEntry(entryFile) : null;
+        if (entry != null) {
+            List<AssemblerError> errors = new ArrayList<>(entry.errors);
+            if (entry.contents != null) {
+                writeOutput(output, entry.contents, errors);
+            }
+            record(outputName, key, entry.contents != null ? entry.contents.remaining() : NO_OUTPUT, entry.errors.size());
+            return new Result(errors, output, true);
+        }
+
+        List<AssemblerError> errors = new ArrayList<>();
+        int[] words = assembly.assemble(errors);
+        errors.sort(Comparator.comparingInt(AssemblerError::getLine));
+        ByteBuffer contents = words != null ? MachineCodeWriter.format(words, format) : null;
+        writeEntry(entryFile, errors, contents);
+        List<AssemblerError> result = new ArrayList<>(errors);
+        if (contents != null) {
+            writeOutput(output, contents, result);
+        }
+        record(outputName, key, contents != null ? contents.remaining() : NO_OUTPUT, errors.size());
+        return new Result(result, output, false);
+    }
+
+    // Index names do not depend on the platform's separator, so a build directory can be shared
+    private String indexName(Path output) {
+        return directory.relativize(output).toString().replace(File.separatorChar, '/');
+    }
+
+    private void record(String name, String key, long size, int errorCount) {
+        index.put(name, new IndexEntry(key, size, errorCount));
+        indexChanged = true;
+    }
+
+    private static boolean outputIntact(Path output, long size) throws IOException {
+        if (size == NO_OUTPUT) {
+            return true;
+        }
+        try {
+            return Files.size(output) == size;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    // Writing the output is part of the build; a failure is reported like the assembler's errors, and not cached
+    private void writeOutput(Path output, ByteBuffer contents, List<AssemblerError> errors) {
+        try {
+            try {
+                MachineCodeWriter.write(output, contents);
+            } catch (NoSuchFileException e) {
+                Files.createDirectories(output.getParent()); // a new subdirectory, or deleted since the cache was opened
+                MachineCodeWriter.write(output, contents);
+            }
+        } catch (IOException e) {
+            errors.add(new AssemblerError(0, "Error writing to output file: " + e.getMessage()));
+        }
+    }
+
+    // Entry layout: error count, then line and message of each error, then the output length (NO_OUTPUT if none)
+    // and the output file contents
+    private void writeEntry(Path entryFile, List<AssemblerError> errors, ByteBuffer contents) throws IOException {
+        Path temp = Files.createTempFile(cacheDirectory, entryFile.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(errors.size());
+            for (AssemblerError error : errors) {
+                out.writeInt(error.getLine());
+                out.writeUTF(error.getMessage());
+            }
+            if (contents == null) {
+                out.writeInt(NO_OUTPUT);
+            } else {
+                out.writeInt(contents.remaining());
+                writeFully(out, contents);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        moveIntoPlace(temp, entryFile);
+    }
+
+    // Null if the entry is unreadable, in which case the source is simply built again
+    private static Entry readEntry(Path entryFile) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entryFile)))) {
+            List<AssemblerError> errors = new ArrayList<>();
+            readErrors(in, errors);
+            int length = in.readInt();
+            if (length == NO_OUTPUT) {
+                return new Entry(errors, null);
+            }
+            byte[] contents = new byte[length];
+            in.readFully(contents);
+            return new Entry(errors, ByteBuffer.wrap(contents));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static List<AssemblerError> readErrors(Path entryFile) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(entryFile))) {
+            List<AssemblerError> errors = new ArrayList<>();
+            readErrors(in, errors);
+            return errors;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void readErrors(DataInputStream in, List<AssemblerError> errors) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int line = in.readInt();
+            errors.add(new AssemblerError(line, in.readUTF()));
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        Path file = cacheDirectory.resolve(INDEX_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t");
+            if (fields.length != 4) {
+                continue; // not written by this version; the file is simply built again
+            }
+            try {
+                index.put(fields[0], new IndexEntry(fields[1], Long.parseLong(fields[2]), Integer.parseInt(fields[3])));
+            } catch (NumberFormatException e) {
+                // same
+            }
+        }
+    }
+
+    private static String key(OutputFormat format, String variant, Consumer<MessageDigest> content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        String header = variant.isEmpty() ? "riscv-asm " + VERSION + ' ' + format.name() + '\n'
+                : "riscv-asm " + VERSION + ' ' + format.name() + ' ' + variant + '\n'; // plain keys stay as they were
+        digest.update(header.getBytes(StandardCharsets.US_ASCII));
+        content.accept(digest);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void digestUtf8(CharSequence text, MessageDigest digest) {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(ENCODE_CHUNK_CHARS * 3 + 3);
+        char[] chunk = new char[ENCODE_CHUNK_CHARS + 1];
+        int carried = 0; // first half of a surrogate pair cut by the chunk boundary
+        int position = 0;
+        int length = text.length();
+        do {
+            int count = Math.min(ENCODE_CHUNK_CHARS, length - position);
+            for (int i = 0; i < count; i++) {
+                chunk[carried + i] = text.charAt(position + i);
+            }
+            position += count;
+            CharBuffer chars = CharBuffer.wrap(chunk, 0, carried + count);
+            encoder.encode(chars, bytes, position == length);
+            carried = chars.remaining();
+            chars.get(chunk, 0, carried);
+            digest.update(bytes.flip());
+            bytes.clear();
+        } while (position < length);
+        encoder.flush(bytes);
+        digest.update(bytes.flip());
+    }
+
+    private static void writeFully(OutputStream out, ByteBuffer contents) throws IOException {
+        ByteBuffer buffer = contents.duplicate();
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.get(copy);
+        out.write(copy);
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+}
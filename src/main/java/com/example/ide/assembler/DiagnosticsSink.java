@@ -0,0 +1,21 @@
+package com.example.ide.assembler;
+
+import com.example.ide.assembler.RISCV.AssemblerError;
+
+import java.io.PrintStream;
+
+// Receives the diagnostics produced by the assembler core.
+// The core never touches the UI; the IDE, the command line and tests each plug in their own sink.
+@FunctionalInterface
+public interface DiagnosticsSink {
+
+    void report(AssemblerError error);
+
+    // Sink that drops everything, for callers that only look at the returned error list
+    DiagnosticsSink NONE = error -> { };
+
+    // Sink that prints each diagnostic on its own line, prefixed with the file it belongs to
+    static DiagnosticsSink printing(PrintStream out, String fileName) {
+        return error -> out.println(fileName + ": " + error);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.ide.assembler;
+
+import com.example.ide.assembler.RISCV.Instruction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Writes encoded machine words to disk in one of the OutputFormats.
+// The whole image is built in a single buffer and handed to a FileChannel in one bulk write.
+public class MachineCodeWriter {
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ERROR_LINE = "ERROR".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEX_RECORD_BYTES = 16;
+
+    public static void write(Path outputFile, int[] words, OutputFormat format) throws IOException {
+        write(outputFile, format(words, format));
+    }
+
+    // The file contents for words in a format, ready to be read (or written)
+    public static ByteBuffer format(int[] words, OutputFormat format) {
+        ByteBuffer buffer = switch (format) {
+            case TEXT -> toText(words);
+            case RAW -> toRaw(words);
+            case INTEL_HEX -> toIntelHex(words);
+        };
+        return buffer.flip();
+    }
+
+    // Writes the remaining bytes of the buffer as the whole file, leaving the buffer's position unchanged
+    public static void write(Path outputFile, ByteBuffer contents) throws IOException {
+        ByteBuffer buffer = contents.duplicate();
+        try (FileChannel channel = FileChannel.open(outputFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    // Same layout as the original listing: one binary string (or ERROR) per line
+    private static ByteBuffer toText(int[] words) {
+        ByteBuffer buffer = ByteBuffer.allocate(words.length * (32 + LINE_SEPARATOR.length));
+        for (int word : words) {
+            if (word == Instruction.INVALID) {
+                buffer.put(ERROR_LINE);
+            } else {
+                for (int bit = 31; bit >= 0; bit--) {
+                    buffer.put((byte) ('0' + ((word >>> bit) & 1)));
+                }
+            }
+            buffer.put(LINE_SEPARATOR);
+        }
+        return buffer;
+    }
+
+    private static ByteBuffer toRaw(int[] words) {
+        ByteBuffer buffer = ByteBuffer.allocate(words.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int word : words) {
+            buffer.putInt(word);
+        }
+        return buffer;
+    }
+
+    // Data records of 16 bytes, with an extended linear address record every time the upper 16 address bits change
+    private static ByteBuffer toIntelHex(int[] words) {
+        long totalBytes = (long) words.length * 4;
+        long records = (totalBytes + HEX_RECORD_BYTES - 1) / HEX_RECORD_BYTES;
+        long segments = (totalBytes >>> 16) + 1;
+        // ":LLAAAATT" + data + "CC" + separator per record, plus the address records and the end-of-file record
+        long capacity = records * (11 + 2 * HEX_RECORD_BYTES + LINE_SEPARATOR.length)
+                + (segments + 1) * (11 + 4 + LINE_SEPARATOR.length);
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(capacity));
+
+        byte[] data = new byte[HEX_RECORD_BYTES];
+        for (long address = 0; address < totalBytes; address += HEX_RECORD_BYTES) {
+            if ((address & 0xFFFF) == 0 && address != 0) {
+                int upper = (int) (address >>> 16);
+                putRecord(buffer, 0, 0x04, new byte[]{(byte) (upper >>> 8), (byte) upper}, 2);
+            }
+            int length = (int) Math.min(HEX_RECORD_BYTES, totalBytes - address);
+            for (int i = 0; i < length; i++) {
+                int word = words[(int) ((address + i) >>> 2)];
+                data[i] = (byte) (word >>> (8 * ((address + i) & 3))); // little-endian byte order
+            }
+            putRecord(buffer, (int) (address & 0xFFFF), 0x00, data, length);
+        }
+        putRecord(buffer, 0, 0x01, data, 0); // End of file
+        return buffer;
+    }
+
+    private static void putRecord(ByteBuffer buffer, int address, int type, byte[] data, int length) {
+        int checksum = length + (address >>> 8) + address + type;
+        buffer.put((byte) ':');
+        putHexByte(buffer, length);
+        putHexByte(buffer, address >>> 8);
+        putHexByte(buffer, address);
+        putHexByte(buffer, type);
+        for (int i = 0; i < length; i++) {
+            putHexByte(buffer, data[i]);
+            checksum += data[i];
+        }
+        putHexByte(buffer, -checksum);
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    private static void putHexByte(ByteBuffer buffer, int value) {
+        buffer.put(HEX_DIGITS[(value >>> 4) & 0xF]);
+        buffer.put(HEX_DIGITS[value & 0xF]);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.ide.assembler;
+
+import com.example.ide.assembler.RISCV.AssemblerError;
+import com.example.ide.assembler.RISCV.PeepholeOptimizer;
+import com.example.ide.assembler.RISCV.RiscVAssembler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+
+// Command line entry point for batch assembly without the IDE.
+// Usage: Main [--format=text|raw|hex] [--build-dir=DIR] [--watch | --connect=SOCKET | --optimize]
+//             <file.asm | directory>...
+//        Main --daemon=SOCKET
+// Directories are searched recursively for .asm files. Output goes to the build directory (BuildCache.DEFAULT_DIRECTORY
+// unless given), at each file's path below the directory it was found in (files named directly go to the top), and
+// files unchanged since the last build there are taken from its cache.
+// With --watch the arguments must be directories; they are built, then rebuilt as their files change until killed.
+// --daemon runs an AssemblerDaemon on the socket until killed; --connect has files that are not cached assembled by it.
+// --optimize runs the PeepholeOptimizer and prints what it changed in every file it assembled; optimized outputs are
+// cached apart from plain ones.
+public class Main {
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: Main [--format=text|raw|hex] [--build-dir=DIR] "
+                    + "[--watch | --connect=SOCKET | --optimize] <file.asm | directory>...");
+            System.err.println("       Main --daemon=SOCKET");
+            System.exit(2);
+        }
+        if (args.length == 1 && args[0].startsWith("--daemon=")) {
+            runDaemon(Paths.get(args[0].substring("--daemon=".length())));
+            return;
+        }
+
+        OutputFormat format = OutputFormat.TEXT;
+        Path buildDirectory = BuildCache.DEFAULT_DIRECTORY;
+        boolean watch = false;
+        boolean optimize = false;
+        Path daemonSocket = null;
+        List<Path> sources = new ArrayList<>();
+        List<Path> roots = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--format=")) {
+                try {
+                    format = OutputFormat.fromName(arg.substring("--format=".length()));
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    System.exit(2);
+                }
+                continue;
+            }
+            if (arg.startsWith("--build-dir=")) {
+                buildDirectory = Paths.get(arg.substring("--build-dir=".length()));
+                continue;
+            }
+            if (arg.equals("--watch")) {
+                watch = true;
+                continue;
+            }
+            if (arg.equals("--optimize")) {
+                optimize = true;
+                continue;
+            }
+            if (arg.startsWith("--connect=")) {
+                daemonSocket = Paths.get(arg.substring("--connect=".length()));
+                continue;
+            }
+            roots.add(Paths.get(arg));
+            try {
+                collectSources(Paths.get(arg), sources);
+            } catch (IOException e) {
+                System.err.println("Error reading " + arg + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+
+        if ((watch ? 1 : 0) + (daemonSocket != null ? 1 : 0) + (optimize ? 1 : 0) > 1) {
+            System.err.println("Only one of --watch, --connect and --optimize can be given");
+            System.exit(2);
+        }
+
+        BuildCache cache;
+        try {
+            cache = optimize ? BuildCache.open(buildDirectory, "optimized") : BuildCache.open(buildDirectory);
+        } catch (IOException e) {
+            System.err.println("Error using build directory " + buildDirectory + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        if (watch) {
+            watch(roots, format, cache);
+            return;
+        }
+
+        // Files are assembled in parallel; diagnostics are printed afterwards, grouped per file in source order
+        ProjectBuilder.BuildResult result;
+        Map<Path, PeepholeOptimizer.Report> reports = new ConcurrentSkipListMap<>();
+        if (daemonSocket == null) {
+            try {
+                result = optimize
+                        ? ProjectBuilder.build(roots, sources, format, cache, (source, code, errors) -> {
+                            PeepholeOptimizer.Report report = new PeepholeOptimizer.Report();
+                            reports.put(source, report);
+                            return RiscVAssembler.assembleOptimized(code, errors, report);
+                        })
+                        : ProjectBuilder.build(roots, sources, format, cache);
+            } catch (IOException e) {
+                System.err.println("Error using build directory " + buildDirectory + ": " + e.getMessage());
+                System.exit(2);
+                return;
+            }
+        } else {
+            try (AssemblerDaemon.Client client = new AssemblerDaemon.Client(daemonSocket)) {
+                result = ProjectBuilder.build(roots, sources, format, cache, client);
+            } catch (IOException e) {
+                System.err.println("Error using the assembler daemon on " + daemonSocket + ": " + e.getMessage());
+                System.exit(2);
+                return;
+            }
+        }
+        printReports(reports);
+        printResult(result);
+        System.exit(result.hasErrors() ? 1 : 0);
+    }
+
+    // Builds and watches every root until the process is killed, or one of the watches fails
+    private static void watch(List<Path> roots, OutputFormat format, BuildCache cache) {
+        CountDownLatch failed = new CountDownLatch(1);
+        ProjectWatcher.Listener listener = new ProjectWatcher.Listener() {
+            @Override
+            public synchronized void built(List<Path> sources, ProjectBuilder.BuildResult result) {
+                printResult(result);
+            }
+
+            @Override
+            public synchronized void deleted(List<Path> sources) {
+                for (Path source : sources) {
+                    System.out.println("Deleted " + source);
+                }
+            }
+
+            @Override
+            public void failed(IOException error) {
+                System.err.println("Watch stopped: " + error.getMessage());
+                failed.countDown();
+            }
+        };
+        for (Path root : roots) {
+            if (!Files.isDirectory(root)) {
+                System.err.println("--watch needs directories: " + root);
+                System.exit(2);
+            }
+            try {
+                ProjectWatcher watcher = ProjectWatcher.start(root, format, cache, listener);
+                System.out.println("Watching " + watcher.getDirectoryCount() + " directories below " + watcher.getRoot());
+            } catch (IOException e) {
+                System.err.println("Error watching " + root + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+        try {
+            failed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.exit(2);
+    }
+
+    private static void runDaemon(Path socket) {
+        AssemblerDaemon daemon;
+        try {
+            daemon = AssemblerDaemon.bind(socket);
+        } catch (IOException e) {
+            System.err.println("Cannot listen on " + socket + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                // exiting anyway
+            }
+        }));
+        daemon.warmUp();
+        System.out.println("Assembler daemon listening on " + socket);
+        try {
+            daemon.serve();
+        } catch (IOException e) {
+            System.err.println("Assembler daemon stopped: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static void printResult(ProjectBuilder.BuildResult result) {
+        for (Map.Entry<Path, List<AssemblerError>> entry : result.getErrors().entrySet()) {
+            DiagnosticsSink sink = DiagnosticsSink.printing(System.err, entry.getKey().toString());
+            entry.getValue().forEach(sink::report);
+        }
+        System.out.println("Assembled " + result.getFileCount() + " file(s), " + result.getCachedCount()
+                + " from cache, " + result.getErrors().size() + " with errors, in " + result.getElapsedMillis() + " ms");
+    }
+
+    // What the optimizer did to each file it assembled (files taken from the cache were reported when they were built)
+    private static void printReports(Map<Path, PeepholeOptimizer.Report> reports) {
+        for (Map.Entry<Path, PeepholeOptimizer.Report> entry : reports.entrySet()) {
+            PeepholeOptimizer.Report report = entry.getValue();
+            if (report.isSkipped()) {
+                System.out.println(entry.getKey() + ": not optimized, " + report.getSkipReason());
+                continue;
+            }
+            System.out.println(entry.getKey() + ": " + report.getInstructionsBefore() + " -> "
+                    + report.getInstructionsAfter() + " instructions");
+            for (PeepholeOptimizer.Change change : report.getChanges()) {
+                System.out.println("  " + change);
+            }
+        }
+    }
+
+    // Adds the file itself, or every .asm file below it if it is a directory
+    private static void collectSources(Path path, List<Path> sources) throws IOException {
+        if (!Files.isDirectory(path)) {
+            sources.add(path);
+            return;
+        }
+        sources.addAll(ProjectBuilder.findSources(path));
+    }
+}
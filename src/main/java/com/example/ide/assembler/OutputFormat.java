@@ -0,0 +1,31 @@
+package com.example.ide.assembler;
+
+// Layouts the assembler can write machine code in
+public enum OutputFormat {
+    // One 32 character '0'/'1' line per instruction, the original .bin listing
+    TEXT(".bin"),
+    // Raw little-endian 32-bit words, ready to be loaded into memory as-is
+    RAW(".img"),
+    // Intel HEX records with 16 data bytes per line
+    INTEL_HEX(".hex");
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    // Parse a command line name such as "raw" or "hex"
+    public static OutputFormat fromName(String name) {
+        return switch (name.toLowerCase()) {
+            case "text", "bin" -> TEXT;
+            case "raw", "img" -> RAW;
+            case "hex", "ihex", "intel_hex" -> INTEL_HEX;
+            default -> throw new IllegalArgumentException("Unknown output format: " + name);
+        };
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.ide.assembler;
+
+import com.example.ide.assembler.RISCV.AssemblerError;
+import com.example.ide.assembler.RISCV.RiscVAssembler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+// Assembles every .asm file of a project in parallel, into the build directory of a BuildCache, with RiscVAssembler or
+// any other SourceAssembler (such as an AssemblerDaemon.Client).
+// The file list is split recursively on a ForkJoinPool, so idle workers steal halves from busy ones and a few large
+// files do not hold up the rest. Each task only returns its own per-file error lists; they are merged on the way back
+// up, which keeps the workers free of shared mutable state (the cache is built for concurrent use). Files unchanged
+// since they were last built cost one hash each.
+// Outputs mirror each source's path below its root (BuildCache.projectPath). Sources that would still share an output
+// (main.asm named directly next to a project that has one) are reported as errors instead of overwriting each other.
+public class ProjectBuilder {
+
+    // Assembles one source: adds the errors to the list and returns the words, or null if nothing could be encoded.
+    // source is the file code was read from, for assemblers that report per file.
+    @FunctionalInterface
+    public interface SourceAssembler {
+        int[] assemble(Path source, CharSequence code, List<AssemblerError> errors) throws IOException;
+    }
+
+    public static class BuildResult {
+        private final int fileCount;
+        private final int cachedCount;
+        private final Map<Path, List<AssemblerError>> errors;
+        private final long elapsedMillis;
+
+        BuildResult(int fileCount, int cachedCount, Map<Path, List<AssemblerError>> errors, long elapsedMillis) {
+            this.fileCount = fileCount;
+            this.cachedCount = cachedCount;
+            this.errors = errors;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getFileCount() {
+            return fileCount;
+        }
+
+        // Files served from the build cache instead of being assembled
+        public int getCachedCount() {
+            return cachedCount;
+        }
+
+        // Errors of the files that failed, in source order
+        public Map<Path, List<AssemblerError>> getErrors() {
+            return errors;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+    }
+
+    // All .asm files below the directory, sorted by path
+    public static List<Path> findSources(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(file -> Files.isRegularFile(file) && file.getFileName().toString().endsWith(".asm"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    public static BuildResult build(Path directory, OutputFormat format, BuildCache cache) throws IOException {
+        return build(List.of(directory), findSources(directory), format, cache);
+    }
+
+    // roots are the directories the sources were found in
+    public static BuildResult build(List<Path> roots, List<Path> sources, OutputFormat format, BuildCache cache)
+            throws IOException {
+        return build(roots, sources, format, cache, (source, code, errors) -> RiscVAssembler.assemble(code, errors));
+    }
+
+    // Builds the sources, then saves the cache index
+    public static BuildResult build(List<Path> roots, List<Path> sources, OutputFormat format, BuildCache cache,
+                                    SourceAssembler assembler) throws IOException {
+        long startTime = System.nanoTime();
+        List<Path> files = sources.stream().distinct().toList();
+        List<Path> names = new ArrayList<>(files.size());
+        Map<Path, Path> writers = new HashMap<>(); // output file -> the first source that writes it
+        for (Path file : files) {
+            Path name = BuildCache.projectPath(roots, file);
+            names.add(name);
+            writers.putIfAbsent(cache.outputFile(name, format), file);
+        }
+        Partial result = files.isEmpty()
+                ? new Partial()
+                : ForkJoinPool.commonPool().invoke(new AssembleTask(files, names, writers, 0, files.size(), format,
+                        cache, assembler));
+        cache.flush();
+        return new BuildResult(files.size(), result.cached, result.errors, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    // Errors and cache hits of a range of the sources
+    private static class Partial {
+        final Map<Path, List<AssemblerError>> errors = new LinkedHashMap<>();
+        int cached;
+    }
+
+    // Serializable only because every ForkJoinTask is; tasks never leave the pool, so their fields need not be
+    @SuppressWarnings("serial")
+    private static class AssembleTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> sources;
+        private final List<Path> names;        // projectPath of each source
+        private final Map<Path, Path> writers; // read only
+        private final int from;
+        private final int to;
+        private final OutputFormat format;
+        private final BuildCache cache;
+        private final SourceAssembler assembler;
+
+        AssembleTask(List<Path> sources, List<Path> names, Map<Path, Path> writers, int from, int to,
+                     OutputFormat format, BuildCache cache, SourceAssembler assembler) {
+            this.sources = sources;
+            this.names = names;
+            this.writers = writers;
+            this.from = from;
+            this.to = to;
+            this.format = format;
+            this.cache = cache;
+            this.assembler = assembler;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from == 1) {
+                return buildFile(sources.get(from), names.get(from));
+            }
+
+            int middle = (from + to) >>> 1;
+            AssembleTask left = new AssembleTask(sources, names, writers, from, middle, format, cache, assembler);
+            left.fork();
+            Partial right = new AssembleTask(sources, names, writers, middle, to, format, cache, assembler).compute();
+            Partial result = left.join();
+            result.errors.putAll(right.errors); // left half first keeps source order
+            result.cached += right.cached;
+            return result;
+        }
+
+        private Partial buildFile(Path source, Path name) {
+            Partial result = new Partial();
+            Path output = cache.outputFile(name, format);
+            List<AssemblerError> fileErrors;
+            if (!writers.get(output).equals(source)) {
+                fileErrors = List.of(new AssemblerError(0, "Not built: " + writers.get(output) + " has the same output "
+                        + output));
+            } else {
+                try {
+                    SourceText code = SourceText.open(source);
+                    if (code.isEmpty()) {
+                        fileErrors = List.of(new AssemblerError(0,
+                                "Error reading the assembly file or the file is empty."));
+                    } else {
+                        BuildCache.Result built = cache.build(name, code, format,
+                                errors -> assembler.assemble(source, code, errors));
+                        fileErrors = built.getErrors();
+                        result.cached = built.isCached() ? 1 : 0;
+                    }
+                } catch (IOException e) {
+                    fileErrors = List.of(new AssemblerError(0, "Error building " + source + ": " + e.getMessage()));
+                }
+            }
+            if (!fileErrors.isEmpty()) {
+                result.errors.put(source, new ArrayList<>(fileErrors));
+            }
+            return result;
+        }
+    }
+}
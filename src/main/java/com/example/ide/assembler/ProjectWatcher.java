@@ -0,0 +1,234 @@
+package com.example.ide.assembler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Continuous build: assembles a project once, then again whenever its .asm files change on disk.
+// Every directory below the root is registered with one WatchService (watches are per directory, so a project of tens
+// of thousands of files needs only as many watches as it has directories). Events are collected until the tree has
+// been quiet for QUIET_MILLIS, or for at most MAX_DELAY_MILLIS while it keeps changing, so a tool regenerating many
+// files triggers one build of all of them instead of one per write. Only the changed files are rebuilt, through
+// ProjectBuilder and the BuildCache; a lost event (OVERFLOW) falls back to a build of the whole tree, which the cache
+// keeps cheap. Deleted files have their outputs removed and are reported, so their errors can be cleared. Directories
+// that vanish before they can be walked (temporary ones of code generators) are skipped.
+// All of this runs on a single daemon thread and results go to the Listener on that thread.
+public class ProjectWatcher implements Closeable {
+    private static final long QUIET_MILLIS = 200;
+    private static final long MAX_DELAY_MILLIS = 2000;
+
+    public interface Listener {
+        // After every build; sources are the files that were assembled, in path order
+        void built(List<Path> sources, ProjectBuilder.BuildResult result);
+
+        // After sources that were built have been deleted, and their outputs with them; in path order
+        void deleted(List<Path> sources);
+
+        // The watch cannot continue, or a build could not save the cache
+        void failed(IOException error);
+    }
+
+    private final Path root;
+    private final OutputFormat format;
+    private final BuildCache cache;
+    private final Listener listener;
+    private final WatchService watchService;
+    private final Thread thread;
+    private final Set<WatchKey> keys = ConcurrentHashMap.newKeySet(); // one per watched directory
+    private final TreeSet<Path> sources = new TreeSet<>(); // the files built so far; only touched by the watch thread
+    private List<Path> initialSources;
+
+    private ProjectWatcher(Path root, OutputFormat format, BuildCache cache, Listener listener) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.format = format;
+        this.cache = cache;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::run, "project-watcher");
+        thread.setDaemon(true);
+    }
+
+    // Registers the directories, then builds the whole project and keeps watching it in the background until close()
+    public static ProjectWatcher start(Path root, OutputFormat format, BuildCache cache, Listener listener) throws IOException {
+        ProjectWatcher watcher = new ProjectWatcher(root, format, cache, listener);
+        try {
+            watcher.initialSources = new ArrayList<>();
+            watcher.register(watcher.root, watcher.initialSources);
+        } catch (IOException | RuntimeException e) {
+            watcher.watchService.close();
+            throw e;
+        }
+        watcher.thread.start();
+        return watcher;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    // Number of directories being watched
+    public int getDirectoryCount() {
+        return keys.size();
+    }
+
+    // Stops watching; a build in progress finishes first, but its results are still reported
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+
+    private void run() {
+        try {
+            build(initialSources);
+            initialSources = null;
+            while (true) {
+                WatchKey key = watchService.take();
+                TreeSet<Path> changed = new TreeSet<>();
+                boolean overflow = collect(key, changed);
+                long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+                // Coalesce the burst: wait until nothing has happened for QUIET_MILLIS
+                while (System.currentTimeMillis() < deadline) {
+                    key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    overflow |= collect(key, changed);
+                }
+                if (overflow) {
+                    List<Path> found = new ArrayList<>();
+                    register(root, found); // directories created meanwhile were missed too
+                    TreeSet<Path> gone = new TreeSet<>(sources);
+                    gone.removeAll(found);
+                    delete(gone);
+                    build(found);
+                } else {
+                    TreeSet<Path> gone = new TreeSet<>();
+                    for (Path file : changed) {
+                        if (!Files.isRegularFile(file)) {
+                            gone.add(file); // deleted, or never an .asm file
+                        }
+                    }
+                    changed.removeAll(gone);
+                    gone.retainAll(sources);
+                    delete(gone);
+                    if (!changed.isEmpty()) {
+                        build(new ArrayList<>(changed));
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        } catch (IOException e) {
+            listener.failed(e);
+        }
+    }
+
+    // Adds the .asm files an event key reports to changed, registering new directories (and the files already in
+    // them, which were created before the watch could see them); returns true if events were lost
+    private boolean collect(WatchKey key, TreeSet<Path> changed) throws IOException {
+        Path directory = (Path) key.watchable();
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+                List<Path> found = new ArrayList<>();
+                register(file, found);
+                changed.addAll(found);
+            } else if (file.getFileName().toString().endsWith(".asm")) {
+                changed.add(file);
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                // A directory deleted or moved away; its files are not always reported one by one
+                for (Path source : sources) {
+                    if (source.startsWith(file)) {
+                        changed.add(source);
+                    }
+                }
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key); // the directory was deleted
+        }
+        return overflow;
+    }
+
+    // Watches start and every directory below it except the build directory, adding the .asm files found to found;
+    // anything deleted while it is walked is left out
+    private void register(Path start, List<Path> found) throws IOException {
+        Path buildDirectory = cache.getDirectory().toAbsolutePath().normalize();
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                if (directory.equals(buildDirectory)) {
+                    return FileVisitResult.SKIP_SUBTREE; // its writes would only wake the watch up
+                }
+                try {
+                    keys.add(directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+                } catch (NoSuchFileException e) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException error) throws IOException {
+                if (error instanceof NoSuchFileException && !file.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw error;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && file.getFileName().toString().endsWith(".asm")) {
+                    found.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void build(List<Path> files) {
+        files.sort(null);
+        sources.addAll(files);
+        try {
+            listener.built(files, ProjectBuilder.build(List.of(root), files, format, cache));
+        } catch (IOException e) {
+            listener.failed(e); // the outputs were written; only the index could not be saved
+        }
+    }
+
+    private void delete(TreeSet<Path> files) throws IOException {
+        if (files.isEmpty()) {
+            return;
+        }
+        sources.removeAll(files);
+        for (Path file : files) {
+            cache.remove(root.relativize(file), format);
+        }
+        cache.flush();
+        listener.deleted(new ArrayList<>(files));
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.ide.assembler.RISCV;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Re-assembles a document as it is edited, keeping the tokens, instructions and encoded words of every line.
+// Each update hashes the lines of the new text, keeps the unchanged lines at both ends of the document as they are,
+// and only lexes, parses and encodes the lines in between that were not seen before. The word array and the
+// instruction list are patched over the changed range instead of being rebuilt.
+//
+// Every line is assembled on its own, so an instruction has to fit on one line (as it does in every source here);
+// a line holding only operands is reported as such instead of being glued onto the instruction above it.
+// Labels may point anywhere in the document, so their references are linked again after every update; that pass
+// only visits the lines with labels, and lexes or parses nothing.
+public class IncrementalAssembler {
+    private static final LineResult BLANK_LINE = new LineResult(List.of(), new int[0], List.of(), null, null);
+
+    private long[] lineHashes = new long[0];
+    private LineResult[] lines = new LineResult[0];
+    private int[] words = new int[0];
+    private final List<Instruction> instructions = new ArrayList<>();
+    private int reassembledLines;
+
+    // Everything the assembler produced for one line; error line numbers are relative to the line (1, or 0 if unknown).
+    // words are as encoded, before any label offset is patched in; tokens and labels are null on lines without labels.
+    private static final class LineResult {
+        final List<Instruction> instructions;
+        final int[] words;
+        final List<AssemblerError> errors;
+        final TokenBuffer tokens;
+        final Labels labels;
+
+        LineResult(List<Instruction> instructions, int[] words, List<AssemblerError> errors, TokenBuffer tokens,
+                   Labels labels) {
+            this.instructions = instructions;
+            this.words = words;
+            this.errors = errors;
+            this.tokens = tokens;
+            this.labels = labels;
+        }
+    }
+
+    // Brings the cached program in line with the new text and returns all errors, ordered by line
+    public List<AssemblerError> update(CharSequence text) {
+        int[] lineStarts = lineStarts(text);
+        int lineCount = lineStarts.length - 1;
+        long[] newHashes = new long[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+            newHashes[i] = hash(text, lineStarts[i], lineEnd(lineStarts, i));
+        }
+
+        // Unchanged lines at the start and at the end of the document
+        int oldCount = lineHashes.length;
+        int prefix = 0;
+        while (prefix < oldCount && prefix < lineCount && lineHashes[prefix] == newHashes[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldCount - prefix && suffix < lineCount - prefix
+                && lineHashes[oldCount - 1 - suffix] == newHashes[lineCount - 1 - suffix]) {
+            suffix++;
+        }
+
+        // Lines of the old changed range, so that lines which were only moved are not assembled again
+        Map<Long, LineResult> moved = new HashMap<>();
+        for (int i = prefix; i < oldCount - suffix; i++) {
+            moved.put(lineHashes[i], lines[i]);
+        }
+
+        LineResult[] newLines = new LineResult[lineCount];
+        System.arraycopy(lines, 0, newLines, 0, prefix);
+        System.arraycopy(lines, oldCount - suffix, newLines, lineCount - suffix, suffix);
+        reassembledLines = 0;
+        for (int i = prefix; i < lineCount - suffix; i++) {
+            LineResult result = moved.get(newHashes[i]);
+            if (result == null) {
+                result = assembleLine(text, lineStarts[i], lineEnd(lineStarts, i));
+                reassembledLines++;
+            }
+            newLines[i] = result;
+        }
+
+        patch(newLines, prefix, oldCount - suffix, lineCount - suffix);
+        lines = newLines;
+        lineHashes = newHashes;
+        return collectErrors(linkLabels());
+    }
+
+    // Encoded program, one word per instruction (Instruction.INVALID where an instruction has errors)
+    public int[] getWords() {
+        return words;
+    }
+
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    // Source line (from 1) of every word, to map machine code addresses back to the text
+    public int[] getWordLines() {
+        int[] wordLines = new int[words.length];
+        int word = 0;
+        for (int i = 0; i < lines.length; i++) {
+            for (int j = 0; j < lines[i].words.length; j++) {
+                wordLines[word++] = i + 1;
+            }
+        }
+        return wordLines;
+    }
+
+    public int getLineCount() {
+        return lines.length;
+    }
+
+    // Number of lines that had to be assembled by the last update
+    public int getReassembledLines() {
+        return reassembledLines;
+    }
+
+    // Replaces the words and instructions of old lines [from, oldTo) with those of new lines [from, newTo)
+    private void patch(LineResult[] newLines, int from, int oldTo, int newTo) {
+        int firstWord = 0;
+        for (int i = 0; i < from; i++) {
+            firstWord += lines[i].words.length;
+        }
+        int oldWords = 0;
+        for (int i = from; i < oldTo; i++) {
+            oldWords += lines[i].words.length;
+        }
+        int newWords = 0;
+        List<Instruction> changed = new ArrayList<>();
+        for (int i = from; i < newTo; i++) {
+            newWords += newLines[i].words.length;
+            changed.addAll(newLines[i].instructions);
+        }
+
+        // Words: overwrite in place when the count is unchanged, otherwise splice into a new array
+        int[] target = words;
+        if (newWords != oldWords) {
+            target = new int[words.length - oldWords + newWords];
+            System.arraycopy(words, 0, target, 0, firstWord);
+            System.arraycopy(words, firstWord + oldWords, target, firstWord + newWords,
+                    words.length - firstWord - oldWords);
+        }
+        int position = firstWord;
+        for (int i = from; i < newTo; i++) {
+            int[] lineWords = newLines[i].words;
+            System.arraycopy(lineWords, 0, target, position, lineWords.length);
+            position += lineWords.length;
+        }
+        words = target;
+
+        // Instructions map one to one onto words
+        List<Instruction> range = instructions.subList(firstWord, firstWord + oldWords);
+        range.clear();
+        range.addAll(changed);
+    }
+
+    // Resolves every label reference in the document; returns the label errors, with document line numbers
+    private List<AssemblerError> linkLabels() {
+        int definitions = 0;
+        boolean hasLabels = false;
+        for (LineResult line : lines) {
+            if (line.labels != null) {
+                definitions += line.labels.definitionCount();
+                hasLabels = true;
+            }
+        }
+        if (!hasLabels) {
+            return List.of();
+        }
+
+        List<AssemblerError> errors = new ArrayList<>();
+        LabelLinker linker = new LabelLinker(words, definitions, errors);
+        int firstWord = 0;
+        for (int i = 0; i < lines.length; i++) {
+            LineResult line = lines[i];
+            if (line.labels != null) {
+                // Start again from the words as encoded, the offsets patched in by the last update may have moved
+                System.arraycopy(line.words, 0, words, firstWord, line.words.length);
+                line.labels.link(linker, line.tokens, line.instructions, firstWord, i + 1);
+            }
+            firstWord += line.words.length;
+        }
+        linker.finish();
+        return errors;
+    }
+
+    private List<AssemblerError> collectErrors(List<AssemblerError> labelErrors) {
+        List<AssemblerError> errors = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            for (AssemblerError error : lines[i].errors) {
+                errors.add(new AssemblerError(i + 1, error.getMessage()));
+            }
+        }
+        if (!labelErrors.isEmpty()) {
+            errors.addAll(labelErrors);
+            errors.sort(Comparator.comparingInt(AssemblerError::getLine));
+        }
+        if (instructions.isEmpty() && errors.isEmpty()) {
+            errors.add(new AssemblerError(lines.length, "Empty or invalid instruction."));
+        }
+        return errors;
+    }
+
+    private static LineResult assembleLine(CharSequence text, int start, int end) {
+        if (isBlank(text, start, end)) {
+            return BLANK_LINE;
+        }
+        List<AssemblerError> errors = new ArrayList<>();
+        TokenBuffer tokens = new Lexer(text.subSequence(start, end), errors).scanTokens();
+        Parser parser = new Parser(errors);
+        List<Instruction> lineInstructions = parser.parse(tokens);
+        int[] lineWords = Instruction.encode(lineInstructions);
+        Labels labels = parser.getLabels();
+        return new LineResult(lineInstructions, lineWords, errors.isEmpty() ? List.of() : errors,
+                labels.isEmpty() ? null : tokens, labels.isEmpty() ? null : labels);
+    }
+
+    private static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '#') {
+                return true; // only a comment follows
+            }
+            if (c != ' ' && c != '\t' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Start offset of every line, plus one past the end of the text
+    private static int[] lineStarts(CharSequence text) {
+        int[] starts = new int[16];
+        int count = 1;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                if (count + 1 >= starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        starts[count] = length + 1;
+        return Arrays.copyOf(starts, count + 1);
+    }
+
+    // End of line i, excluding its '\n'
+    private static int lineEnd(int[] lineStarts, int i) {
+        return lineStarts[i + 1] - 1;
+    }
+
+    // 64-bit FNV-1a over the characters of a line
+    private static long hash(CharSequence text, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
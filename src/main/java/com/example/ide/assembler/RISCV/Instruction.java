@@ -1,16 +1,28 @@
 package com.example.ide.assembler.RISCV;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class Instruction {
+    // Encoded value of an instruction that could not be assembled.
+    // The all-zero word is permanently reserved as an illegal instruction in RISC-V, so it never collides with real output.
+    public static final int INVALID = 0;
+
     private final TokenType opcode; // The mnemonic (e.g., ADD, SUB)
-    private final List<Token> operands; // List of operands (e.g., registers, immediates)
+    private final TokenBuffer tokens; // Token stream the operands live in
+    private final int opcodeToken; // Index of the mnemonic token
+    private final int firstOperand; // Position of the first operand in the buffer's operand lists
+    private final int operandCount; // Number of operands (e.g., registers, immediates)
     private final List<AssemblerError> errors; // Shared error list
 
     // Constructor
-    public Instruction(TokenType opcode, List<Token> operands, List<AssemblerError> errors) {
+    public Instruction(TokenType opcode, TokenBuffer tokens, int opcodeToken, int firstOperand, int operandCount,
+                       List<AssemblerError> errors) {
         this.opcode = opcode;
-        this.operands = operands;
+        this.tokens = tokens;
+        this.opcodeToken = opcodeToken;
+        this.firstOperand = firstOperand;
+        this.operandCount = operandCount;
         this.errors = errors;
     }
 
@@ -18,309 +30,410 @@ public class Instruction {
         return opcode;
     }
 
+    // Source line the instruction starts on
+    public int getLine() {
+        return tokens.line(opcodeToken);
+    }
+
+    // Operands materialized as Token objects; the encoder itself reads them straight from the buffer
     public List<Token> getOperands() {
+        List<Token> operands = new ArrayList<>(operandCount);
+        for (int i = 0; i < operandCount; i++) {
+            operands.add(tokens.token(operand(i)));
+        }
         return operands;
     }
 
+    // Token index of the i-th operand
+    int operand(int i) {
+        return tokens.operand(firstOperand + i);
+    }
+
+    int operandCount() {
+        return operandCount;
+    }
+
+    int opcodeToken() {
+        return opcodeToken;
+    }
+
+    TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    // Token index of the label a branch or jump targets, or -1 if its target is not a label
+    int labelOperand() {
+        int target = switch (opcode) {
+            case BEQ, BNE -> operandCount == 3 ? operand(0) : -1;
+            case JAL -> operandCount == 2 ? operand(1) : -1;
+            default -> -1;
+        };
+        return target >= 0 && tokens.type(target) == TokenType.SYMBOL ? target : -1;
+    }
+
+    // Puts the pc-relative offset of a resolved label into the immediate of this branch or jump's encoded word
+    int patchLabel(int word, int offset) {
+        if (word == INVALID) {
+            return INVALID;
+        }
+        if (opcode == TokenType.JAL) {
+            if (offset < -(1 << 20) || offset >= 1 << 20) {
+                throw new IllegalArgumentException(labelRangeMessage(offset));
+            }
+            return (word & 0x00000FFF) | jTypeImmediate(offset);
+        }
+        if (offset < -(1 << 12) || offset >= 1 << 12) {
+            throw new IllegalArgumentException(labelRangeMessage(offset));
+        }
+        return (word & 0x01FFF07F) | bTypeImmediate(offset);
+    }
+
+    private String labelRangeMessage(int offset) {
+        return "Label " + tokens.lexeme(labelOperand()) + " is out of range for " + opcode + " (offset " + offset + ")";
+    }
+
     @Override
     public String toString() {
-        return opcode + " " + operands;
+        return opcode + " " + getOperands();
+    }
+
+    // Encode a whole program into machine words, one per instruction (INVALID where an instruction has errors)
+    public static int[] encode(List<Instruction> instructions) {
+        int[] words = new int[instructions.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = instructions.get(i).encode();
+        }
+        return words;
     }
 
-    // Convert the instruction to its machine code representation
+    // Convert the instruction to its machine code representation as a 32 character binary string
     public String toMachineCode() {
+        return toBinaryString(encode());
+    }
+
+    // Text form of an encoded word, as written to the .bin listing
+    public static String toBinaryString(int word) {
+        if (word == INVALID) {
+            return "ERROR";
+        }
+        char[] bits = new char[32];
+        for (int i = 0; i < 32; i++) {
+            bits[i] = (char) ('0' + ((word >>> (31 - i)) & 1));
+        }
+        return new String(bits);
+    }
+
+    // Convert the instruction to its 32-bit machine word
+    public int encode() {
         try {
             return switch (opcode) {
-                case ADD -> convertRTypeInstruction("0000000", "000"); // R-type
-                case SUB -> convertRTypeInstruction("0100000", "000"); // R-type
-                case XOR -> convertRTypeInstruction("0000000", "100"); // R-type
-                case OR -> convertRTypeInstruction("0000000", "110"); // R-type
-                case AND -> convertRTypeInstruction("0000000", "111"); // R-type
-                case ADDI -> convertITypeInstruction("0010011","000"); // I-type
-                case XORI -> convertITypeInstruction("0010011","100"); // I-type
-                case ORI -> convertITypeInstruction("0010011","110"); // I-type
-                case ANDI -> convertITypeInstruction("0010011","111"); // I-type
-                case LB -> convertITypeInstruction("0000011","000"); // I-type (Load byte)
-                case LH -> convertITypeInstruction("0000011","001"); // I-type (Load half-word)
-                case LW -> convertITypeInstruction("0000011","010"); // I-type (Load word)
-                case SB -> convertSTypeInstruction("000"); // S-type (Store byte)
-                case SH -> convertSTypeInstruction("001"); // S-type (Store half-word)
-                case SW -> convertSTypeInstruction("010"); // S-type (Store word)
-                case BEQ -> convertBTypeInstruction("000"); // B-type (Branch if equal)
-                case BNE -> convertBTypeInstruction("001"); // B-type (Branch if not equal)
+                case ADD -> convertRTypeInstruction(0b0000000, 0b000); // R-type
+                case SUB -> convertRTypeInstruction(0b0100000, 0b000); // R-type
+                case XOR -> convertRTypeInstruction(0b0000000, 0b100); // R-type
+                case OR -> convertRTypeInstruction(0b0000000, 0b110); // R-type
+                case AND -> convertRTypeInstruction(0b0000000, 0b111); // R-type
+                case ADDI -> convertITypeInstruction(0b0010011, 0b000); // I-type
+                case XORI -> convertITypeInstruction(0b0010011, 0b100); // I-type
+                case ORI -> convertITypeInstruction(0b0010011, 0b110); // I-type
+                case ANDI -> convertITypeInstruction(0b0010011, 0b111); // I-type
+                case LB -> convertITypeInstruction(0b0000011, 0b000); // I-type (Load byte)
+                case LH -> convertITypeInstruction(0b0000011, 0b001); // I-type (Load half-word)
+                case LW -> convertITypeInstruction(0b0000011, 0b010); // I-type (Load word)
+                case SB -> convertSTypeInstruction(0b000); // S-type (Store byte)
+                case SH -> convertSTypeInstruction(0b001); // S-type (Store half-word)
+                case SW -> convertSTypeInstruction(0b010); // S-type (Store word)
+                case BEQ -> convertBTypeInstruction(0b000); // B-type (Branch if equal)
+                case BNE -> convertBTypeInstruction(0b001); // B-type (Branch if not equal)
                 case JAL -> convertJTypeInstruction(); // J-type
                 case LUI -> convertUTypeInstruction(); // U-type
-                case FADD -> convertFTypeInstruction("00000", "000"); // F-type
-                case FSUB -> convertFTypeInstruction("00001", "000"); // F-type
-                case FMUL -> convertFTypeInstruction("00010", "000"); // F-type
-                case FDIV -> convertFTypeInstruction("00011", "000"); // F-type
-                case FMIN -> convertFTypeInstruction("00100", "001"); // F-type
-                case FMAX -> convertFTypeInstruction("00101", "010"); // F-type
-                case FSQRT -> convertFTypeInstruction("00110", "000"); // F-type
+                case FADD -> convertFTypeInstruction(0b00000, 0b000); // F-type
+                case FSUB -> convertFTypeInstruction(0b00001, 0b000); // F-type
+                case FMUL -> convertFTypeInstruction(0b00010, 0b000); // F-type
+                case FDIV -> convertFTypeInstruction(0b00011, 0b000); // F-type
+                case FMIN -> convertFTypeInstruction(0b00100, 0b001); // F-type
+                case FMAX -> convertFTypeInstruction(0b00101, 0b010); // F-type
+                case FSQRT -> convertFTypeInstruction(0b00110, 0b000); // F-type
                 default -> throw new IllegalArgumentException("Unsupported opcode: " + opcode);
             };
         } catch (Exception e) {
             errors.add(new AssemblerError(0, "Instruction Error: " + opcode + " - " + e.getMessage()));
-            return "ERROR";
+            return INVALID;
         }
     }
 
     // Helper method to convert R-Type instructions
-    private String convertRTypeInstruction(String funct7, String funct3) {
-        if (operands.size() == 3) {
-            for (int i = 0; i < operands.size(); i++) {
-                if (operands.get(i).type != TokenType.X) {
-                    reportTypeError(i, TokenType.X, operands.get(i).type);
-                    return "ERROR";
+    private int convertRTypeInstruction(int funct7, int funct3) {
+        if (operandCount == 3) {
+            for (int i = 0; i < operandCount; i++) {
+                if (tokens.type(operand(i)) != TokenType.X) {
+                    reportTypeError(i, TokenType.X, tokens.type(operand(i)));
+                    return INVALID;
                 }
             }
-            String rd = registerToBinary(operands.get(0).lexeme);
-            String rs1 = registerToBinary(operands.get(1).lexeme);
-            String rs2 = registerToBinary(operands.get(2).lexeme);
-            return funct7 + rs2 + rs1 + funct3 + rd + "0110011";
+            int rd = registerNumber(operand(0));
+            int rs1 = registerNumber(operand(1));
+            int rs2 = registerNumber(operand(2));
+            if ((rd | rs1 | rs2) < 0) {
+                return INVALID;
+            }
+            return funct7 << 25 | rs2 << 20 | rs1 << 15 | funct3 << 12 | rd << 7 | 0b0110011;
         }
         reportOperandError(3);
-        return "ERROR";
+        return INVALID;
     }
 
-    private String convertITypeInstruction(String opcode, String funct3) {
-        if (operands.size() == 3) {
-            Token rdToken = operands.get(0);
-            Token rs1Token = operands.get(1);
-            Token immToken = operands.get(2);
+    private int convertITypeInstruction(int opcode, int funct3) {
+        if (operandCount == 3) {
+            int rdToken = operand(0);
+            int rs1Token = operand(1);
+            int immToken = operand(2);
 
             // Validate rd (destination register) must be of type X
-            if (rdToken.type != TokenType.X) {
-                reportTypeError(0, TokenType.X, rdToken.type);
-                return "ERROR";
+            if (tokens.type(rdToken) != TokenType.X) {
+                reportTypeError(0, TokenType.X, tokens.type(rdToken));
+                return INVALID;
             }
 
             // Validate rs1 (source register) must be of type X
-            if (rs1Token.type != TokenType.X) {
-                reportTypeError(1, TokenType.X, rs1Token.type);
-                return "ERROR";
+            if (tokens.type(rs1Token) != TokenType.X) {
+                reportTypeError(1, TokenType.X, tokens.type(rs1Token));
+                return INVALID;
             }
 
             // Validate imm (immediate) must be of type IMM
-            if (immToken.type != TokenType.IMM) {
-                reportTypeError(2, TokenType.IMM, immToken.type);
-                return "ERROR";
+            if (tokens.type(immToken) != TokenType.IMM) {
+                reportTypeError(2, TokenType.IMM, tokens.type(immToken));
+                return INVALID;
             }
 
-            // Generate binary values
-            String rd = registerToBinary(rdToken.lexeme);
-            String rs1 = registerToBinary(rs1Token.lexeme);
-            int imm = (int) immToken.literal; // Retrieve the literal value for IMM
-            String immBinary = padBinaryString(Integer.toBinaryString(imm & 0xFFF), 12);
+            int rd = registerNumber(rdToken);
+            int rs1 = registerNumber(rs1Token);
+            if ((rd | rs1) < 0) {
+                return INVALID;
+            }
+            int imm = tokens.intValue(immToken); // Retrieve the literal value for IMM
 
-            return immBinary + rs1 + funct3 + rd + opcode;
+            return (imm & 0xFFF) << 20 | rs1 << 15 | funct3 << 12 | rd << 7 | opcode;
         }
 
         // Report error if the number of operands is incorrect
         reportOperandError(3);
-        return "ERROR";
+        return INVALID;
     }
 
-    private String convertSTypeInstruction(String funct3) {
-        if (operands.size() == 3) {
-            Token immToken = operands.get(0);
-            Token rs2Token = operands.get(1);
-            Token rs1Token = operands.get(2);
+    private int convertSTypeInstruction(int funct3) {
+        if (operandCount == 3) {
+            int immToken = operand(0);
+            int rs2Token = operand(1);
+            int rs1Token = operand(2);
 
             // Validate imm (immediate) must be of type IMM
-            if (immToken.type != TokenType.IMM) {
-                reportTypeError(0, TokenType.IMM, immToken.type);
-                return "ERROR";
+            if (tokens.type(immToken) != TokenType.IMM) {
+                reportTypeError(0, TokenType.IMM, tokens.type(immToken));
+                return INVALID;
             }
 
             // Validate rs2 (source register) must be of type X
-            if (rs2Token.type != TokenType.X) {
-                reportTypeError(1, TokenType.X, rs2Token.type);
-                return "ERROR";
+            if (tokens.type(rs2Token) != TokenType.X) {
+                reportTypeError(1, TokenType.X, tokens.type(rs2Token));
+                return INVALID;
             }
 
             // Validate rs1 (base register) must be of type X
-            if (rs1Token.type != TokenType.X) {
-                reportTypeError(2, TokenType.X, rs1Token.type);
-                return "ERROR";
+            if (tokens.type(rs1Token) != TokenType.X) {
+                reportTypeError(2, TokenType.X, tokens.type(rs1Token));
+                return INVALID;
             }
 
-            // Generate binary values
-            String rs2 = registerToBinary(rs2Token.lexeme);
-            String rs1 = registerToBinary(rs1Token.lexeme);
-            int imm = (int) immToken.literal; // Retrieve the literal value for IMM
-            String immBinary = padBinaryString(Integer.toBinaryString(imm & 0xFFF), 12);
+            int rs2 = registerNumber(rs2Token);
+            int rs1 = registerNumber(rs1Token);
+            if ((rs2 | rs1) < 0) {
+                return INVALID;
+            }
+            int imm = tokens.intValue(immToken); // Retrieve the literal value for IMM
 
-            // Construct S-Type binary instruction
-            return immBinary.substring(0, 7) + rs2 + rs1 + funct3 + immBinary.substring(7) + "0100011";
+            // Construct S-Type instruction: imm[11:5] rs2 rs1 funct3 imm[4:0] opcode
+            return ((imm >> 5) & 0x7F) << 25 | rs2 << 20 | rs1 << 15 | funct3 << 12 | (imm & 0x1F) << 7 | 0b0100011;
         }
 
         // Report error if the number of operands is incorrect
         reportOperandError(3);
-        return "ERROR";
+        return INVALID;
     }
-    private String convertBTypeInstruction(String funct3) {
-        if (operands.size() == 3) {
-            Token immToken = operands.get(0);
-            Token rs2Token = operands.get(1);
-            Token rs1Token = operands.get(2);
 
-            // Validate imm (immediate) must be of type IMM
-            if (immToken.type != TokenType.IMM) {
-                reportTypeError(0, TokenType.IMM, immToken.type);
-                return "ERROR";
+    private int convertBTypeInstruction(int funct3) {
+        if (operandCount == 3) {
+            int immToken = operand(0);
+            int rs2Token = operand(1);
+            int rs1Token = operand(2);
+
+            // Validate imm (immediate) must be of type IMM, or a label (patched in by the LabelLinker)
+            if (tokens.type(immToken) != TokenType.IMM && tokens.type(immToken) != TokenType.SYMBOL) {
+                reportTypeError(0, TokenType.IMM, tokens.type(immToken));
+                return INVALID;
             }
 
             // Validate rs2 (source register) must be of type X
-            if (rs2Token.type != TokenType.X) {
-                reportTypeError(1, TokenType.X, rs2Token.type);
-                return "ERROR";
+            if (tokens.type(rs2Token) != TokenType.X) {
+                reportTypeError(1, TokenType.X, tokens.type(rs2Token));
+                return INVALID;
             }
 
-            // Validate rs1 (base register) must be of type X
-            if (rs1Token.type != TokenType.X) {
-                reportTypeError(2, TokenType.X, rs1Token.type);
-                return "ERROR";
+            // Validate rs1 (source register) must be of type X
+            if (tokens.type(rs1Token) != TokenType.X) {
+                reportTypeError(2, TokenType.X, tokens.type(rs1Token));
+                return INVALID;
             }
 
-            // Generate binary values
-            String rs2 = registerToBinary(rs2Token.lexeme);
-            String rs1 = registerToBinary(rs1Token.lexeme);
-            int imm = (int) immToken.literal; // Retrieve the literal value for IMM
-            String immBinary = padBinaryString(Integer.toBinaryString(imm & 0x1FFF), 13); // 13-bit immediate
+            int rs2 = registerNumber(rs2Token);
+            int rs1 = registerNumber(rs1Token);
+            if ((rs2 | rs1) < 0) {
+                return INVALID;
+            }
+            int imm = tokens.intValue(immToken); // Retrieve the literal value for IMM (13-bit offset), 0 for a label
 
-            // Construct B-Type binary instruction
-            String immPart1 = immBinary.charAt(0) + immBinary.substring(2, 8); // Bits [12, 10:5]
-            String immPart2 = immBinary.substring(8, 12) + immBinary.charAt(1); // Bits [4:1, 11]
-            return immPart1 + rs2 + rs1 + funct3 + immPart2 + "1100011";
+            // Construct B-Type instruction: imm[12|10:5] rs2 rs1 funct3 imm[4:1|11] opcode
+            return bTypeImmediate(imm) | rs2 << 20 | rs1 << 15 | funct3 << 12 | 0b1100011;
         }
 
         // Report error if the number of operands is incorrect
         reportOperandError(3);
-        return "ERROR";
+        return INVALID;
     }
 
 
-    private String convertUTypeInstruction() {
-        if (operands.size() == 2) {
-            Token rdToken = operands.get(0);
-            Token immToken = operands.get(1);
+    private int convertUTypeInstruction() {
+        if (operandCount == 2) {
+            int rdToken = operand(0);
+            int immToken = operand(1);
 
             // Validate rd (destination register) must be of type X
-            if (rdToken.type != TokenType.X) {
-                reportTypeError(0, TokenType.X, rdToken.type);
-                return "ERROR";
+            if (tokens.type(rdToken) != TokenType.X) {
+                reportTypeError(0, TokenType.X, tokens.type(rdToken));
+                return INVALID;
             }
 
-            // Generate binary values for the immediate
-            String immBinary;
-            if (immToken.type == TokenType.IMM) {
+            // Work out the 20-bit immediate
+            int imm;
+            if (tokens.type(immToken) == TokenType.IMM) {
                 // Integer immediate value
-                int imm = (int) immToken.literal;
-                immBinary = padBinaryString(Integer.toBinaryString(imm & 0xFFFFF), 20); // Ensure 20-bit immediate
-            } else if (immToken.type == TokenType.IMM_FLOAT) {
+                imm = tokens.intValue(immToken) & 0xFFFFF;
+            } else if (tokens.type(immToken) == TokenType.IMM_FLOAT) {
                 // Floating-point immediate value (convert to IEEE 754 and extract upper 20 bits)
-                float imm = (float) immToken.literal;
-                int ieee754 = Float.floatToIntBits(imm); // Convert to raw IEEE 754
-                immBinary = padBinaryString(Integer.toBinaryString((ieee754 >> 12) & 0xFFFFF), 20); // Upper 20 bits
+                float value = tokens.floatValue(immToken);
+                imm = (Float.floatToIntBits(value) >> 12) & 0xFFFFF;
             } else {
-                reportTypeError(1, TokenType.IMM, immToken.type);
-                return "ERROR";
+                reportTypeError(1, TokenType.IMM, tokens.type(immToken));
+                return INVALID;
             }
 
-            // Convert rd (destination register) to binary
-            String rd = registerToBinary(rdToken.lexeme);
+            int rd = registerNumber(rdToken);
+            if (rd < 0) {
+                return INVALID;
+            }
 
-            // Construct U-Type binary instruction
-            return immBinary + rd + (opcode == TokenType.LUI ? "0110111" : "0010111");
+            // Construct U-Type instruction
+            return imm << 12 | rd << 7 | (opcode == TokenType.LUI ? 0b0110111 : 0b0010111);
         }
 
         // Report error if the number of operands is incorrect
         reportOperandError(2);
-        return "ERROR";
+        return INVALID;
     }
 
 
 
-    private String convertJTypeInstruction() {
-        if (operands.size() == 2) {
-            Token rdToken = operands.get(0);
-            Token immToken = operands.get(1);
+    private int convertJTypeInstruction() {
+        if (operandCount == 2) {
+            int rdToken = operand(0);
+            int immToken = operand(1);
 
             // Validate rd (destination register) must be of type X
-            if (rdToken.type != TokenType.X) {
-                reportTypeError(0, TokenType.X, rdToken.type);
-                return "ERROR";
+            if (tokens.type(rdToken) != TokenType.X) {
+                reportTypeError(0, TokenType.X, tokens.type(rdToken));
+                return INVALID;
             }
 
-            // Validate imm (immediate value) must be of type IMM
-            if (immToken.type != TokenType.IMM) {
-                reportTypeError(1, TokenType.IMM, immToken.type);
-                return "ERROR";
+            // Validate imm (immediate value) must be of type IMM, or a label (patched in by the LabelLinker)
+            if (tokens.type(immToken) != TokenType.IMM && tokens.type(immToken) != TokenType.SYMBOL) {
+                reportTypeError(1, TokenType.IMM, tokens.type(immToken));
+                return INVALID;
             }
 
-            // Convert register and immediate value to binary
-            String rd = registerToBinary(rdToken.lexeme);
-            int imm = (int) immToken.literal;
-
-            // Mask immediate to ensure it fits within 21 bits
-            String immBinary = padBinaryString(Integer.toBinaryString(imm & 0x1FFFFF), 21);
-
-            // Encode immediate in J-Type format
-            String immEncoded = immBinary.charAt(0)                   // Bit 20
-                    + immBinary.substring(10, 20)                    // Bits 10-19
-                    + immBinary.charAt(9)                            // Bit 9
-                    + immBinary.substring(1, 9);                     // Bits 1-8
+            int rd = registerNumber(rdToken);
+            if (rd < 0) {
+                return INVALID;
+            }
+            int imm = tokens.intValue(immToken); // 21-bit offset, 0 for a label
 
-            // Construct the final machine code
-            return immEncoded + rd + "1101111"; // J-Type opcode
+            // Encode immediate in J-Type format: imm[20|10:1|11|19:12] rd opcode
+            return jTypeImmediate(imm) | rd << 7 | 0b1101111; // J-Type opcode
         }
 
         // Report error for incorrect operand count
         reportOperandError(2);
-        return "ERROR";
+        return INVALID;
     }
-    private String convertFTypeInstruction(String funct5, String rm) {
-        if (operands.size() == 3) {
-            Token rdToken = operands.get(0);
-            Token rs1Token = operands.get(1);
-            Token rs2Token = operands.get(2);
+
+    // Immediate bits of a B-Type word: imm[12|10:5] in bits 31-25, imm[4:1|11] in bits 11-7
+    private static int bTypeImmediate(int imm) {
+        return ((imm >> 12) & 0x1) << 31
+                | ((imm >> 5) & 0x3F) << 25
+                | ((imm >> 1) & 0xF) << 8
+                | ((imm >> 11) & 0x1) << 7;
+    }
+
+    // Immediate bits of a J-Type word: imm[20|10:1|11|19:12] in bits 31-12
+    private static int jTypeImmediate(int imm) {
+        return ((imm >> 20) & 0x1) << 31
+                | ((imm >> 1) & 0x3FF) << 21
+                | ((imm >> 11) & 0x1) << 20
+                | ((imm >> 12) & 0xFF) << 12;
+    }
+
+    private int convertFTypeInstruction(int funct5, int rm) {
+        if (operandCount == 3) {
+            int rdToken = operand(0);
+            int rs1Token = operand(1);
+            int rs2Token = operand(2);
 
             // Validate rd (destination register) must be of type X
-            if (rdToken.type != TokenType.X) {
-                reportTypeError(0, TokenType.X, rdToken.type);
-                return "ERROR";
+            if (tokens.type(rdToken) != TokenType.X) {
+                reportTypeError(0, TokenType.X, tokens.type(rdToken));
+                return INVALID;
             }
 
             // Validate rs1 (source register 1) must be of type X
-            if (rs1Token.type != TokenType.X) {
-                reportTypeError(1, TokenType.X, rs1Token.type);
-                return "ERROR";
+            if (tokens.type(rs1Token) != TokenType.X) {
+                reportTypeError(1, TokenType.X, tokens.type(rs1Token));
+                return INVALID;
             }
 
             // Validate rs2 (source register 2) must be of type X
-            if (rs2Token.type != TokenType.X) {
-                reportTypeError(2, TokenType.X, rs2Token.type);
-                return "ERROR";
+            if (tokens.type(rs2Token) != TokenType.X) {
+                reportTypeError(2, TokenType.X, tokens.type(rs2Token));
+                return INVALID;
             }
 
-            // Convert registers to binary
-            String rd = registerToBinary(rdToken.lexeme);
-            String rs1 = registerToBinary(rs1Token.lexeme);
-            String rs2 = registerToBinary(rs2Token.lexeme);
+            int rd = registerNumber(rdToken);
+            int rs1 = registerNumber(rs1Token);
+            int rs2 = registerNumber(rs2Token);
+            if ((rd | rs1 | rs2) < 0) {
+                return INVALID;
+            }
 
-            // Construct the final machine code
-            return funct5 + rs2 + rs1 + rm + rd + "1010011"; // F-Type opcode
+            // Construct the instruction: funct5 fmt rs2 rs1 rm rd opcode (fmt 00 = single precision)
+            return funct5 << 27 | rs2 << 20 | rs1 << 15 | rm << 12 | rd << 7 | 0b1010011; // F-Type opcode
         }
 
         // Report error for incorrect operand count
         reportOperandError(3);
-        return "ERROR";
+        return INVALID;
     }
 
 
     private void reportTypeError(int operandIndex, TokenType expected, TokenType actual) {
-        int line = operands.get(operandIndex).line; // Get the correct line number
+        int line = tokens.line(operand(operandIndex)); // Get the correct line number
         String errorMessage = String.format("Instruction %s expected Operand %d to be of type %s, but found %s",
                 opcode, operandIndex + 1, expected, actual);
         errors.add(new AssemblerError(line, errorMessage)); // Use the correct line number
@@ -328,23 +441,24 @@ public class Instruction {
 
 
     private void reportOperandError(int expected) {
-        int line = operands.isEmpty() ? 0 : operands.get(0).line; // Use the first operand's line number, or 0 if none
+        int line = operandCount == 0 ? 0 : tokens.line(operand(0)); // Use the first operand's line number, or 0 if none
         String errorMessage = String.format("Instruction %s expects %d operands, but got %d",
-                opcode, expected, operands.size());
+                opcode, expected, operandCount);
         errors.add(new AssemblerError(line, errorMessage)); // Use the correct line number
     }
 
 
-    private String registerToBinary(String reg) {
-        if (reg.startsWith("X")) {
-            int regNum = Integer.parseInt(reg.substring(1));
-            return String.format("%05d", Integer.parseInt(Integer.toBinaryString(regNum)));
+    // Register number of an X token, read straight from its digits in the source; -1 (after reporting) if it does not fit in 5 bits
+    private int registerNumber(int reg) {
+        int length = tokens.length(reg);
+        int regNum = 0;
+        for (int i = 1; i < length; i++) {
+            regNum = regNum * 10 + (tokens.charAt(reg, i) - '0');
         }
-        reportOperandError(1);
-        return "00000";
-    }
-
-    private String padBinaryString(String binary, int length) {
-        return "0".repeat(Math.max(0, length - binary.length())) + binary;
+        if (regNum > 31) {
+            errors.add(new AssemblerError(tokens.line(reg), "Register " + tokens.lexeme(reg) + " is out of range"));
+            return -1;
+        }
+        return regNum;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package com.example.ide.assembler.RISCV;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Resolves label references into the encoded words in a single pass over the program.
+// Labels.link feeds it the definitions and references in program order: a reference to a label that is already
+// defined is patched into its word at once, a forward reference goes on the fixup list, and finish() patches the
+// fixups once every label is known. No part of the program is lexed or parsed a second time.
+final class LabelLinker {
+    private final SymbolTable symbols;
+    private final int[] words;
+    private final List<AssemblerError> errors;
+
+    private final List<Instruction> fixups = new ArrayList<>();
+    private int[] fixupWords = new int[8];
+    private int[] fixupLines = new int[8];
+
+    LabelLinker(int[] words, int expectedLabels, List<AssemblerError> errors) {
+        this.symbols = new SymbolTable(expectedLabels);
+        this.words = words;
+        this.errors = errors;
+    }
+
+    // Resolves the labels of a whole program parsed from one token buffer
+    static void link(Labels labels, TokenBuffer tokens, List<Instruction> instructions, int[] words,
+                     List<AssemblerError> errors) {
+        if (labels.isEmpty()) {
+            return;
+        }
+        LabelLinker linker = new LabelLinker(words, labels.definitionCount(), errors);
+        labels.link(linker, tokens, instructions, 0, 0);
+        linker.finish();
+    }
+
+    // The label names the instruction encoded at word
+    void define(TokenBuffer tokens, int token, int word, int line) {
+        if (!symbols.define(tokens, token, word)) {
+            errors.add(new AssemblerError(line, "Duplicate label: " + tokens.lexeme(token)));
+        }
+    }
+
+    // The instruction encoded at word has a label operand
+    void reference(Instruction instruction, int word, int line) {
+        int target = symbols.lookup(instruction.getTokens(), instruction.labelOperand());
+        if (target != SymbolTable.NOT_FOUND) {
+            patch(instruction, word, target, line);
+            return;
+        }
+        int count = fixups.size();
+        if (count == fixupWords.length) {
+            fixupWords = Arrays.copyOf(fixupWords, count * 2);
+            fixupLines = Arrays.copyOf(fixupLines, count * 2);
+        }
+        fixups.add(instruction);
+        fixupWords[count] = word;
+        fixupLines[count] = line;
+    }
+
+    // Patches the forward references; a label that is still unknown is reported and its word marked invalid
+    void finish() {
+        for (int i = 0; i < fixups.size(); i++) {
+            Instruction instruction = fixups.get(i);
+            int target = symbols.lookup(instruction.getTokens(), instruction.labelOperand());
+            if (target == SymbolTable.NOT_FOUND) {
+                errors.add(new AssemblerError(fixupLines[i],
+                        "Undefined label: " + instruction.getTokens().lexeme(instruction.labelOperand())));
+                words[fixupWords[i]] = Instruction.INVALID;
+            } else {
+                patch(instruction, fixupWords[i], target, fixupLines[i]);
+            }
+        }
+        fixups.clear();
+    }
+
+    private void patch(Instruction instruction, int word, int target, int line) {
+        try {
+            words[word] = instruction.patchLabel(words[word], (target - word) * 4);
+        } catch (IllegalArgumentException e) {
+            errors.add(new AssemblerError(line, e.getMessage()));
+            words[word] = Instruction.INVALID;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.ide.assembler.RISCV;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Labels the Parser met: each definition as its token and the index of the instruction it names, and each
+// instruction with a label operand (the fixup list). Kept as int arrays in source order, like the TokenBuffer.
+final class Labels {
+    private static final int[] NONE = new int[0];
+
+    private int[] definitions = NONE; // pairs: label token, instruction index
+    private int definitionCount;
+    private int[] references = NONE;  // instruction indices
+    private int referenceCount;
+
+    void define(int token, int instruction) {
+        if (2 * definitionCount == definitions.length) {
+            definitions = Arrays.copyOf(definitions, Math.max(8, definitions.length * 2));
+        }
+        definitions[2 * definitionCount] = token;
+        definitions[2 * definitionCount + 1] = instruction;
+        definitionCount++;
+    }
+
+    void reference(int instruction) {
+        if (referenceCount == references.length) {
+            references = Arrays.copyOf(references, Math.max(4, references.length * 2));
+        }
+        references[referenceCount++] = instruction;
+    }
+
+    int definitionCount() {
+        return definitionCount;
+    }
+
+    boolean isEmpty() {
+        return definitionCount == 0 && referenceCount == 0;
+    }
+
+    // Marks the instructions a label names (index instructionCount for a label after the last one)
+    boolean[] targets(int instructionCount) {
+        boolean[] targets = new boolean[instructionCount + 1];
+        for (int d = 0; d < definitionCount; d++) {
+            targets[definitions[2 * d + 1]] = true;
+        }
+        return targets;
+    }
+
+    // Renumbers the instructions after some were removed: newIndex[i] is the new index of instruction i, or of the
+    // first instruction kept after it
+    void remap(int[] newIndex) {
+        for (int d = 0; d < definitionCount; d++) {
+            definitions[2 * d + 1] = newIndex[definitions[2 * d + 1]];
+        }
+        for (int r = 0; r < referenceCount; r++) {
+            references[r] = newIndex[references[r]];
+        }
+    }
+
+    // Feeds the definitions and references to the linker in program order; instruction indices are offset by
+    // firstWord, and line is used for the errors instead of the token lines if it is not 0
+    void link(LabelLinker linker, TokenBuffer tokens, List<Instruction> instructions, int firstWord, int line) {
+        int d = 0;
+        for (int r = 0; r < referenceCount; r++) {
+            int instruction = references[r];
+            // A label on the referencing instruction itself counts as already defined
+            for (; d < definitionCount && definitions[2 * d + 1] <= instruction; d++) {
+                define(linker, tokens, d, firstWord, line);
+            }
+            Instruction reference = instructions.get(instruction);
+            linker.reference(reference, firstWord + instruction, line != 0 ? line : reference.getLine());
+        }
+        for (; d < definitionCount; d++) {
+            define(linker, tokens, d, firstWord, line);
+        }
+    }
+
+    private void define(LabelLinker linker, TokenBuffer tokens, int d, int firstWord, int line) {
+        int token = definitions[2 * d];
+        linker.define(tokens, token, firstWord + definitions[2 * d + 1], line != 0 ? line : tokens.line(token));
+    }
+}
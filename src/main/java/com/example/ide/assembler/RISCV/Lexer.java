@@ -1,23 +1,19 @@
 package com.example.ide.assembler.RISCV;
 
-import javafx.scene.control.TextArea;
-
-import java.util.ArrayList;
 import java.util.List;
 
 public class Lexer {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private final CharSequence source;
+    private final TokenBuffer tokens;
     private final List<AssemblerError> errors; // List to collect errors
-    private final TextArea outputTextArea;     // Reference to IDE's outputTextArea
     private int start = 0;  // Start of the current token
     private int current = 0; // Current position in the source
     private int line = 1;   // Current line number
 
-    public Lexer(String source, List<AssemblerError> errors, TextArea outputTextArea) {
+    public Lexer(CharSequence source, List<AssemblerError> errors) {
         this.source = source;
         this.errors = errors;
-        this.outputTextArea = outputTextArea;
+        this.tokens = new TokenBuffer(source);
     }
 
     public int getLine() {
@@ -25,7 +21,17 @@ public class Lexer {
     }
 
     // Tokenizes the input assembly code into individual tokens
-    public List<Token> tokenize() {
+    public TokenBuffer tokenize() {
+        scanTokens();
+        if (tokens.isEmpty() && errors.isEmpty()) {
+            errors.add(new AssemblerError(line, "Empty or invalid instruction."));
+        }
+        return tokens;
+    }
+
+    // Tokenizes without the empty-program check, for callers that lex a program piece by piece (the incremental
+    // assembler, the editor's syntax highlighter)
+    public TokenBuffer scanTokens() {
         while (!isAtEnd()) {
             // Mark the start of a new token
             start = current;
@@ -33,17 +39,10 @@ public class Lexer {
                 scanToken();
             } catch (IllegalArgumentException e) {
                 // Log the error and move to the next line
-                AssemblerError error = new AssemblerError(line, e.getMessage());
-                errors.add(error);
-                outputTextArea.appendText(error.toString() + "\n");
+                errors.add(new AssemblerError(line, e.getMessage()));
                 skipToNextLine();
             }
         }
-        if (tokens.isEmpty() && errors.isEmpty()) {
-            AssemblerError error = new AssemblerError(line, "Empty or invalid instruction.");
-            errors.add(error);
-            outputTextArea.appendText(error.toString() + "\n");
-        }
         return tokens;
     }
 
@@ -56,6 +55,7 @@ public class Lexer {
                 // Ignore whitespace
                 case ' ':
                 case '\t':
+                case '\r':
                     break;
                 // Handle newlines
                 case '\n':
@@ -66,13 +66,13 @@ public class Lexer {
                     break;
                 // Handle parentheses
                 case '(':
-                    addToken(TokenType.LPAREN, "(");
+                    addToken(TokenType.LPAREN);
                     break;
                 case ')':
-                    addToken(TokenType.RPAREN, ")");
+                    addToken(TokenType.RPAREN);
                     break;
                 case ',':
-                    addToken(TokenType.COMMA, ",");
+                    addToken(TokenType.COMMA);
                     break;
                 default:
                     if (isDigit(c) || c == '-') {
@@ -87,7 +87,6 @@ public class Lexer {
         } catch (Exception e) {
 //            throw new IllegalArgumentException("Syntax error at line " + line + ": " + e.getMessage());
             errors.add(new AssemblerError(line, e.getMessage()));
-            outputTextArea.appendText("Lexer error at line " + line + ": " + e.getMessage() + "\n");
             skipToNextLine(); //
         }
     }
@@ -124,14 +123,12 @@ public class Lexer {
             }
 
             if (hexStart == current) { // No hex digits found
-                throw new IllegalArgumentException("Invalid hexadecimal value at line " + line);
+                throw new IllegalArgumentException("Invalid hexadecimal value");
             }
 
 
-            String lexeme = source.substring(start, current);
-            String hexDigits = source.substring(hexStart, current); // Only the digits
-            int value = Integer.parseInt(hexDigits, 16);
-            addToken(TokenType.IMM, lexeme, value); // Add token with full lexeme including "0x"
+            int value = Integer.parseInt(source, hexStart, current, 16); // Only the digits
+            addToken(TokenType.IMM, value); // Token spans the full lexeme including "0x"
             return;
         }
 
@@ -142,21 +139,18 @@ public class Lexer {
             }
             advance();
         }
-        // Extract the lexeme
-        String lexeme = source.substring(start, current);
-
         try {
             if (isFloatingPoint) {
                 // Process floating-point number (e.g., 1.23)
-                float floatValue = Float.parseFloat(lexeme);
-                addToken(TokenType.IMM_FLOAT, lexeme, floatValue);
+                float floatValue = Float.parseFloat(source.subSequence(start, current).toString());
+                addToken(TokenType.IMM_FLOAT, Float.floatToRawIntBits(floatValue));
             } else {
-                // Process integer number
-                int intValue = Integer.parseInt(lexeme);
-                addToken(TokenType.IMM, lexeme, intValue);
+                // Process integer number, parsed in place without extracting the lexeme
+                int intValue = Integer.parseInt(source, start, current, 10);
+                addToken(TokenType.IMM, intValue);
             }
         } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Invalid numeric value at line " + line + ": " + lexeme);
+            throw new IllegalArgumentException("Invalid numeric value: " + source.subSequence(start, current));
         }
     }
 
@@ -166,60 +160,42 @@ public class Lexer {
             advance();
         }
 
-        // Extract the lexeme
-        String lexeme = source.substring(start, current);
-        // Match it to a TokenType
-        try {
-            // Match it to a TokenType
-            TokenType type = getTokenType(lexeme);
-            addToken(type, lexeme);
-        } catch (IllegalArgumentException e) {
-            // Log the error for an unrecognized token
-            errors.add(new AssemblerError(line, "Unrecognized token: " + lexeme + " at line " + line));
-            outputTextArea.appendText("Lexer Error at line " + line + ": Unrecognized token: " + lexeme + "\n");
+        // Match it to a TokenType straight from the source, without extracting the lexeme
+        TokenType type = Mnemonics.lookup(source, start, current);
+        if (type == null && Mnemonics.isRegister(source, start, current)) {
+            type = TokenType.X;
+        }
+        if (type == null && looksLikeRegister()) {
+            // Log the error for an unrecognized token (X0, x1, ...)
+            String lexeme = source.subSequence(start, current).toString();
+            errors.add(new AssemblerError(line, "Unrecognized token: " + lexeme));
             skipToNextLine(); // Skip the rest of the current line to avoid further issues
+            return;
         }
+        if (type == null) {
+            // Any other name is a label: defined when followed by ':', referenced otherwise
+            if (peek() == ':') {
+                tokens.add(TokenType.LABEL, start, current - start, line, 0);
+                advance(); // Consume ':'
+            } else {
+                addToken(TokenType.SYMBOL);
+            }
+            return;
+        }
+        addToken(type);
     }
 
-    // Matches a token to its type
-    private TokenType getTokenType(String token) {
-        switch (token.toUpperCase()) {
-            case "ADD": return TokenType.ADD;
-            case "SUB": return TokenType.SUB;
-            case "XOR": return TokenType.XOR;
-            case "OR": return TokenType.OR;
-            case "AND": return TokenType.AND;
-            case "XORI": return TokenType.XORI;
-            case "ORI": return TokenType.ORI;
-            case "ANDI": return TokenType.ANDI;
-            case "ADDI": return TokenType.ADDI;
-            case "LB": return TokenType.LB;
-            case "LH": return TokenType.LH;
-            case "LW": return TokenType.LW;
-            case "JALR": return TokenType.JALR;
-            case "SB": return TokenType.SB;
-            case "SH": return TokenType.SH;
-            case "SW": return TokenType.SW;
-            case "BEQ": return TokenType.BEQ;
-            case "BNE": return TokenType.BNE;
-            case "JAL": return TokenType.JAL;
-            case "LUI": return TokenType.LUI;
-            case "FADD": return TokenType.FADD;
-            case "FSUB": return TokenType.FSUB;
-            case "FMUL": return TokenType.FMUL;
-            case "FDIV": return TokenType.FDIV;
-            case "FMIN": return TokenType.FMIN;
-            case "FMAX": return TokenType.FMAX;
-            case "FSQRT": return TokenType.FSQRT;
+    // X or x followed by digits only, a register name even when it is not a valid one
+    private boolean looksLikeRegister() {
+        if (current - start < 2 || (source.charAt(start) | 0x20) != 'x') {
+            return false;
         }
-
-        // Match registers
-        if (token.matches("X[1-9]|X1[0-9]|X2[0-9]|X3[0-2]")) {
-            return TokenType.X;
+        for (int i = start + 1; i < current; i++) {
+            if (!isDigit(source.charAt(i))) {
+                return false;
+            }
         }
-
-        // If unknown, throw an exception
-        throw new IllegalArgumentException("Unrecognized token: " + token + " at line " + line);
+        return true;
     }
 
     // Advances the current pointer and returns the consumed character
@@ -252,19 +228,20 @@ public class Lexer {
     }
 
     private boolean isAlpha(char c) {
-        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_';
     }
 
     private boolean isAlphaNumeric(char c) {
         return isAlpha(c) || isDigit(c);
     }
 
-    private void addToken(TokenType type, String lexeme) {
-        addToken(type, lexeme, null);
+    private void addToken(TokenType type) {
+        addToken(type, 0);
     }
 
-    private void addToken(TokenType type, String lexeme, Object literal) {
-        tokens.add(new Token(type, lexeme, literal, line));
+    // Records the token spanning [start, current) with its literal value (raw float bits for IMM_FLOAT)
+    private void addToken(TokenType type, int literal) {
+        tokens.add(type, start, current - start, line, literal);
     }
 
     private void skipToNextLine() {
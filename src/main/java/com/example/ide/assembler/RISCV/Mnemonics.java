@@ -0,0 +1,96 @@
+package com.example.ide.assembler.RISCV;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+// Case-insensitive perfect hash over the instruction mnemonics.
+// Identifiers are classified straight from the source buffer: no substring, no toUpperCase, no regex.
+// The hash multiplier is searched once at class load, so adding a mnemonic to TokenType needs no hand tuning.
+final class Mnemonics {
+    private static final int TABLE_SIZE = 128; // power of two, a few times the number of mnemonics
+    private static final int MASK = TABLE_SIZE - 1;
+
+    private static final TokenType[] TABLE = new TokenType[TABLE_SIZE];
+    private static final char[][] NAMES = new char[TABLE_SIZE][]; // lower-case spelling of each slot
+    private static final int MAX_LENGTH;
+    private static final int MULTIPLIER;
+
+    static {
+        EnumSet<TokenType> mnemonics = EnumSet.range(TokenType.ADD, TokenType.FSQRT);
+        int maxLength = 0;
+        for (TokenType type : mnemonics) {
+            maxLength = Math.max(maxLength, type.name().length());
+        }
+        MAX_LENGTH = maxLength;
+
+        int multiplier = 31;
+        while (!fill(mnemonics, multiplier)) {
+            multiplier += 2;
+        }
+        MULTIPLIER = multiplier;
+    }
+
+    private Mnemonics() {
+    }
+
+    // Returns the mnemonic spelled by source[start, end), in any letter case, or null if it is not one
+    static TokenType lookup(CharSequence source, int start, int end) {
+        int length = end - start;
+        if (length > MAX_LENGTH) {
+            return null;
+        }
+        int slot = hash(source, start, end, MULTIPLIER);
+        char[] name = NAMES[slot];
+        if (name == null || name.length != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((source.charAt(start + i) | 0x20) != name[i]) {
+                return null;
+            }
+        }
+        return TABLE[slot];
+    }
+
+    // Registers X1..X32, recognized from the characters in place (same set the old X[1-9]|X1[0-9]|X2[0-9]|X3[0-2] matched)
+    static boolean isRegister(CharSequence source, int start, int end) {
+        int length = end - start;
+        if (length < 2 || length > 3 || source.charAt(start) != 'X') {
+            return false;
+        }
+        char first = source.charAt(start + 1);
+        if (first < '1' || first > '9') {
+            return false;
+        }
+        if (length == 2) {
+            return true;
+        }
+        char second = source.charAt(start + 2);
+        return second >= '0' && second <= '9' && (first < '3' || (first == '3' && second <= '2'));
+    }
+
+    // Folding with | 0x20 lower-cases letters and leaves digits alone
+    private static int hash(CharSequence source, int start, int end, int multiplier) {
+        int h = end - start;
+        for (int i = start; i < end; i++) {
+            h = h * multiplier + (source.charAt(i) | 0x20);
+        }
+        return (h ^ (h >>> 7)) & MASK;
+    }
+
+    // Places every mnemonic in the table; false if two of them collide under this multiplier
+    private static boolean fill(EnumSet<TokenType> mnemonics, int multiplier) {
+        Arrays.fill(TABLE, null);
+        Arrays.fill(NAMES, null);
+        for (TokenType type : mnemonics) {
+            String name = type.name().toLowerCase();
+            int slot = hash(name, 0, name.length(), multiplier);
+            if (TABLE[slot] != null) {
+                return false;
+            }
+            TABLE[slot] = type;
+            NAMES[slot] = name.toCharArray();
+        }
+        return true;
+    }
+}
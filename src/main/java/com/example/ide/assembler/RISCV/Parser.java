@@ -1,69 +1,85 @@
 package com.example.ide.assembler.RISCV;
 
-import javafx.scene.control.TextArea;
-
 import java.util.*;
 
 public class Parser {
     private int currentLine;
     private final List<AssemblerError> errors;
-    private final TextArea outputTextArea;
+    private final Labels labels = new Labels();
 
-    public Parser(List<AssemblerError> errors, TextArea outputTextArea) {
+    public Parser(List<AssemblerError> errors) {
         this.errors = errors;
-        this.outputTextArea = outputTextArea;
     }
 
     public int getLine() {
         return currentLine;
     }
 
+    // Label definitions and references of the last parse, for the LabelLinker
+    Labels getLabels() {
+        return labels;
+    }
+
     // Parse the assembly code and convert it to a list of instructions
-    public List<Instruction> parse(List<Token> tokens) {
+    public List<Instruction> parse(TokenBuffer tokens) {
         List<Instruction> instructions = new ArrayList<>();
 
+        int size = tokens.size();
         int i = 0; // Index to track the current token
-        while (i < tokens.size()) {
-            Token token = tokens.get(i);
-            currentLine = token.line;
+        while (i < size) {
+            currentLine = tokens.line(i);
+
+            // A label names the next instruction
+            if (tokens.type(i) == TokenType.LABEL) {
+                labels.define(i, instructions.size());
+                i++;
+                continue;
+            }
+
+            // A name in place of an opcode is an unknown instruction; skip its operands along with it
+            if (tokens.type(i) == TokenType.SYMBOL) {
+                errors.add(new AssemblerError(currentLine, "Unknown instruction: " + tokens.lexeme(i)));
+                i++;
+                while (i < size && tokens.line(i) == currentLine && !isOpcode(tokens.type(i))
+                        && tokens.type(i) != TokenType.LABEL) {
+                    i++;
+                }
+                continue;
+            }
 
             // Expect an opcode first
-            if (!isOpcode(token)) {
-                AssemblerError error = new AssemblerError(token.line,
-                        "Unexpected token: " + token.lexeme + ". Expected an opcode.");
-                errors.add(error);
-                outputTextArea.appendText(error.toString() + "\n");
+            if (!isOpcode(tokens.type(i))) {
+                errors.add(new AssemblerError(currentLine,
+                        "Unexpected token: " + tokens.lexeme(i) + ". Expected an opcode."));
                 i++;
                 continue;
             }
 
             // Opcode is the first token
-            TokenType opcode = token.type;
+            TokenType opcode = tokens.type(i);
+            int opcodeToken = i;
 
-            // Collect operands for this instruction
-            List<Token> operands = new ArrayList<>();
+            // Collect operands for this instruction as token indices in the buffer
+            int firstOperand = tokens.operandCount();
             i++; // Move to the next token
 
-            while (i < tokens.size() && !isOpcode(tokens.get(i))) {
-                Token current = tokens.get(i);
+            while (i < size && !isOpcode(tokens.type(i)) && tokens.type(i) != TokenType.LABEL) {
+                TokenType current = tokens.type(i);
 
                 // Skip commas
-                if (current.type == TokenType.COMMA) {
+                if (current == TokenType.COMMA) {
                     i++;
                     continue;
                 }
 
                 // Handle addressing mode (e.g., 10(X6))
-                if (current.type == TokenType.IMM && i + 2 < tokens.size() &&
-                        tokens.get(i + 1).type == TokenType.LPAREN && // (
-                        tokens.get(i + 2).type == TokenType.X) {     // Register (e.g., X6)
-
-                    Token offset = current;                    // Immediate (e.g., 10)
-                    Token baseRegister = tokens.get(i + 2);    // Register (e.g., X6)
+                if (current == TokenType.IMM && i + 2 < size &&
+                        tokens.type(i + 1) == TokenType.LPAREN && // (
+                        tokens.type(i + 2) == TokenType.X) {     // Register (e.g., X6)
 
-                    // Add the base + offset addressing as two separate tokens
-                    operands.add(offset);                      // 10
-                    operands.add(baseRegister);                // X6
+                    // Add the base + offset addressing as two separate operands
+                    tokens.addOperand(i);                      // Immediate (e.g., 10)
+                    tokens.addOperand(i + 2);                  // Register (e.g., X6)
 
                     // Skip the '(' and ')' tokens
                     i += 4; // Advance past IMM, LPAREN, X, RPAREN
@@ -71,13 +87,18 @@ public class Parser {
                 }
 
                 // Otherwise, add the token to operands
-                operands.add(current);
+                tokens.addOperand(i);
                 i++;
             }
 
 
             // Add the instruction to the list, even if operands are invalid (optional, based on requirements)
-            instructions.add(new Instruction(opcode, operands, errors));
+            Instruction instruction = new Instruction(opcode, tokens, opcodeToken, firstOperand,
+                    tokens.operandCount() - firstOperand, errors);
+            if (instruction.labelOperand() >= 0) {
+                labels.reference(instructions.size()); // resolved by the LabelLinker once the program is encoded
+            }
+            instructions.add(instruction);
         }
 
         return instructions;
@@ -115,7 +136,7 @@ public class Parser {
             TokenType.FMIN, TokenType.FMAX, TokenType.FSQRT
     );
 
-    private boolean isOpcode(Token token) {
-        return OPCODES.contains(token.type);
+    private boolean isOpcode(TokenType type) {
+        return OPCODES.contains(type);
     }
 }
@@ -0,0 +1,514 @@
+package com.example.ide.assembler.RISCV;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Optional pass between Parser.parse and encoding that removes work a program provably does not need, in one linear
+// pass over the instructions.
+// The pass numbers values as the program computes them: every register holds a value number, equal numbers mean equal
+// values, and a value computed from constants only is a constant itself (folded with the int and float arithmetic the
+// Simulator uses, so the bits are the same). Knowledge only flows forward within a basic block; it is dropped at every
+// instruction a label names and after a JAL, except for constants the entry code puts in registers it never writes
+// again. The rewrite table:
+//   redundant  an ALU, F-type, LUI or RAM load instruction whose result its destination already holds is removed.
+//              This covers moves and no-ops (ADDI X1,X1,0), a constant loaded again into the same register, a
+//              recomputed FMUL and a second load of a word no store has touched since.
+//   merged     ADDI, XORI, ORI or ANDI followed by the same operation on its result in the same register become one
+//              instruction with the immediates combined (when the sum still fits for ADDI).
+// Removing an instruction moves the code after it, so the pass leaves a program alone unless that cannot be observed:
+// every branch and jump must target a label (the labels are renumbered), and every load and store must use a constant
+// address past the end of the code, so the program neither reads nor rewrites its own instructions. Loads at or above
+// RAM_LIMIT may reach a device and are never merged. Return addresses written by JAL change with the layout, as with
+// any edit to the program.
+public final class PeepholeOptimizer {
+    static final int RAM_LIMIT = 1 << 20; // Simulator.DEFAULT_MEMORY_SIZE; devices are mapped above RAM
+    private static final int MAX_VALUES = 1 << 29; // value numbers are packed into expression keys
+    private static final long NOT_CONSTANT = Long.MIN_VALUE;
+
+    // One rewrite, at the source line of the (first) instruction it changed
+    public static final class Change {
+        private final int line;
+        private final String rule;
+        private final String description;
+
+        Change(int line, String rule, String description) {
+            this.line = line;
+            this.rule = rule;
+            this.description = description;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        // "redundant" or "merged"
+        public String getRule() {
+            return rule;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + description;
+        }
+    }
+
+    // What the pass did to one program
+    public static final class Report {
+        private final List<Change> changes = new ArrayList<>();
+        private int instructionsBefore;
+        private int instructionsAfter;
+        private String skipReason;
+
+        public List<Change> getChanges() {
+            return changes;
+        }
+
+        public int getInstructionsBefore() {
+            return instructionsBefore;
+        }
+
+        public int getInstructionsAfter() {
+            return instructionsAfter;
+        }
+
+        // Why the program was left as it is, or null if the pass ran
+        public String getSkipReason() {
+            return skipReason;
+        }
+
+        public boolean isSkipped() {
+            return skipReason != null;
+        }
+    }
+
+    // Operands of a well-formed instruction: register numbers, and the immediate as the hardware sees it
+    private static final class Operands {
+        int rd;
+        int rs1;
+        int rs2;
+        int imm;
+    }
+
+    // Thrown when the program turns out to be one the pass must leave alone
+    private static final class Unsafe extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Unsafe(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+
+    private final TokenBuffer tokens;
+    private final List<AssemblerError> errors;
+    private final int codeBytes;
+    private final int[] registers = new int[32]; // value number each register holds
+    private final boolean[] pinned = new boolean[32];
+    private long[] constants = new long[256];    // by value number: the constant, or NOT_CONSTANT
+    private final Map<Integer, Integer> constantValues = new HashMap<>(); // constant -> its value number
+    private final Map<Long, Integer> expressions = new HashMap<>();       // operation and operands -> value number
+    private final Map<Long, Integer> loads = new HashMap<>();             // width and RAM address -> value number
+    private int nextValue;
+
+    // The last instruction kept, if it may absorb the next one: its operation, registers and immediate
+    private TokenType mergeOpcode;
+    private int mergeRd;
+    private int mergeRs1;
+    private int mergeImm;
+
+    private PeepholeOptimizer(TokenBuffer tokens, List<AssemblerError> errors, int codeBytes) {
+        this.tokens = tokens;
+        this.errors = errors;
+        this.codeBytes = codeBytes;
+    }
+
+    // Returns the instructions to encode: the same list if the program was left alone, otherwise a new one, with the
+    // labels renumbered to match. errors must hold what lexing and parsing found.
+    static List<Instruction> optimize(List<Instruction> instructions, TokenBuffer tokens, Labels labels,
+                                      List<AssemblerError> errors, Report report) {
+        report.instructionsBefore = instructions.size();
+        report.instructionsAfter = instructions.size();
+        if (!errors.isEmpty()) {
+            report.skipReason = "the program has errors";
+            return instructions;
+        }
+        PeepholeOptimizer optimizer = new PeepholeOptimizer(tokens, errors, instructions.size() * 4);
+        int[] newIndex = new int[instructions.size() + 1];
+        List<Change> changes = new ArrayList<>();
+        List<Instruction> optimized;
+        try {
+            optimized = optimizer.run(instructions, labels.targets(instructions.size()), newIndex, changes);
+        } catch (Unsafe e) {
+            report.skipReason = e.getMessage();
+            return instructions;
+        }
+        labels.remap(newIndex);
+        report.changes.addAll(changes);
+        report.instructionsAfter = optimized.size();
+        return optimized;
+    }
+
+    private List<Instruction> run(List<Instruction> instructions, boolean[] targets, int[] newIndex, List<Change> changes)
+            throws Unsafe {
+        List<Instruction> out = new ArrayList<>(instructions.size());
+        Operands operands = new Operands();
+        startBlock();
+        findPinned(instructions, targets, operands);
+        for (int i = 0; i < instructions.size(); i++) {
+            newIndex[i] = out.size();
+            if (targets[i]) {
+                startBlock();
+            }
+            Instruction instruction = instructions.get(i);
+            TokenType opcode = instruction.getOpcode();
+            decode(instruction, operands); // findPinned checked it
+
+            int value;
+            switch (opcode) {
+                case BEQ, BNE, JAL -> {
+                    int target = instruction.operand(opcode == TokenType.JAL ? 1 : 0);
+                    if (tokens.type(target) != TokenType.SYMBOL) {
+                        throw new Unsafe("line " + instruction.getLine() + ": " + opcode
+                                + " uses a numeric offset, which removing instructions would break");
+                    }
+                    out.add(instruction);
+                    mergeOpcode = null;
+                    if (opcode == TokenType.JAL) {
+                        registers[operands.rd] = fresh();
+                        startBlock(); // only a label leads to what follows
+                    }
+                    continue;
+                }
+                case SB, SH, SW -> {
+                    checkAddress(instruction, operands.rs1, operands.imm, width(opcode));
+                    out.add(instruction);
+                    mergeOpcode = null;
+                    loads.clear();
+                    continue;
+                }
+                case LB, LH, LW -> {
+                    long address = checkAddress(instruction, operands.rs1, operands.imm, width(opcode));
+                    value = address + width(opcode) <= RAM_LIMIT
+                            ? loads.computeIfAbsent((long) opcode.ordinal() << 32 | address, key -> fresh())
+                            : fresh(); // may be a device register, which can change between reads
+                }
+                case LUI -> value = constant(operands.imm);
+                case ADDI, XORI, ORI, ANDI -> value = evaluateImmediate(opcode, registers[operands.rs1], operands.imm);
+                default -> value = evaluate(opcode, registers[operands.rs1], registers[operands.rs2]);
+            }
+
+            if (registers[operands.rd] == value) {
+                changes.add(new Change(instruction.getLine(), "redundant",
+                        "removed " + text(instruction) + ": X" + operands.rd + " already holds that value"));
+                continue;
+            }
+            registers[operands.rd] = value;
+            if (mergeOpcode == opcode && mergeRd == operands.rd && operands.rs1 == operands.rd) {
+                int merged = combine(opcode, mergeImm, operands.imm);
+                if (merged >= -2048 && merged < 2048) {
+                    Instruction first = out.get(out.size() - 1);
+                    changes.add(new Change(first.getLine(), "merged", "merged " + text(opcode, mergeRd, mergeRs1, mergeImm)
+                            + " and " + text(opcode, operands.rd, operands.rs1, operands.imm) + " (line "
+                            + instruction.getLine() + ") into " + text(opcode, mergeRd, mergeRs1, merged)));
+                    out.set(out.size() - 1, immediateInstruction(first, instruction, merged));
+                    mergeImm = merged;
+                    continue;
+                }
+            }
+            out.add(instruction);
+            if (opcode == TokenType.ADDI || opcode == TokenType.XORI || opcode == TokenType.ORI
+                    || opcode == TokenType.ANDI) {
+                mergeOpcode = opcode;
+                mergeRd = operands.rd;
+                mergeRs1 = operands.rs1;
+                mergeImm = operands.imm;
+            } else {
+                mergeOpcode = null;
+            }
+        }
+        newIndex[instructions.size()] = out.size();
+        return out;
+    }
+
+    // Control may arrive from elsewhere: nothing is known about memory, or about the registers except pinned ones
+    private void startBlock() {
+        expressions.clear();
+        loads.clear();
+        for (int r = 0; r < registers.length; r++) {
+            if (!pinned[r] || !isConstant(registers[r])) {
+                registers[r] = fresh();
+            }
+        }
+        mergeOpcode = null;
+    }
+
+    // Pins the registers written exactly once in the whole program, before its first label, branch or jump (typically
+    // a base address set up with LUI): every path reaches that write before anything else, and nothing changes the
+    // register afterwards, so a constant it receives there holds at every block start. Also makes sure every
+    // instruction can be decoded.
+    private void findPinned(List<Instruction> instructions, boolean[] targets, Operands operands) throws Unsafe {
+        int[] writes = new int[32];
+        boolean entry = true;
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (!decode(instruction, operands)) {
+                throw new Unsafe("the program has errors"); // encoding reports them
+            }
+            TokenType opcode = instruction.getOpcode();
+            entry &= !targets[i] && opcode != TokenType.BEQ && opcode != TokenType.BNE && opcode != TokenType.JAL;
+            switch (opcode) {
+                case SB, SH, SW, BEQ, BNE -> {
+                }
+                default -> {
+                    writes[operands.rd]++;
+                    pinned[operands.rd] = entry && writes[operands.rd] == 1;
+                }
+            }
+        }
+    }
+
+    private int fresh() {
+        if (nextValue == MAX_VALUES) {
+            throw new IllegalStateException("Too many values to number");
+        }
+        if (nextValue == constants.length) {
+            constants = Arrays.copyOf(constants, constants.length * 2);
+        }
+        constants[nextValue] = NOT_CONSTANT;
+        return nextValue++;
+    }
+
+    private int constant(int bits) {
+        Integer value = constantValues.get(bits);
+        if (value == null) {
+            value = fresh();
+            constants[value] = bits;
+            constantValues.put(bits, value);
+        }
+        return value;
+    }
+
+    private boolean isConstant(int value) {
+        return constants[value] != NOT_CONSTANT;
+    }
+
+    // Value number of a register-register operation: folded, simplified, or shared with the same computation earlier
+    // in the block
+    private int evaluate(TokenType opcode, int a, int b) {
+        if (opcode == TokenType.FSQRT) {
+            b = 0; // reads rs1 only
+        }
+        if (isConstant(a) && (opcode == TokenType.FSQRT || isConstant(b))) {
+            return constant(fold(opcode, (int) constants[a], opcode == TokenType.FSQRT ? 0 : (int) constants[b]));
+        }
+        if (a == b) {
+            switch (opcode) {
+                case OR, AND -> {
+                    return a;
+                }
+                case XOR, SUB -> {
+                    return constant(0);
+                }
+                default -> {
+                }
+            }
+        }
+        if (a > b && (opcode == TokenType.ADD || opcode == TokenType.XOR || opcode == TokenType.OR
+                || opcode == TokenType.AND)) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        return expressions.computeIfAbsent(key(opcode, a, b), key -> fresh());
+    }
+
+    private int evaluateImmediate(TokenType opcode, int a, int imm) {
+        if (isConstant(a)) {
+            return constant(fold(opcode, (int) constants[a], imm));
+        }
+        if (imm == (opcode == TokenType.ANDI ? -1 : 0)) {
+            return a;
+        }
+        return expressions.computeIfAbsent(key(opcode, a, imm), key -> fresh());
+    }
+
+    private static long key(TokenType opcode, int a, int b) {
+        return (long) opcode.ordinal() << 58 | (a & 0x1FFFFFFFL) << 29 | (b & 0x1FFFFFFFL);
+    }
+
+    // The operation as the Simulator executes it
+    private static int fold(TokenType opcode, int a, int b) {
+        return switch (opcode) {
+            case ADD, ADDI -> a + b;
+            case SUB -> a - b;
+            case XOR, XORI -> a ^ b;
+            case OR, ORI -> a | b;
+            case AND, ANDI -> a & b;
+            case FADD -> Float.floatToRawIntBits(f(a) + f(b));
+            case FSUB -> Float.floatToRawIntBits(f(a) - f(b));
+            case FMUL -> Float.floatToRawIntBits(f(a) * f(b));
+            case FDIV -> Float.floatToRawIntBits(f(a) / f(b));
+            case FMIN -> Float.floatToRawIntBits(fmin(f(a), f(b)));
+            case FMAX -> Float.floatToRawIntBits(fmax(f(a), f(b)));
+            case FSQRT -> Float.floatToRawIntBits((float) Math.sqrt(f(a)));
+            default -> throw new IllegalArgumentException("Cannot fold " + opcode);
+        };
+    }
+
+    private static float f(int bits) {
+        return Float.intBitsToFloat(bits);
+    }
+
+    // The RISC-V rule the Simulator follows: a NaN operand gives the other one, two give the canonical NaN
+    private static float fmin(float a, float b) {
+        if (Float.isNaN(a)) {
+            return Float.isNaN(b) ? Float.NaN : b;
+        }
+        return Float.isNaN(b) ? a : Math.min(a, b);
+    }
+
+    private static float fmax(float a, float b) {
+        if (Float.isNaN(a)) {
+            return Float.isNaN(b) ? Float.NaN : b;
+        }
+        return Float.isNaN(b) ? a : Math.max(a, b);
+    }
+
+    private static int combine(TokenType opcode, int first, int second) {
+        return switch (opcode) {
+            case ADDI -> first + second;
+            case XORI -> first ^ second;
+            case ORI -> first | second;
+            default -> first & second; // ANDI
+        };
+    }
+
+    // The constant address a load or store accesses, as an unsigned value; the pass gives up on any other
+    private long checkAddress(Instruction instruction, int base, int offset, int width) throws Unsafe {
+        int value = registers[base];
+        if (isConstant(value)) {
+            long address = ((int) constants[value] + offset) & 0xFFFFFFFFL;
+            if (address >= codeBytes && address + width <= 0x1_0000_0000L) {
+                return address;
+            }
+        }
+        throw new Unsafe("line " + instruction.getLine() + ": " + instruction.getOpcode()
+                + " may access the program's own code, which removing instructions would move");
+    }
+
+    private static int width(TokenType opcode) {
+        return switch (opcode) {
+            case LB, SB -> 1;
+            case LH, SH -> 2;
+            default -> 4;
+        };
+    }
+
+    // Reads the operands the way Instruction.encode does; false if it would reject them
+    private boolean decode(Instruction instruction, Operands operands) {
+        int count = instruction.operandCount();
+        switch (instruction.getOpcode()) {
+            case ADD, SUB, XOR, OR, AND, FADD, FSUB, FMUL, FDIV, FMIN, FMAX, FSQRT -> {
+                return count == 3 && register(instruction, 0, operands, 0) && register(instruction, 1, operands, 1)
+                        && register(instruction, 2, operands, 2);
+            }
+            case ADDI, XORI, ORI, ANDI, LB, LH, LW -> {
+                return count == 3 && register(instruction, 0, operands, 0) && register(instruction, 1, operands, 1)
+                        && immediate(instruction, 2, operands);
+            }
+            case SB, SH, SW -> {
+                return count == 3 && immediate(instruction, 0, operands) && register(instruction, 1, operands, 2)
+                        && register(instruction, 2, operands, 1);
+            }
+            case BEQ, BNE -> {
+                return count == 3 && isTarget(instruction, 0) && register(instruction, 1, operands, 2)
+                        && register(instruction, 2, operands, 1);
+            }
+            case JAL -> {
+                return count == 2 && register(instruction, 0, operands, 0) && isTarget(instruction, 1);
+            }
+            case LUI -> {
+                if (count != 2 || !register(instruction, 0, operands, 0)) {
+                    return false;
+                }
+                int token = instruction.operand(1);
+                if (tokens.type(token) == TokenType.IMM) {
+                    operands.imm = (tokens.intValue(token) & 0xFFFFF) << 12;
+                } else if (tokens.type(token) == TokenType.IMM_FLOAT) {
+                    operands.imm = ((Float.floatToIntBits(tokens.floatValue(token)) >> 12) & 0xFFFFF) << 12;
+                } else {
+                    return false;
+                }
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    // Stores an X operand's number as rd (0), rs1 (1) or rs2 (2)
+    private boolean register(Instruction instruction, int index, Operands operands, int field) {
+        int token = instruction.operand(index);
+        if (tokens.type(token) != TokenType.X) {
+            return false;
+        }
+        int number = 0;
+        for (int i = 1; i < tokens.length(token); i++) {
+            number = number * 10 + (tokens.charAt(token, i) - '0');
+        }
+        if (number > 31) {
+            return false;
+        }
+        switch (field) {
+            case 0 -> operands.rd = number;
+            case 1 -> operands.rs1 = number;
+            default -> operands.rs2 = number;
+        }
+        return true;
+    }
+
+    // A 12-bit immediate, sign-extended like the decoder does after encoding truncated it
+    private boolean immediate(Instruction instruction, int index, Operands operands) {
+        int token = instruction.operand(index);
+        if (tokens.type(token) != TokenType.IMM) {
+            return false;
+        }
+        operands.imm = tokens.intValue(token) << 20 >> 20;
+        return true;
+    }
+
+    private boolean isTarget(Instruction instruction, int index) {
+        TokenType type = tokens.type(instruction.operand(index));
+        return type == TokenType.IMM || type == TokenType.SYMBOL;
+    }
+
+    // An instruction with the registers of first and the given immediate. Its immediate token is new, but points at the
+    // text of second's, so the source positions stay meaningful.
+    private Instruction immediateInstruction(Instruction first, Instruction second, int imm) {
+        int immToken = second.operand(2);
+        int token = tokens.add(TokenType.IMM, tokens.offset(immToken), tokens.length(immToken), tokens.line(immToken), imm);
+        int firstOperand = tokens.addOperand(first.operand(0));
+        tokens.addOperand(first.operand(1));
+        tokens.addOperand(token);
+        return new Instruction(first.getOpcode(), tokens, first.opcodeToken(), firstOperand, 3, errors);
+    }
+
+    private String text(Instruction instruction) {
+        StringBuilder text = new StringBuilder(instruction.getOpcode().name());
+        for (int i = 0; i < instruction.operandCount(); i++) {
+            text.append(i == 0 ? " " : ",").append(tokens.lexeme(instruction.operand(i)));
+        }
+        return text.toString();
+    }
+
+    private static String text(TokenType opcode, int rd, int rs1, int imm) {
+        return opcode + " X" + rd + ",X" + rs1 + "," + imm;
+    }
+}
@@ -1,85 +1,85 @@
 package com.example.ide.assembler.RISCV;
 
+import com.example.ide.assembler.BuildCache;
+import com.example.ide.assembler.DiagnosticsSink;
+import com.example.ide.assembler.OutputFormat;
 
-import javafx.scene.control.TextArea;
-
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Scanner;
-
-import static com.example.ide.assembler.util.outputFilePath;
 
 public class RiscVAssembler {
 
-    public static List<AssemblerError> assemble(String filePath, TextArea outputTextArea) {
-        List<AssemblerError> errors = new ArrayList<>();
+    // Assembles a whole program in memory: adds the errors to the list and returns the encoded words, or null if
+    // lexing or parsing stopped before anything could be encoded
+    public static int[] assemble(CharSequence code, List<AssemblerError> errors) {
+        return assemble(code, errors, null);
+    }
 
-        String code = readFile(filePath);
-        if (code == null || code.isEmpty()) {
-            errors.add(new AssemblerError(0, "Error reading the assembly file or the file is empty."));
-            displayErrors(errors, outputTextArea);
-            return errors;
-        }
+    // Like assemble, with a PeepholeOptimizer pass between parsing and encoding; the report says what it changed
+    public static int[] assembleOptimized(CharSequence code, List<AssemblerError> errors,
+                                         PeepholeOptimizer.Report report) {
+        return assemble(code, errors, report);
+    }
 
-        Lexer lexer = new Lexer(code, errors, outputTextArea);
-        List<Token> tokens;
+    private static int[] assemble(CharSequence code, List<AssemblerError> errors, PeepholeOptimizer.Report report) {
+        Lexer lexer = new Lexer(code, errors);
+        TokenBuffer tokens;
         try {
             tokens = lexer.tokenize();
         } catch (IllegalArgumentException e) {
             errors.add(new AssemblerError(lexer.getLine(), e.getMessage()));
-            displayErrors(errors, outputTextArea);
-            return errors;
+            return null;
         }
-        System.out.println(tokens);
-        Parser parser = new Parser(errors, outputTextArea);
+        Parser parser = new Parser(errors);
         List<Instruction> instructions;
         try {
             instructions = parser.parse(tokens);
         } catch (IllegalArgumentException e) {
             errors.add(new AssemblerError(parser.getLine(), e.getMessage()));
-            displayErrors(errors, outputTextArea);
-            return errors;
-        }
-        System.out.println(instructions);
-
-        // Write machine code to file
-        String outputFilePath = outputFilePath(filePath);
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFilePath))) {
-            for (Instruction instruction : instructions) {
-                writer.write(instruction.toMachineCode());
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            errors.add(new AssemblerError(0, "Error writing to output file: " + e.getMessage()));
+            return null;
         }
-
-        if (!errors.isEmpty()) {
-            displayErrors(errors, outputTextArea);
+        if (report != null) {
+            instructions = PeepholeOptimizer.optimize(instructions, tokens, parser.getLabels(), errors, report);
         }
 
-        return errors;
+        // Encode the whole program, then patch in the label offsets
+        int[] words = Instruction.encode(instructions);
+        LabelLinker.link(parser.getLabels(), tokens, instructions, words, errors);
+        return words;
     }
 
-    // Method to read the file content
-    private static String readFile(String filePath) {
-        StringBuilder code = new StringBuilder();
+    // Assembles the text of an open editor into the build directory, or takes it from the build cache if it was built
+    // before. This is the whole-program assembler the command line and project builds use, so an entry is the same
+    // whichever of them made it (the editor's incremental checker reads some malformed lines differently).
+    // filePath only decides where the output goes: a file assembled on its own gets its output at the top of the build
+    // directory.
+    public static List<AssemblerError> assemble(CharSequence code, String filePath, BuildCache cache,
+                                                DiagnosticsSink diagnostics, OutputFormat format) {
+        if (code.isEmpty()) {
+            List<AssemblerError> errors = new ArrayList<>();
+            errors.add(new AssemblerError(0, "Error reading the assembly file or the file is empty."));
+            reportErrors(errors, diagnostics);
+            return errors;
+        }
+
+        List<AssemblerError> errors;
         try {
-            Scanner scanner = new Scanner(new File(filePath));
-            while (scanner.hasNextLine()) {
-                code.append(scanner.nextLine()).append("\n");
-            }
-            scanner.close();
-        } catch (FileNotFoundException e) {
-            System.out.println("File not found: " + filePath);
-            return null;
+            errors = cache.build(Paths.get(filePath).getFileName(), code, format,
+                    buildErrors -> assemble(code, buildErrors)).getErrors();
+        } catch (IOException e) {
+            errors = new ArrayList<>();
+            errors.add(new AssemblerError(0, "Error writing to the build cache: " + e.getMessage()));
         }
-        return code.toString();
+
+        reportErrors(errors, diagnostics);
+        return errors;
     }
 
-    // Method to display errors in the TextArea
-    private static void displayErrors(List<AssemblerError> errors, TextArea outputTextArea) {
+    // Method to hand the collected errors to the diagnostics sink, ordered by line
+    private static void reportErrors(List<AssemblerError> errors, DiagnosticsSink diagnostics) {
         if (errors.isEmpty()) {
             return;
         }
@@ -87,11 +87,9 @@ public class RiscVAssembler {
         // Sort errors by line number
         errors.sort(Comparator.comparingInt(AssemblerError::getLine));
 
-        outputTextArea.clear(); // Clear existing text
         for (AssemblerError error : errors) {
-            outputTextArea.appendText("Error at line " + error.getLine() + ": " + error.getMessage() + "\n");
+            diagnostics.report(error);
         }
-        outputTextArea.positionCaret(0); // Scroll to top
     }
 
 
@@ -0,0 +1,111 @@
+package com.example.ide.assembler.RISCV;
+
+// Open-addressing hash table from label names to values (word indices).
+// Names are compared in place in the token buffers they were lexed into, so defining or looking up a label copies
+// no text. Slots are probed linearly and the table is kept at most half full, so a lookup touches one or two slots.
+final class SymbolTable {
+    static final int NOT_FOUND = -1;
+
+    private TokenBuffer[] buffers; // null marks an empty slot
+    private int[] tokens;
+    private int[] hashes;
+    private int[] values;
+    private int size;
+
+    SymbolTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Adds the label named by the token; false (and no change) if it is already defined
+    boolean define(TokenBuffer buffer, int token, int value) {
+        int hash = hash(buffer, token);
+        int slot = find(buffer, token, hash);
+        if (buffers[slot] != null) {
+            return false;
+        }
+        buffers[slot] = buffer;
+        tokens[slot] = token;
+        hashes[slot] = hash;
+        values[slot] = value;
+        if (++size * 2 > buffers.length) {
+            grow();
+        }
+        return true;
+    }
+
+    // Value of the label named by the token, or NOT_FOUND
+    int lookup(TokenBuffer buffer, int token) {
+        int slot = find(buffer, token, hash(buffer, token));
+        return buffers[slot] != null ? values[slot] : NOT_FOUND;
+    }
+
+    // Slot holding the name, or the empty slot where it belongs
+    private int find(TokenBuffer buffer, int token, int hash) {
+        int mask = buffers.length - 1;
+        int slot = hash & mask;
+        while (buffers[slot] != null) {
+            if (hashes[slot] == hash && sameName(buffers[slot], tokens[slot], buffer, token)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        TokenBuffer[] oldBuffers = buffers;
+        int[] oldTokens = tokens;
+        int[] oldHashes = hashes;
+        int[] oldValues = values;
+        allocate(oldBuffers.length * 2);
+        int mask = buffers.length - 1;
+        for (int i = 0; i < oldBuffers.length; i++) {
+            if (oldBuffers[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (buffers[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                buffers[slot] = oldBuffers[i];
+                tokens[slot] = oldTokens[i];
+                hashes[slot] = oldHashes[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        buffers = new TokenBuffer[capacity];
+        tokens = new int[capacity];
+        hashes = new int[capacity];
+        values = new int[capacity];
+    }
+
+    private static boolean sameName(TokenBuffer a, int tokenA, TokenBuffer b, int tokenB) {
+        int length = a.length(tokenA);
+        if (b.length(tokenB) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(tokenA, i) != b.charAt(tokenB, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 32-bit FNV-1a over the name, with the high bits folded down since the table only uses the low ones
+    private static int hash(TokenBuffer buffer, int token) {
+        int h = 0x811c9dc5;
+        int length = buffer.length(token);
+        for (int i = 0; i < length; i++) {
+            h ^= buffer.charAt(token, i);
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.ide.assembler.RISCV;
+
+import java.util.Arrays;
+
+// Compact token stream: one slot per token spread over parallel primitive arrays instead of one Token object each.
+// Lexemes are not copied; a token only records where it sits in the source, and the text is sliced out on demand
+// (in practice only for error messages). The Parser also records each instruction's operand list here, as token
+// indices, so parsing does not allocate per operand either.
+public final class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final CharSequence source;
+
+    private byte[] types;
+    private int[] offsets;
+    private int[] lengths;
+    private int[] lines;
+    private int[] literals; // int value, or raw IEEE 754 bits for IMM_FLOAT
+    private int size;
+
+    private int[] operands;
+    private int operandCount;
+
+    public TokenBuffer(CharSequence source) {
+        // A source of n characters never holds more than n tokens, so short sources (single lines) stay small
+        this(source, Math.min(INITIAL_CAPACITY, source.length()));
+    }
+
+    public TokenBuffer(CharSequence source, int capacity) {
+        this.source = source;
+        capacity = Math.max(capacity, 4);
+        types = new byte[capacity];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        literals = new int[capacity];
+        operands = new int[capacity];
+    }
+
+    // Appends a token and returns its index
+    int add(TokenType type, int offset, int length, int line, int literal) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            literals = Arrays.copyOf(literals, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        offsets[size] = offset;
+        lengths[size] = length;
+        lines[size] = line;
+        literals[size] = literal;
+        return size++;
+    }
+
+    // Appends a token index to the operand lists and returns its position there
+    int addOperand(int token) {
+        if (operandCount == operands.length) {
+            operands = Arrays.copyOf(operands, operandCount * 2);
+        }
+        operands[operandCount] = token;
+        return operandCount++;
+    }
+
+    int operandCount() {
+        return operandCount;
+    }
+
+    // Token index stored at a position of the operand lists
+    int operand(int position) {
+        return operands[position];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int intValue(int index) {
+        return literals[index];
+    }
+
+    public float floatValue(int index) {
+        return Float.intBitsToFloat(literals[index]);
+    }
+
+    public char charAt(int index, int position) {
+        return source.charAt(offsets[index] + position);
+    }
+
+    // Source text of a token; allocates, so only meant for messages and debugging
+    public String lexeme(int index) {
+        return source.subSequence(offsets[index], offsets[index] + lengths[index]).toString();
+    }
+
+    // Materializes a token as an object, for debugging and callers of Instruction.getOperands()
+    Token token(int index) {
+        TokenType type = type(index);
+        Object literal = switch (type) {
+            case IMM -> intValue(index);
+            case IMM_FLOAT -> floatValue(index);
+            default -> null;
+        };
+        return new Token(type, lexeme(index), literal, line(index));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(token(i));
+        }
+        return text.append(']').toString();
+    }
+}
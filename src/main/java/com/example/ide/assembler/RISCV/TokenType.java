@@ -17,7 +17,11 @@ public enum TokenType {
     // Update TokenType to include:
     LPAREN, // For '('
     RPAREN, // For ')'
-    COMMA   // For ','
+    COMMA,  // For ','
+
+    // Labels
+    LABEL,  // Definition, a name followed by ':' (the token covers the name only)
+    SYMBOL  // Reference to a label, as a branch or jump target
 
 
     }
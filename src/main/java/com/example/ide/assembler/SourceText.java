@@ -0,0 +1,79 @@
+package com.example.ide.assembler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+// Read-only view of an assembly source file as a CharSequence over its bytes.
+// Large files are memory-mapped, so the lexer walks the page cache directly and the heap does not grow with the file.
+// Assembly sources are ASCII, so every byte is one char (decoded as ISO-8859-1).
+public final class SourceText implements CharSequence {
+    // Files below this size are simply read into the heap; mapping small files costs more than it saves
+    // and keeps the file locked on some platforms while the mapping is alive.
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    private final ByteBuffer bytes;
+
+    private SourceText(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    public static SourceText open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file is too large: " + size + " bytes");
+            }
+            if (size < MAP_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // keep reading until the buffer is full or the file ends
+                }
+                buffer.flip();
+                return new SourceText(buffer);
+            }
+            // The mapping stays valid after the channel is closed
+            return new SourceText(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    public static SourceText of(String text) {
+        return new SourceText(ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    // Feeds the file's bytes, as they are on disk, to a digest
+    public void digest(MessageDigest digest) {
+        digest.update(bytes.duplicate());
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xFF);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bytes.limit() == 0;
+    }
+
+    @Override
+    public SourceText subSequence(int start, int end) {
+        return new SourceText(bytes.slice(start, end - start));
+    }
+
+    @Override
+    public String toString() {
+        byte[] copy = new byte[bytes.limit()];
+        bytes.get(0, copy);
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+}
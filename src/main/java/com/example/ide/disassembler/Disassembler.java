@@ -0,0 +1,367 @@
+package com.example.ide.disassembler;
+
+import com.example.ide.assembler.OutputFormat;
+import com.example.ide.assembler.RISCV.Instruction;
+import com.example.ide.assembler.RISCV.TokenType;
+import com.example.ide.simulator.ProgramLoader;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Turns machine words back into assembly source, in the syntax the assembler reads, so a listing reassembles to the
+// same words. Words are decoded through lookup tables indexed by opcode and funct3 (and funct7 or funct5/rm), the
+// mirror image of the encodings in Instruction.convert*Instruction; words no table entry matches are written as
+// comments. Register 0 is written as X0, which foreign binaries use but the assembler does not accept back.
+// .bin and .img files are streamed through fixed-size buffers, so memory use does not grow with the program; the bulk
+// methods append straight to a StringBuilder without any per-word formatting objects.
+public final class Disassembler {
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int FLUSH_CHARS = 1 << 16;
+
+    // Instruction formats, as the operand layouts they are written with; 0 for opcodes the assembler never emits
+    private static final byte R_TYPE = 1, I_TYPE = 2, S_TYPE = 3, B_TYPE = 4, J_TYPE = 5, U_TYPE = 6,
+            F_TYPE = 7;
+
+    private static final byte[] FORMATS = new byte[128];                // by opcode
+    private static final String[] FUNCT3 = new String[128 * 8];         // by opcode << 3 | funct3 (I, S and B types)
+    private static final String[] R_MNEMONICS = new String[2 * 8];      // by funct7 (0 or 0x20) >> 5 << 3 | funct3
+    private static final String[] F_MNEMONICS = new String[32 * 8];     // by funct5 << 3 | rm
+    private static final String[] U_MNEMONICS = new String[128];        // by opcode (U and J types)
+    private static final String[] REGISTERS = new String[32];
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    static {
+        rType(TokenType.ADD, 0b0000000, 0b000);
+        rType(TokenType.SUB, 0b0100000, 0b000);
+        rType(TokenType.XOR, 0b0000000, 0b100);
+        rType(TokenType.OR, 0b0000000, 0b110);
+        rType(TokenType.AND, 0b0000000, 0b111);
+        funct3(TokenType.ADDI, I_TYPE, 0b0010011, 0b000);
+        funct3(TokenType.XORI, I_TYPE, 0b0010011, 0b100);
+        funct3(TokenType.ORI, I_TYPE, 0b0010011, 0b110);
+        funct3(TokenType.ANDI, I_TYPE, 0b0010011, 0b111);
+        funct3(TokenType.LB, I_TYPE, 0b0000011, 0b000);
+        funct3(TokenType.LH, I_TYPE, 0b0000011, 0b001);
+        funct3(TokenType.LW, I_TYPE, 0b0000011, 0b010);
+        funct3(TokenType.SB, S_TYPE, 0b0100011, 0b000);
+        funct3(TokenType.SH, S_TYPE, 0b0100011, 0b001);
+        funct3(TokenType.SW, S_TYPE, 0b0100011, 0b010);
+        funct3(TokenType.BEQ, B_TYPE, 0b1100011, 0b000);
+        funct3(TokenType.BNE, B_TYPE, 0b1100011, 0b001);
+        opcode(TokenType.JAL, J_TYPE, 0b1101111);
+        opcode(TokenType.LUI, U_TYPE, 0b0110111);
+        fType(TokenType.FADD, 0b00000, 0b000);
+        fType(TokenType.FSUB, 0b00001, 0b000);
+        fType(TokenType.FMUL, 0b00010, 0b000);
+        fType(TokenType.FDIV, 0b00011, 0b000);
+        fType(TokenType.FMIN, 0b00100, 0b001);
+        fType(TokenType.FMAX, 0b00101, 0b010);
+        fType(TokenType.FSQRT, 0b00110, 0b000);
+        for (int i = 0; i < REGISTERS.length; i++) {
+            REGISTERS[i] = "X" + i;
+        }
+    }
+
+    private static void rType(TokenType type, int funct7, int funct3) {
+        FORMATS[0b0110011] = R_TYPE;
+        R_MNEMONICS[(funct7 >> 5) << 3 | funct3] = type.name();
+    }
+
+    private static void funct3(TokenType type, byte format, int opcode, int funct3) {
+        FORMATS[opcode] = format;
+        FUNCT3[opcode << 3 | funct3] = type.name();
+    }
+
+    private static void opcode(TokenType type, byte format, int opcode) {
+        FORMATS[opcode] = format;
+        U_MNEMONICS[opcode] = type.name();
+    }
+
+    private static void fType(TokenType type, int funct5, int rm) {
+        FORMATS[0b1010011] = F_TYPE;
+        F_MNEMONICS[funct5 << 3 | rm] = type.name();
+    }
+
+    private Disassembler() {
+    }
+
+    public static String disassemble(int word) {
+        StringBuilder out = new StringBuilder(32);
+        disassemble(word, out);
+        return out.toString();
+    }
+
+    // Appends the source form of one word, without a line separator
+    public static void disassemble(int word, StringBuilder out) {
+        int opcode = word & 0x7F;
+        int rd = (word >>> 7) & 0x1F;
+        int funct3 = (word >>> 12) & 0x7;
+        int rs1 = (word >>> 15) & 0x1F;
+        int rs2 = (word >>> 20) & 0x1F;
+        int funct7 = word >>> 25;
+
+        String mnemonic = null;
+        switch (FORMATS[opcode]) {
+            case R_TYPE -> {
+                if ((funct7 & ~0b0100000) == 0) {
+                    mnemonic = R_MNEMONICS[(funct7 >> 5) << 3 | funct3];
+                }
+                if (mnemonic != null) {
+                    registers(out, mnemonic, rd, rs1, rs2);
+                }
+            }
+            case F_TYPE -> {
+                if ((funct7 & 0b11) == 0) { // fmt 00, single precision
+                    mnemonic = F_MNEMONICS[(funct7 >> 2) << 3 | funct3];
+                }
+                if (mnemonic != null) {
+                    registers(out, mnemonic, rd, rs1, rs2);
+                }
+            }
+            case I_TYPE -> {
+                mnemonic = FUNCT3[opcode << 3 | funct3];
+                if (mnemonic != null) {
+                    out.append(mnemonic).append(' ').append(REGISTERS[rd]).append(", ").append(REGISTERS[rs1])
+                            .append(", ").append(word >> 20);
+                }
+            }
+            case S_TYPE -> {
+                mnemonic = FUNCT3[opcode << 3 | funct3];
+                if (mnemonic != null) {
+                    storeOrBranch(out, mnemonic, (word >> 25) << 5 | rd, rs2, rs1);
+                }
+            }
+            case B_TYPE -> {
+                mnemonic = FUNCT3[opcode << 3 | funct3];
+                if (mnemonic != null) {
+                    storeOrBranch(out, mnemonic, branchOffset(word), rs2, rs1);
+                }
+            }
+            case J_TYPE -> {
+                mnemonic = U_MNEMONICS[opcode];
+                out.append(mnemonic).append(' ').append(REGISTERS[rd]).append(", ").append(jumpOffset(word));
+            }
+            case U_TYPE -> {
+                mnemonic = U_MNEMONICS[opcode];
+                out.append(mnemonic).append(' ').append(REGISTERS[rd]).append(", 0x");
+                int imm = word >>> 12;
+                hex(out, imm, Math.max(1, (35 - Integer.numberOfLeadingZeros(imm)) / 4));
+            }
+            default -> {
+            }
+        }
+        // There is no .word directive to write other words back with, so they can only be shown
+        if (word == Instruction.INVALID) {
+            out.append("# ERROR");
+        } else if (mnemonic == null) {
+            out.append("# unknown 0x");
+            hex(out, word, 8);
+        }
+    }
+
+    // Appends words[from..to) one per line; with addresses, each line ends in a comment with the word's address
+    // (and the target of a branch or jump), counting from the address of words[0]
+    public static void disassemble(int[] words, int from, int to, boolean addresses, StringBuilder out) {
+        for (int i = from; i < to; i++) {
+            line(words[i], i * 4L, addresses, out);
+        }
+    }
+
+    // Streams the program in file to out, in the format picked from the extension like ProgramLoader does.
+    // .hex files have no fixed record order, so they are loaded whole first. Returns the number of words.
+    public static long disassemble(Path file, Writer out, boolean addresses) throws IOException {
+        String name = file.getFileName().toString();
+        WordSink sink = new WordSink(out, addresses);
+        if (name.endsWith(OutputFormat.INTEL_HEX.getExtension())) {
+            for (int word : ProgramLoader.loadIntelHex(file)) {
+                sink.accept(word);
+            }
+            sink.finish();
+            return sink.count;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (name.endsWith(OutputFormat.RAW.getExtension())) {
+                streamRaw(channel, sink);
+            } else {
+                streamText(channel, sink, file);
+            }
+            sink.finish();
+            return sink.count;
+        }
+    }
+
+    // Little-endian words; a trailing partial word is dropped, as ProgramLoader.loadRaw does
+    private static void streamRaw(FileChannel channel, WordSink sink) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.remaining() >= 4) {
+                sink.accept(buffer.getInt());
+            }
+            buffer.compact();
+        }
+    }
+
+    // The .bin listing, parsed byte by byte: 32 binary digits or ERROR per line, blank lines skipped
+    private static void streamText(FileChannel channel, WordSink sink, Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        TextLine line = new TextLine();
+        long lineNumber = 1;
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            byte[] bytes = buffer.array();
+            for (int i = 0, end = buffer.limit(); i < end; i++) {
+                byte b = bytes[i];
+                if (b == '0' || b == '1') {
+                    line.addDigit(b);
+                } else if (b == '\n') {
+                    line.finish(sink, lineNumber++, file);
+                } else if (b != '\r' && b != ' ' && b != '\t') {
+                    line.add(b);
+                }
+            }
+            buffer.clear();
+        }
+        line.finish(sink, lineNumber, file);
+    }
+
+    private static void line(int word, long address, boolean addresses, StringBuilder out) {
+        int start = out.length();
+        disassemble(word, out);
+        if (addresses) {
+            for (int column = out.length() - start; column < 28; column++) {
+                out.append(' ');
+            }
+            out.append(" # ");
+            hex(out, (int) address, 8);
+            if (isBranchOrJump(word)) {
+                out.append(" -> ");
+                hex(out, (int) address + (FORMATS[word & 0x7F] == J_TYPE ? jumpOffset(word) : branchOffset(word)), 8);
+            }
+        }
+        out.append('\n');
+    }
+
+    private static boolean isBranchOrJump(int word) {
+        int opcode = word & 0x7F;
+        return FORMATS[opcode] == J_TYPE
+                || FORMATS[opcode] == B_TYPE && FUNCT3[opcode << 3 | ((word >>> 12) & 0x7)] != null;
+    }
+
+    // imm[12|10:5] in bits 31-25, imm[4:1|11] in bits 11-7
+    private static int branchOffset(int word) {
+        return (word >> 31) << 12
+                | ((word >>> 7) & 0x1) << 11
+                | ((word >>> 25) & 0x3F) << 5
+                | ((word >>> 8) & 0xF) << 1;
+    }
+
+    // imm[20|10:1|11|19:12] in bits 31-12
+    private static int jumpOffset(int word) {
+        return (word >> 31) << 20
+                | ((word >>> 12) & 0xFF) << 12
+                | ((word >>> 20) & 0x1) << 11
+                | ((word >>> 21) & 0x3FF) << 1;
+    }
+
+    private static void registers(StringBuilder out, String mnemonic, int rd, int rs1, int rs2) {
+        out.append(mnemonic).append(' ').append(REGISTERS[rd]).append(", ").append(REGISTERS[rs1]).append(", ")
+                .append(REGISTERS[rs2]);
+    }
+
+    // Stores and branches are written immediate first: imm, rs2, rs1
+    private static void storeOrBranch(StringBuilder out, String mnemonic, int imm, int rs2, int rs1) {
+        out.append(mnemonic).append(' ').append(imm).append(", ").append(REGISTERS[rs2]).append(", ")
+                .append(REGISTERS[rs1]);
+    }
+
+    private static void hex(StringBuilder out, int value, int digits) {
+        for (int shift = 4 * (digits - 1); shift >= 0; shift -= 4) {
+            out.append(HEX_DIGITS[(value >>> shift) & 0xF]);
+        }
+    }
+
+    // One line of the .bin listing as it is read: the bits of its word, or how much of "ERROR" it spells
+    private static final class TextLine {
+        private static final byte[] ERROR = "ERROR".getBytes(StandardCharsets.US_ASCII);
+
+        private int word;
+        private int digits;
+        private int letters;
+        private boolean malformed;
+
+        void addDigit(byte b) {
+            if (letters == 0 && digits < 32) {
+                word = word << 1 | (b - '0');
+                digits++;
+            } else {
+                malformed = true;
+            }
+        }
+
+        void add(byte b) {
+            if (digits == 0 && letters < ERROR.length && b == ERROR[letters]) {
+                letters++;
+            } else {
+                malformed = true;
+            }
+        }
+
+        void finish(WordSink sink, long lineNumber, Path file) throws IOException {
+            if (malformed || (digits != 0 && digits != 32) || (letters != 0 && letters != ERROR.length)) {
+                throw new IOException("Invalid machine code at line " + lineNumber + " of " + file);
+            }
+            if (digits == 32) {
+                sink.accept(word);
+            } else if (letters != 0) {
+                sink.accept(Instruction.INVALID);
+            }
+            word = 0;
+            digits = 0;
+            letters = 0;
+        }
+    }
+
+    // Formats streamed words into a bounded buffer that is handed to the writer whenever it fills up.
+    // The text is copied out through a char[] since Writer.append(CharSequence) would make a String of it first.
+    private static final class WordSink {
+        private final Writer out;
+        private final boolean addresses;
+        private final StringBuilder text = new StringBuilder(FLUSH_CHARS + 128);
+        private char[] chars = new char[0];
+        private long count;
+
+        WordSink(Writer out, boolean addresses) {
+            this.out = out;
+            this.addresses = addresses;
+        }
+
+        void accept(int word) throws IOException {
+            line(word, count * 4, addresses, text);
+            count++;
+            if (text.length() >= FLUSH_CHARS) {
+                flush();
+            }
+        }
+
+        void finish() throws IOException {
+            flush();
+        }
+
+        private void flush() throws IOException {
+            int length = text.length();
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+            text.getChars(0, length, chars, 0);
+            out.write(chars, 0, length);
+            text.setLength(0);
+        }
+    }
+}
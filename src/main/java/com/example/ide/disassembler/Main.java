@@ -0,0 +1,47 @@
+package com.example.ide.disassembler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Command line disassembler: Main [--addresses] <program.bin|.img|.hex> [output.asm]
+// Writes the source to output.asm, or to standard output, and the word count and speed to standard error.
+// --addresses ends every line with a comment holding its address and, for branches and jumps, the target.
+public class Main {
+
+    public static void main(String[] args) {
+        boolean addresses = false;
+        while (args.length > 0 && args[0].startsWith("--")) {
+            if (!args[0].equals("--addresses")) {
+                System.err.println("Unknown option: " + args[0]);
+                System.exit(2);
+            }
+            addresses = true;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length == 0) {
+            System.err.println("Usage: Main [--addresses] <program.bin|.img|.hex> [output.asm]");
+            System.exit(2);
+        }
+
+        long startTime = System.nanoTime();
+        long words;
+        try (Writer out = args.length > 1
+                ? Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.US_ASCII)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII))) {
+            words = Disassembler.disassemble(Paths.get(args[0]), out, addresses);
+        } catch (IOException e) {
+            System.err.println("Error disassembling " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - startTime);
+        System.err.printf("Disassembled %d words in %.3f ms (%.1f M words/s)%n",
+                words, elapsedNanos / 1e6, words * 1e3 / elapsedNanos);
+    }
+}
@@ -0,0 +1,563 @@
+package com.example.ide.editor;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+// Text editor for assembly sources of any size. The text lives in a Document (a piece table with a line index), and
+// only the lines in the viewport are drawn, on a canvas the size of the viewport, so opening, scrolling and typing cost
+// the same in a 10-line file and in a 10 MB one. Monospaced font, tabs expanded to TAB_WIDTH columns. Lines are colored
+// by a SyntaxHighlighter as they are drawn.
+public class CodeEditor extends Region {
+    private static final int TAB_WIDTH = 4;
+    private static final double PADDING = 4; // left of the text
+    private static final Color BACKGROUND = Color.WHITE;
+    private static final Color TEXT = Color.rgb(32, 32, 32);
+    private static final Color SELECTION = Color.rgb(173, 214, 255);
+    private static final Color CURRENT_LINE = Color.rgb(245, 245, 245);
+    private static final Color[] STYLE_COLORS = new Color[SyntaxHighlighter.Style.values().length];
+
+    static {
+        STYLE_COLORS[SyntaxHighlighter.Style.MNEMONIC.ordinal()] = Color.rgb(0, 0, 175);
+        STYLE_COLORS[SyntaxHighlighter.Style.REGISTER.ordinal()] = Color.rgb(128, 0, 128);
+        STYLE_COLORS[SyntaxHighlighter.Style.NUMBER.ordinal()] = Color.rgb(9, 120, 80);
+        STYLE_COLORS[SyntaxHighlighter.Style.LABEL.ordinal()] = Color.rgb(160, 80, 0);
+        STYLE_COLORS[SyntaxHighlighter.Style.SYMBOL.ordinal()] = Color.rgb(160, 80, 0);
+        STYLE_COLORS[SyntaxHighlighter.Style.PUNCTUATION.ordinal()] = Color.rgb(96, 96, 96);
+        STYLE_COLORS[SyntaxHighlighter.Style.COMMENT.ordinal()] = Color.rgb(110, 130, 110);
+        STYLE_COLORS[SyntaxHighlighter.Style.ERROR.ordinal()] = Color.rgb(210, 0, 0);
+    }
+
+    private final Document document;
+    private final SyntaxHighlighter highlighter;
+    private final Canvas canvas = new Canvas();
+    private final ScrollBar verticalBar = new ScrollBar();
+    private final ScrollBar horizontalBar = new ScrollBar();
+    private final ObjectProperty<Font> font = new SimpleObjectProperty<>(this, "font", Font.font("Monospaced", 13));
+    private final DoubleProperty scrollTop = new SimpleDoubleProperty(this, "scrollTop");
+    private final DoubleProperty scrollLeft = new SimpleDoubleProperty(this, "scrollLeft");
+
+    private double lineHeight;
+    private double charWidth;
+    private double baseline;
+    private int caret;
+    private int anchor; // other end of the selection; equal to caret when nothing is selected
+    private int preferredColumn = -1; // kept while moving up and down through shorter lines
+    private int widestColumns; // widest line seen so far, for the horizontal scroll range
+
+    public CodeEditor() {
+        this("");
+    }
+
+    public CodeEditor(String text) {
+        this(new Document(text));
+    }
+
+    public CodeEditor(Document document) {
+        this.document = document;
+        highlighter = new SyntaxHighlighter(document);
+        getStyleClass().add("code-editor");
+        setFocusTraversable(true);
+        verticalBar.setOrientation(Orientation.VERTICAL);
+        verticalBar.setFocusTraversable(false);
+        horizontalBar.setFocusTraversable(false);
+        getChildren().addAll(canvas, verticalBar, horizontalBar);
+        verticalBar.valueProperty().bindBidirectional(scrollTop);
+        horizontalBar.valueProperty().bindBidirectional(scrollLeft);
+        updateMetrics();
+
+        font.addListener(observable -> {
+            updateMetrics();
+            requestLayout();
+        });
+        scrollTop.addListener(observable -> redraw());
+        scrollLeft.addListener(observable -> redraw());
+        focusedProperty().addListener(observable -> redraw());
+        document.addLineChangeListener(change -> {
+            caret = Math.min(caret, document.length());
+            anchor = Math.min(anchor, document.length());
+            requestLayout();
+        });
+
+        addEventHandler(KeyEvent.KEY_PRESSED, this::keyPressed);
+        addEventHandler(KeyEvent.KEY_TYPED, this::keyTyped);
+        canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, event -> {
+            requestFocus();
+            moveCaret(offsetAt(event.getX(), event.getY()), event.isShiftDown());
+            if (event.getClickCount() == 2) {
+                selectLine(document.lineOfOffset(caret));
+            }
+        });
+        canvas.addEventHandler(MouseEvent.MOUSE_DRAGGED, event -> moveCaret(offsetAt(event.getX(), event.getY()), true));
+        addEventHandler(ScrollEvent.SCROLL, event -> {
+            scrollTop.set(clamp(scrollTop.get() - event.getDeltaY(), verticalBar.getMax()));
+            scrollLeft.set(clamp(scrollLeft.get() - event.getDeltaX(), horizontalBar.getMax()));
+            event.consume();
+        });
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public String getText() {
+        return document.getText();
+    }
+
+    // Replaces the text, e.g. with a file just opened; the undo history starts over
+    public void setText(String text) {
+        document.setText(text);
+        widestColumns = 0;
+        caret = 0;
+        anchor = 0;
+        scrollTop.set(0);
+        scrollLeft.set(0);
+    }
+
+    public ObjectProperty<Font> fontProperty() {
+        return font;
+    }
+
+    public Font getFont() {
+        return font.get();
+    }
+
+    public void setFont(Font value) {
+        font.set(value);
+    }
+
+    // Vertical scroll position in pixels: line n (from 0) is drawn at n * getLineHeight() - scrollTop
+    public DoubleProperty scrollTopProperty() {
+        return scrollTop;
+    }
+
+    public double getScrollTop() {
+        return scrollTop.get();
+    }
+
+    public double getLineHeight() {
+        return lineHeight;
+    }
+
+    public int getCaretPosition() {
+        return caret;
+    }
+
+    public int getAnchor() {
+        return anchor;
+    }
+
+    public String getSelectedText() {
+        return document.getText(Math.min(caret, anchor), Math.max(caret, anchor));
+    }
+
+    // Selects [anchor, caret) in either direction and scrolls the caret into view
+    public void selectRange(int anchor, int caret) {
+        this.anchor = clamp(anchor, document.length());
+        moveCaret(caret, true);
+    }
+
+    public void positionCaret(int offset) {
+        moveCaret(offset, false);
+    }
+
+    public void selectAll() {
+        anchor = 0;
+        caret = document.length();
+        redraw();
+    }
+
+    public void undo() {
+        int offset = document.undo();
+        if (offset >= 0) {
+            moveCaret(offset, false);
+        }
+    }
+
+    public void redo() {
+        int offset = document.redo();
+        if (offset >= 0) {
+            moveCaret(offset, false);
+        }
+    }
+
+    public void cut() {
+        if (caret != anchor) {
+            copy();
+            replaceSelection("");
+        }
+    }
+
+    public void copy() {
+        if (caret != anchor) {
+            ClipboardContent content = new ClipboardContent();
+            content.putString(getSelectedText());
+            Clipboard.getSystemClipboard().setContent(content);
+        }
+    }
+
+    public void paste() {
+        String text = Clipboard.getSystemClipboard().getString();
+        if (text != null) {
+            replaceSelection(text.replace("\r\n", "\n").replace('\r', '\n'));
+        }
+    }
+
+    // Replaces the selection (or inserts at the caret) and leaves the caret after the new text
+    public void replaceSelection(String text) {
+        int start = Math.min(caret, anchor);
+        document.replace(start, Math.abs(caret - anchor), text);
+        moveCaret(start + text.length(), false);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double barWidth = verticalBar.prefWidth(-1);
+        double barHeight = horizontalBar.prefHeight(-1);
+        double width = Math.max(0, getWidth() - barWidth);
+        double height = Math.max(0, getHeight() - barHeight);
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+        canvas.relocate(0, 0);
+        verticalBar.resizeRelocate(width, 0, barWidth, height);
+        horizontalBar.resizeRelocate(0, height, width, barHeight);
+        updateScrollRanges();
+        redraw();
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return 600;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return 400;
+    }
+
+    private void updateMetrics() {
+        Text sample = new Text("XXXXXXXXXX");
+        sample.setFont(getFont());
+        charWidth = sample.getLayoutBounds().getWidth() / 10;
+        lineHeight = Math.ceil(sample.getLayoutBounds().getHeight());
+        baseline = sample.getBaselineOffset();
+    }
+
+    private void updateScrollRanges() {
+        double contentHeight = document.getLineCount() * lineHeight;
+        double verticalMax = Math.max(0, contentHeight - canvas.getHeight());
+        verticalBar.setMax(verticalMax);
+        verticalBar.setVisibleAmount(verticalMax * canvas.getHeight() / Math.max(1, contentHeight));
+        verticalBar.setUnitIncrement(lineHeight);
+        verticalBar.setBlockIncrement(Math.max(lineHeight, canvas.getHeight() - lineHeight));
+        scrollTop.set(clamp(scrollTop.get(), verticalMax));
+
+        double contentWidth = PADDING + (widestColumns + 1) * charWidth;
+        double horizontalMax = Math.max(0, contentWidth - canvas.getWidth());
+        horizontalBar.setMax(horizontalMax);
+        horizontalBar.setVisibleAmount(horizontalMax * canvas.getWidth() / Math.max(1, contentWidth));
+        horizontalBar.setUnitIncrement(charWidth);
+        scrollLeft.set(clamp(scrollLeft.get(), horizontalMax));
+    }
+
+    private void redraw() {
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        graphics.setFill(BACKGROUND);
+        graphics.fillRect(0, 0, width, height);
+        if (lineHeight <= 0) {
+            return;
+        }
+        graphics.setFont(getFont());
+        graphics.setTextAlign(TextAlignment.LEFT);
+        graphics.setTextBaseline(VPos.BASELINE);
+
+        int first = (int) (scrollTop.get() / lineHeight);
+        int last = Math.min(document.getLineCount() - 1, (int) ((scrollTop.get() + height) / lineHeight));
+        int firstColumn = (int) (scrollLeft.get() / charWidth);
+        int visibleColumns = (int) (width / charWidth) + 2;
+        double x0 = PADDING - scrollLeft.get();
+        int selectionStart = Math.min(caret, anchor);
+        int selectionEnd = Math.max(caret, anchor);
+        int caretLine = document.lineOfOffset(caret);
+        int widest = widestColumns;
+
+        for (int line = first; line <= last; line++) {
+            double y = line * lineHeight - scrollTop.get();
+            int lineStart = document.getLineStart(line);
+            int lineEnd = document.getLineEnd(line);
+            String text = document.getText(lineStart, lineEnd);
+            String expanded = expandTabs(text);
+            widest = Math.max(widest, expanded.length());
+
+            if (line == caretLine && selectionStart == selectionEnd) {
+                graphics.setFill(CURRENT_LINE);
+                graphics.fillRect(0, y, width, lineHeight);
+            }
+            if (selectionStart <= lineEnd && selectionEnd >= lineStart && selectionStart != selectionEnd) {
+                int from = columnOf(text, Math.max(selectionStart, lineStart) - lineStart);
+                int to = columnOf(text, Math.min(selectionEnd, lineEnd) - lineStart);
+                double extra = selectionEnd > lineEnd ? charWidth : 0; // the line break is selected too
+                graphics.setFill(SELECTION);
+                graphics.fillRect(x0 + from * charWidth, y, (to - from) * charWidth + extra, lineHeight);
+            }
+            if (firstColumn < expanded.length()) {
+                drawLine(graphics, text, expanded, highlighter.spans(line), firstColumn,
+                        Math.min(expanded.length(), firstColumn + visibleColumns), x0, y);
+            }
+            if (line == caretLine && isFocused()) {
+                double x = x0 + columnOf(text, caret - lineStart) * charWidth;
+                graphics.setFill(TEXT);
+                graphics.fillRect(Math.round(x), y, 1.5, lineHeight);
+            }
+        }
+        if (widest > widestColumns) {
+            widestColumns = widest;
+            requestLayout();
+        }
+    }
+
+    // Draws the visible columns [firstColumn, lastColumn) of a line, one fillText per styled span
+    private void drawLine(GraphicsContext graphics, String text, String expanded, SyntaxHighlighter.Spans spans,
+                          int firstColumn, int lastColumn, double x0, double y) {
+        int index = 0;
+        int column = 0;
+        for (int i = 0; i <= spans.size(); i++) {
+            int start = i < spans.size() ? spans.start(i) : text.length();
+            // Plain text up to the span, then the span itself
+            int startColumn = column + columnsBetween(text, index, start, column);
+            drawRun(graphics, expanded, column, startColumn, firstColumn, lastColumn, TEXT, x0, y);
+            if (i == spans.size() || startColumn >= lastColumn) {
+                return;
+            }
+            int end = spans.end(i);
+            int endColumn = startColumn + columnsBetween(text, start, end, startColumn);
+            Color color = STYLE_COLORS[spans.style(i).ordinal()];
+            drawRun(graphics, expanded, startColumn, endColumn, firstColumn, lastColumn, color, x0, y);
+            if (spans.style(i) == SyntaxHighlighter.Style.ERROR) {
+                graphics.setFill(color);
+                graphics.fillRect(x0 + startColumn * charWidth, y + lineHeight - 1.5, (endColumn - startColumn) * charWidth, 1);
+            }
+            index = end;
+            column = endColumn;
+        }
+    }
+
+    private void drawRun(GraphicsContext graphics, String expanded, int from, int to, int firstColumn, int lastColumn,
+                         Color color, double x0, double y) {
+        from = Math.max(from, firstColumn);
+        to = Math.min(to, lastColumn);
+        if (from < to) {
+            graphics.setFill(color);
+            graphics.fillText(expanded.substring(from, to), x0 + from * charWidth, y + baseline);
+        }
+    }
+
+    private void keyPressed(KeyEvent event) {
+        KeyCode code = event.getCode();
+        boolean shift = event.isShiftDown();
+        boolean shortcut = event.isShortcutDown();
+        int line = document.lineOfOffset(caret);
+        int pageLines = Math.max(1, (int) (canvas.getHeight() / lineHeight) - 1);
+        switch (code) {
+            case LEFT -> moveCaret(caret != anchor && !shift ? Math.min(caret, anchor) : caret - 1, shift);
+            case RIGHT -> moveCaret(caret != anchor && !shift ? Math.max(caret, anchor) : caret + 1, shift);
+            case UP -> moveVertically(line - 1, shift);
+            case DOWN -> moveVertically(line + 1, shift);
+            case PAGE_UP -> moveVertically(line - pageLines, shift);
+            case PAGE_DOWN -> moveVertically(line + pageLines, shift);
+            case HOME -> moveCaret(shortcut ? 0 : document.getLineStart(line), shift);
+            case END -> moveCaret(shortcut ? document.length() : document.getLineEnd(line), shift);
+            case BACK_SPACE -> {
+                if (caret != anchor) {
+                    replaceSelection("");
+                } else if (caret > 0) {
+                    document.replace(caret - 1, 1, "");
+                    moveCaret(caret - 1, false);
+                }
+            }
+            case DELETE -> {
+                if (caret != anchor) {
+                    replaceSelection("");
+                } else if (caret < document.length()) {
+                    document.replace(caret, 1, "");
+                    moveCaret(caret, false);
+                }
+            }
+            case ENTER -> replaceSelection("\n");
+            case TAB -> replaceSelection("\t");
+            case Z -> {
+                if (!shortcut) {
+                    return;
+                }
+                if (shift) {
+                    redo();
+                } else {
+                    undo();
+                }
+            }
+            case Y -> {
+                if (!shortcut) {
+                    return;
+                }
+                redo();
+            }
+            case X, C, V, A -> {
+                if (!shortcut) {
+                    return;
+                }
+                switch (code) {
+                    case X -> cut();
+                    case C -> copy();
+                    case V -> paste();
+                    default -> selectAll();
+                }
+            }
+            default -> {
+                return;
+            }
+        }
+        event.consume();
+    }
+
+    private void keyTyped(KeyEvent event) {
+        String character = event.getCharacter();
+        if (character.isEmpty() || event.isMetaDown() || (event.isControlDown() && !event.isAltDown())) {
+            return; // shortcuts are handled on key press; Ctrl+Alt is AltGr on some layouts
+        }
+        char first = character.charAt(0);
+        if (first < ' ' || first == 0x7f) {
+            return; // Enter, Tab and Backspace are handled on key press
+        }
+        replaceSelection(character);
+        event.consume();
+    }
+
+    private void moveVertically(int line, boolean extend) {
+        int current = document.lineOfOffset(caret);
+        if (preferredColumn < 0) {
+            preferredColumn = columnOf(document.getText(document.getLineStart(current), caret), caret - document.getLineStart(current));
+        }
+        int column = preferredColumn;
+        int target = clamp(line, document.getLineCount() - 1);
+        int start = document.getLineStart(target);
+        String text = document.getText(start, document.getLineEnd(target));
+        moveCaret(start + indexAtColumn(text, column), extend);
+        preferredColumn = column;
+    }
+
+    private void moveCaret(int offset, boolean extend) {
+        caret = clamp(offset, document.length());
+        if (!extend) {
+            anchor = caret;
+        }
+        preferredColumn = -1;
+        scrollToCaret();
+        redraw();
+    }
+
+    private void selectLine(int line) {
+        anchor = document.getLineStart(line);
+        caret = line + 1 < document.getLineCount() ? document.getLineStart(line + 1) : document.getLineEnd(line);
+        redraw();
+    }
+
+    private void scrollToCaret() {
+        int line = document.lineOfOffset(caret);
+        double top = line * lineHeight;
+        double height = Math.max(lineHeight, canvas.getHeight()); // not laid out yet: bring the line to the top
+        if (top < scrollTop.get()) {
+            scrollTop.set(top);
+        } else if (top + lineHeight > scrollTop.get() + height) {
+            scrollTop.set(top + lineHeight - height);
+        }
+        int lineStart = document.getLineStart(line);
+        double x = PADDING + columnOf(document.getText(lineStart, caret), caret - lineStart) * charWidth;
+        if (x < scrollLeft.get() + PADDING) {
+            scrollLeft.set(Math.max(0, x - PADDING));
+        } else if (canvas.getWidth() > 0 && x + charWidth > scrollLeft.get() + canvas.getWidth()) {
+            widestColumns = Math.max(widestColumns, (int) (x / charWidth) + 1);
+            updateScrollRanges();
+            scrollLeft.set(x + charWidth - canvas.getWidth());
+        }
+    }
+
+    private int offsetAt(double x, double y) {
+        int line = clamp((int) Math.floor((y + scrollTop.get()) / lineHeight), document.getLineCount() - 1);
+        int start = document.getLineStart(line);
+        String text = document.getText(start, document.getLineEnd(line));
+        int column = (int) Math.round((x + scrollLeft.get() - PADDING) / charWidth);
+        return start + indexAtColumn(text, Math.max(0, column));
+    }
+
+    private static String expandTabs(String text) {
+        if (text.indexOf('\t') < 0) {
+            return text;
+        }
+        StringBuilder expanded = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\t') {
+                do {
+                    expanded.append(' ');
+                } while (expanded.length() % TAB_WIDTH != 0);
+            } else {
+                expanded.append(c);
+            }
+        }
+        return expanded.toString();
+    }
+
+    // Screen column of index in a line
+    private static int columnOf(String line, int index) {
+        return columnsBetween(line, 0, index, 0);
+    }
+
+    // Columns taken by the characters [from, to) of a line when the first of them is at startColumn
+    private static int columnsBetween(String line, int from, int to, int startColumn) {
+        int column = startColumn;
+        for (int i = from; i < to && i < line.length(); i++) {
+            column = line.charAt(i) == '\t' ? (column / TAB_WIDTH + 1) * TAB_WIDTH : column + 1;
+        }
+        return column - startColumn;
+    }
+
+    // Index in a line of the character nearest to a screen column
+    private static int indexAtColumn(String line, int column) {
+        int current = 0;
+        for (int i = 0; i < line.length(); i++) {
+            int next = line.charAt(i) == '\t' ? (current / TAB_WIDTH + 1) * TAB_WIDTH : current + 1;
+            if (column < next) {
+                return column - current <= next - column ? i : i + 1;
+            }
+            current = next;
+        }
+        return line.length();
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+
+    private static double clamp(double value, double max) {
+        return Math.max(0, Math.min(value, max));
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.ide.editor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Text model of a CodeEditor: a PieceTable, the start offset of every line, and the undo history.
+// Edits are reported to listeners as LineChanges. The history keeps pieces rather than text, so undoing the
+// deletion of a whole multi-megabyte file stores and restores a handful of piece references. Characters typed (or
+// deleted) one after another within MERGE_MILLIS are undone together.
+// Not thread-safe: use it from the FX thread, and hand a snapshot() to other threads.
+public class Document {
+    private static final long MERGE_MILLIS = 1000;
+    private static final int MAX_HISTORY = 10_000;
+
+    private enum Kind { TYPED, DELETED, OTHER }
+
+    // One undoable edit: removed pieces [offset, offset + removedLength) were replaced by the inserted ones
+    private static final class Edit {
+        final Kind kind;
+        int offset;
+        final List<PieceTable.Piece> removed;
+        int removedLength;
+        final List<PieceTable.Piece> inserted;
+        int insertedLength;
+        long time;
+
+        Edit(Kind kind, int offset, List<PieceTable.Piece> removed, List<PieceTable.Piece> inserted, long time) {
+            this.kind = kind;
+            this.offset = offset;
+            this.removed = removed;
+            this.removedLength = PieceTable.length(removed);
+            this.inserted = inserted;
+            this.insertedLength = PieceTable.length(inserted);
+            this.time = time;
+        }
+    }
+
+    private PieceTable text;
+    private int[] lineStarts = new int[16];
+    private int lineCount;
+    private final Deque<Edit> undoStack = new ArrayDeque<>();
+    private final Deque<Edit> redoStack = new ArrayDeque<>();
+    private final List<Consumer<LineChange>> listeners = new CopyOnWriteArrayList<>(); // may remove themselves when notified
+
+    public Document() {
+        this("");
+    }
+
+    public Document(String initialText) {
+        text = new PieceTable(initialText);
+        indexLines(initialText);
+    }
+
+    // A document over text whose lines were already found, e.g. a PagedText indexed while it was read in the background
+    public Document(CharSequence initialText, int[] lineStarts, int lineCount) {
+        text = new PieceTable(initialText);
+        this.lineStarts = Arrays.copyOf(lineStarts, Math.max(lineCount, 16));
+        this.lineCount = lineCount;
+    }
+
+    public void addLineChangeListener(Consumer<LineChange> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeLineChangeListener(Consumer<LineChange> listener) {
+        listeners.remove(listener);
+    }
+
+    public int length() {
+        return text.length();
+    }
+
+    public char charAt(int offset) {
+        return text.charAt(offset);
+    }
+
+    public String getText() {
+        return getText(0, text.length());
+    }
+
+    public String getText(int start, int end) {
+        StringBuilder out = new StringBuilder(end - start);
+        text.appendTo(out, start, end);
+        return out.toString();
+    }
+
+    // Immutable copy of the text that other threads may read, made in time proportional to the number of pieces
+    public CharSequence snapshot() {
+        return text.snapshot();
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getLineStart(int line) {
+        return lineStarts[line];
+    }
+
+    // Offset of the end of the line, before its line break
+    public int getLineEnd(int line) {
+        return line + 1 < lineCount ? lineStarts[line + 1] - 1 : text.length();
+    }
+
+    public String getLine(int line) {
+        return getText(getLineStart(line), getLineEnd(line));
+    }
+
+    public int lineOfOffset(int offset) {
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (lineStarts[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    // Replaces the whole text and forgets the history, e.g. after loading a file
+    public void setText(String newText) {
+        int oldLines = lineCount;
+        text = new PieceTable(newText);
+        indexLines(newText);
+        undoStack.clear();
+        redoStack.clear();
+        fire(new LineChange(0, oldLines, lineCount));
+    }
+
+    public void replace(int offset, int length, String replacement) {
+        if (length == 0 && replacement.isEmpty()) {
+            return;
+        }
+        List<PieceTable.Piece> inserted = new ArrayList<>(1);
+        if (!replacement.isEmpty()) {
+            inserted.add(text.append(replacement));
+        }
+        List<PieceTable.Piece> removed = apply(offset, length, inserted);
+
+        Kind kind = Kind.OTHER;
+        if (length == 0 && replacement.length() == 1 && replacement.charAt(0) != '\n') {
+            kind = Kind.TYPED;
+        } else if (length == 1 && replacement.isEmpty()) {
+            kind = Kind.DELETED;
+        }
+        record(new Edit(kind, offset, removed, inserted, System.currentTimeMillis()));
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    // Reverts the last edit and returns the offset just after the restored text, or -1 if there was nothing to undo
+    public int undo() {
+        Edit edit = undoStack.poll();
+        if (edit == null) {
+            return -1;
+        }
+        apply(edit.offset, edit.insertedLength, edit.removed);
+        redoStack.push(edit);
+        return edit.offset + edit.removedLength;
+    }
+
+    // Applies the last undone edit again and returns the offset just after it, or -1 if there was nothing to redo
+    public int redo() {
+        Edit edit = redoStack.poll();
+        if (edit == null) {
+            return -1;
+        }
+        apply(edit.offset, edit.removedLength, edit.inserted);
+        undoStack.push(edit);
+        return edit.offset + edit.insertedLength;
+    }
+
+    private List<PieceTable.Piece> apply(int offset, int length, List<PieceTable.Piece> inserted) {
+        if (offset < 0 || length < 0 || offset + length > text.length()) {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + length + " outside text of length " + text.length());
+        }
+        int firstLine = lineOfOffset(offset);
+        int lastLine = lineOfOffset(offset + length);
+        List<PieceTable.Piece> removed = text.replace(offset, length, inserted);
+
+        int insertedLength = PieceTable.length(inserted);
+        StringBuilder added = new StringBuilder(insertedLength);
+        text.appendTo(added, offset, offset + insertedLength);
+        int newlines = 0;
+        for (int i = 0; i < added.length(); i++) {
+            if (added.charAt(i) == '\n') {
+                newlines++;
+            }
+        }
+        // Drop the line starts inside the replaced range, shift the ones after it, add those of the new text
+        int tail = lineCount - lastLine - 1;
+        int newCount = firstLine + 1 + newlines + tail;
+        ensureLineCapacity(newCount);
+        System.arraycopy(lineStarts, lastLine + 1, lineStarts, firstLine + 1 + newlines, tail);
+        int delta = insertedLength - length;
+        for (int i = firstLine + 1 + newlines; i < newCount; i++) {
+            lineStarts[i] += delta;
+        }
+        int line = firstLine + 1;
+        for (int i = 0; i < added.length(); i++) {
+            if (added.charAt(i) == '\n') {
+                lineStarts[line++] = offset + i + 1;
+            }
+        }
+        lineCount = newCount;
+
+        fire(new LineChange(firstLine, lastLine - firstLine + 1, newlines + 1));
+        return removed;
+    }
+
+    private void indexLines(String content) {
+        lineCount = 1;
+        lineStarts[0] = 0;
+        for (int i = content.indexOf('\n'); i >= 0; i = content.indexOf('\n', i + 1)) {
+            ensureLineCapacity(lineCount + 1);
+            lineStarts[lineCount++] = i + 1;
+        }
+    }
+
+    private void ensureLineCapacity(int capacity) {
+        if (capacity > lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, Math.max(capacity, lineStarts.length * 2));
+        }
+    }
+
+    private void record(Edit edit) {
+        redoStack.clear();
+        Edit last = undoStack.peek();
+        if (last != null && edit.time - last.time < MERGE_MILLIS && edit.kind == last.kind) {
+            if (edit.kind == Kind.TYPED && edit.offset == last.offset + last.insertedLength) {
+                last.inserted.addAll(edit.inserted);
+                last.insertedLength += edit.insertedLength;
+                last.time = edit.time;
+                return;
+            }
+            if (edit.kind == Kind.DELETED && edit.offset + edit.removedLength == last.offset) { // backspace
+                last.removed.addAll(0, edit.removed);
+                last.removedLength += edit.removedLength;
+                last.offset = edit.offset;
+                last.time = edit.time;
+                return;
+            }
+            if (edit.kind == Kind.DELETED && edit.offset == last.offset) { // delete
+                last.removed.addAll(edit.removed);
+                last.removedLength += edit.removedLength;
+                last.time = edit.time;
+                return;
+            }
+        }
+        undoStack.push(edit);
+        if (undoStack.size() > MAX_HISTORY) {
+            undoStack.removeLast();
+        }
+    }
+
+    private void fire(LineChange change) {
+        for (Consumer<LineChange> listener : listeners) {
+            listener.accept(change);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.ide.editor;
+
+// An edit seen as lines: lines [firstLine, firstLine + removedLines) of the old text were replaced by
+// [firstLine, firstLine + addedLines) of the new one. Lines are counted from 0; a line touched by the edit is part
+// of both ranges, so a change within one line is (line, 1, 1).
+public class LineChange {
+    private final int firstLine;
+    private final int removedLines;
+    private final int addedLines;
+
+    public LineChange(int firstLine, int removedLines, int addedLines) {
+        this.firstLine = firstLine;
+        this.removedLines = removedLines;
+        this.addedLines = addedLines;
+    }
+
+    public int getFirstLine() {
+        return firstLine;
+    }
+
+    public int getRemovedLines() {
+        return removedLines;
+    }
+
+    public int getAddedLines() {
+        return addedLines;
+    }
+
+    @Override
+    public String toString() {
+        return "LineChange[" + firstLine + ", -" + removedLines + ", +" + addedLines + "]";
+    }
+}
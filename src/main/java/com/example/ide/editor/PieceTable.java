@@ -0,0 +1,304 @@
+package com.example.ide.editor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Text as a sequence of pieces, each a range of one of two buffers: the original text, which is never modified (a
+// String, or a PagedText that reads a large file on demand), and an append-only buffer that receives everything typed
+// or pasted. An edit splits at most two pieces and inserts one, so its cost depends on the number of pieces, not on
+// the length of the text, and removed text stays in the buffers: undo only has to put the old pieces back.
+// The append buffer is an array of fixed-size chunks; chunks are never reallocated and a new chunk replaces the outer
+// array, so a snapshot (a copy of the piece array plus the chunk array of the moment) can be read from another thread
+// while editing goes on.
+final class PieceTable {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // A range of one buffer; immutable, so pieces are shared freely between the table, snapshots and the history
+    static final class Piece {
+        final boolean added; // in the append buffer rather than the original text
+        final int start;
+        final int length;
+
+        Piece(boolean added, int start, int length) {
+            this.added = added;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    private final CharSequence original;
+    private char[][] chunks = new char[0][];
+    private int appended; // chars in the append buffer
+
+    private Piece[] pieces = new Piece[8];
+    private int[] offsets = new int[8]; // document offset of each piece
+    private int pieceCount;
+    private int length;
+
+    PieceTable(CharSequence original) {
+        this.original = original;
+        if (!original.isEmpty()) {
+            pieces[0] = new Piece(false, 0, original.length());
+            pieceCount = 1;
+            length = original.length();
+        }
+    }
+
+    int length() {
+        return length;
+    }
+
+    char charAt(int offset) {
+        if (offset >= length) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " outside text of length " + length);
+        }
+        int i = pieceAt(offset);
+        return charAt(original, chunks, pieces[i], offset - offsets[i]);
+    }
+
+    void appendTo(StringBuilder out, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        int i = pieceAt(start);
+        while (start < end) {
+            Piece piece = pieces[i];
+            int from = start - offsets[i];
+            int to = Math.min(piece.length, end - offsets[i]);
+            appendPiece(out, piece, from, to);
+            start += to - from;
+            i++;
+        }
+    }
+
+    // Adds text to the append buffer and returns the piece covering it
+    Piece append(CharSequence text) {
+        int start = appended;
+        for (int i = 0; i < text.length(); i++) {
+            if (appended >>> CHUNK_BITS == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length + 1);
+                chunks[chunks.length - 1] = new char[CHUNK_SIZE];
+            }
+            chunks[appended >>> CHUNK_BITS][appended & (CHUNK_SIZE - 1)] = text.charAt(i);
+            appended++;
+        }
+        return new Piece(true, start, text.length());
+    }
+
+    // Pieces covering [start, end)
+    List<Piece> slice(int start, int end) {
+        List<Piece> slice = new ArrayList<>();
+        if (start >= end) {
+            return slice;
+        }
+        int i = pieceAt(start);
+        while (start < end) {
+            Piece piece = pieces[i];
+            int from = start - offsets[i];
+            int to = Math.min(piece.length, end - offsets[i]);
+            slice.add(from == 0 && to == piece.length ? piece : new Piece(piece.added, piece.start + from, to - from));
+            start += to - from;
+            i++;
+        }
+        return slice;
+    }
+
+    // Replaces [offset, offset + removed) with the pieces and returns the pieces that were removed
+    List<Piece> replace(int offset, int removed, List<Piece> inserted) {
+        List<Piece> removedPieces = slice(offset, offset + removed);
+        int first = split(offset);
+        int last = split(offset + removed);
+
+        List<Piece> insert = new ArrayList<>(inserted.size());
+        for (Piece piece : inserted) {
+            if (piece.length > 0) {
+                insert.add(piece);
+            }
+        }
+        // Typing extends the piece it continues instead of adding one per character
+        if (!insert.isEmpty() && first > 0 && first == last && continues(pieces[first - 1], insert.get(0))) {
+            Piece previous = pieces[first - 1];
+            pieces[first - 1] = new Piece(true, previous.start, previous.length + insert.get(0).length);
+            insert.remove(0);
+        }
+
+        int newCount = pieceCount - (last - first) + insert.size();
+        if (newCount > pieces.length) {
+            pieces = Arrays.copyOf(pieces, Math.max(newCount, pieces.length * 2));
+            offsets = Arrays.copyOf(offsets, pieces.length);
+        }
+        System.arraycopy(pieces, last, pieces, first + insert.size(), pieceCount - last);
+        for (int i = 0; i < insert.size(); i++) {
+            pieces[first + i] = insert.get(i);
+        }
+        Arrays.fill(pieces, newCount, pieceCount > newCount ? pieceCount : newCount, null);
+        pieceCount = newCount;
+        recomputeOffsets(Math.max(0, first - 1));
+        return removedPieces;
+    }
+
+    // Immutable view of the current text
+    CharSequence snapshot() {
+        return new Snapshot(original, chunks, Arrays.copyOf(pieces, pieceCount), Arrays.copyOf(offsets, pieceCount), 0,
+                length);
+    }
+
+    static int length(List<Piece> pieces) {
+        int total = 0;
+        for (Piece piece : pieces) {
+            total += piece.length;
+        }
+        return total;
+    }
+
+    private static char charAt(CharSequence original, char[][] chunks, Piece piece, int index) {
+        if (!piece.added) {
+            return original.charAt(piece.start + index);
+        }
+        int position = piece.start + index;
+        return chunks[position >>> CHUNK_BITS][position & (CHUNK_SIZE - 1)];
+    }
+
+    private void appendPiece(StringBuilder out, Piece piece, int from, int to) {
+        if (!piece.added) {
+            out.append(original, piece.start + from, piece.start + to);
+            return;
+        }
+        int position = piece.start + from;
+        int end = piece.start + to;
+        while (position < end) {
+            int inChunk = position & (CHUNK_SIZE - 1);
+            int count = Math.min(end - position, CHUNK_SIZE - inChunk);
+            out.append(chunks[position >>> CHUNK_BITS], inChunk, count);
+            position += count;
+        }
+    }
+
+    private boolean continues(Piece previous, Piece next) {
+        return previous.added && next.added && previous.start + previous.length == next.start;
+    }
+
+    // Index of the piece containing offset (the last piece for the end of the text)
+    private int pieceAt(int offset) {
+        if (offset < 0 || offset > length) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " outside text of length " + length);
+        }
+        int low = 0;
+        int high = pieceCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    // Makes offset fall on a piece boundary and returns the index of the piece starting there (pieceCount at the end)
+    private int split(int offset) {
+        if (offset == length) {
+            return pieceCount;
+        }
+        int i = pieceAt(offset);
+        int within = offset - offsets[i];
+        if (within == 0) {
+            return i;
+        }
+        Piece piece = pieces[i];
+        if (pieceCount == pieces.length) {
+            pieces = Arrays.copyOf(pieces, pieces.length * 2);
+            offsets = Arrays.copyOf(offsets, pieces.length);
+        }
+        System.arraycopy(pieces, i + 1, pieces, i + 2, pieceCount - i - 1);
+        System.arraycopy(offsets, i + 1, offsets, i + 2, pieceCount - i - 1);
+        pieces[i] = new Piece(piece.added, piece.start, within);
+        pieces[i + 1] = new Piece(piece.added, piece.start + within, piece.length - within);
+        offsets[i + 1] = offset;
+        pieceCount++;
+        return i + 1;
+    }
+
+    private void recomputeOffsets(int from) {
+        int offset = from == 0 ? 0 : offsets[from - 1] + pieces[from - 1].length;
+        for (int i = from; i < pieceCount; i++) {
+            offsets[i] = offset;
+            offset += pieces[i].length;
+        }
+        length = offset;
+    }
+
+    // The text at the time of snapshot(); sequential reads stay within the last piece found, so scanning it is about
+    // as fast as scanning a String
+    private static final class Snapshot implements CharSequence {
+        private final CharSequence original;
+        private final char[][] chunks;
+        private final Piece[] pieces;
+        private final int[] offsets;
+        private final int start;
+        private final int end;
+        private int lastPiece;
+
+        Snapshot(CharSequence original, char[][] chunks, Piece[] pieces, int[] offsets, int start, int end) {
+            this.original = original;
+            this.chunks = chunks;
+            this.pieces = pieces;
+            this.offsets = offsets;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int offset = start + index;
+            int i = lastPiece;
+            if (offset < offsets[i] || offset >= offsets[i] + pieces[i].length) {
+                i = find(offset);
+                lastPiece = i;
+            }
+            return PieceTable.charAt(original, chunks, pieces[i], offset - offsets[i]);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > end - start || from > to) {
+                throw new IndexOutOfBoundsException("Range " + from + ".." + to + " of " + (end - start));
+            }
+            return new Snapshot(original, chunks, pieces, offsets, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder(end - start);
+            for (int i = 0; i < length(); i++) {
+                out.append(charAt(i));
+            }
+            return out.toString();
+        }
+
+        private int find(int offset) {
+            int low = 0;
+            int high = pieces.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (offsets[middle] <= offset) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+    }
+}
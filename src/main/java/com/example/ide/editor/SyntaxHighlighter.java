@@ -0,0 +1,153 @@
+package com.example.ide.editor;
+
+import com.example.ide.assembler.RISCV.AssemblerError;
+import com.example.ide.assembler.RISCV.Lexer;
+import com.example.ide.assembler.RISCV.TokenBuffer;
+import com.example.ide.assembler.RISCV.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Colors a Document with the assembler's own Lexer, so the editor and the assembler never disagree on what a token is.
+// Styles are cached per line and a line is lexed only when it is drawn: an edit invalidates the lines its LineChange
+// covers and shifts the entries after them, and nothing else is touched. The lexer carries no state from one line to
+// the next (a comment ends at the line break), so every line starts in the initial state and a change can never
+// damage lines outside the edited range; typing costs the same at line 10 of a small file and at line 300000.
+final class SyntaxHighlighter {
+    enum Style { MNEMONIC, REGISTER, NUMBER, LABEL, SYMBOL, PUNCTUATION, COMMENT, ERROR }
+
+    private static final Style[] TOKEN_STYLES = new Style[TokenType.values().length];
+
+    static {
+        Arrays.fill(TOKEN_STYLES, Style.MNEMONIC);
+        TOKEN_STYLES[TokenType.X.ordinal()] = Style.REGISTER;
+        TOKEN_STYLES[TokenType.IMM.ordinal()] = Style.NUMBER;
+        TOKEN_STYLES[TokenType.IMM_FLOAT.ordinal()] = Style.NUMBER;
+        TOKEN_STYLES[TokenType.LPAREN.ordinal()] = Style.PUNCTUATION;
+        TOKEN_STYLES[TokenType.RPAREN.ordinal()] = Style.PUNCTUATION;
+        TOKEN_STYLES[TokenType.COMMA.ordinal()] = Style.PUNCTUATION;
+        TOKEN_STYLES[TokenType.LABEL.ordinal()] = Style.LABEL;
+        TOKEN_STYLES[TokenType.SYMBOL.ordinal()] = Style.SYMBOL;
+    }
+
+    // Styled ranges of one line, in order and not overlapping; text between them has no style
+    static final class Spans {
+        private static final Spans EMPTY = new Spans(0);
+
+        private int[] starts;
+        private int[] ends;
+        private Style[] styles;
+        private int count;
+
+        private Spans(int capacity) {
+            starts = new int[capacity];
+            ends = new int[capacity];
+            styles = new Style[capacity];
+        }
+
+        int size() {
+            return count;
+        }
+
+        int start(int index) {
+            return starts[index];
+        }
+
+        int end(int index) {
+            return ends[index];
+        }
+
+        Style style(int index) {
+            return styles[index];
+        }
+
+        private void add(int start, int end, Style style) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2 + 1);
+                ends = Arrays.copyOf(ends, starts.length);
+                styles = Arrays.copyOf(styles, starts.length);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            styles[count] = style;
+            count++;
+        }
+    }
+
+    private final Document document;
+    private Spans[] lines = new Spans[16]; // null where the line has not been lexed since it last changed
+
+    SyntaxHighlighter(Document document) {
+        this.document = document;
+        ensureCapacity(document.getLineCount());
+        document.addLineChangeListener(this::invalidate);
+    }
+
+    // Styles of a line, lexing it if it changed since it was last asked for
+    Spans spans(int line) {
+        Spans spans = lines[line];
+        if (spans == null) {
+            spans = lex(document.getLine(line));
+            lines[line] = spans;
+        }
+        return spans;
+    }
+
+    private void invalidate(LineChange change) {
+        int first = change.getFirstLine();
+        int oldCount = document.getLineCount() - change.getAddedLines() + change.getRemovedLines();
+        int tail = oldCount - first - change.getRemovedLines();
+        int newCount = first + change.getAddedLines() + tail;
+        ensureCapacity(newCount);
+        System.arraycopy(lines, first + change.getRemovedLines(), lines, first + change.getAddedLines(), tail);
+        Arrays.fill(lines, first, first + change.getAddedLines(), null);
+        if (newCount < oldCount) {
+            Arrays.fill(lines, newCount, oldCount, null);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > lines.length) {
+            lines = Arrays.copyOf(lines, Math.max(capacity, lines.length * 2));
+        }
+    }
+
+    static Spans lex(String text) {
+        if (text.isBlank()) {
+            return Spans.EMPTY;
+        }
+        List<AssemblerError> errors = new ArrayList<>(0);
+        TokenBuffer tokens = new Lexer(text, errors).scanTokens();
+        Spans spans = new Spans(tokens.size() + 1);
+        int end = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            int start = tokens.offset(i);
+            end = start + tokens.length(i);
+            if (tokens.type(i) == TokenType.LABEL && end < text.length() && text.charAt(end) == ':') {
+                end++; // color the colon with its label
+            }
+            spans.add(start, end, TOKEN_STYLES[tokens.type(i).ordinal()]);
+        }
+        // After the last token the lexer either skipped a comment or gave up on the rest of the line
+        int comment = text.indexOf('#', end);
+        int restEnd = comment >= 0 ? comment : text.length();
+        if (!errors.isEmpty()) {
+            int start = end;
+            while (start < restEnd && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            int stop = restEnd;
+            while (stop > start && Character.isWhitespace(text.charAt(stop - 1))) {
+                stop--;
+            }
+            if (start < stop) {
+                spans.add(start, stop, Style.ERROR);
+            }
+        }
+        if (comment >= 0) {
+            spans.add(comment, text.length(), Style.COMMENT);
+        }
+        return spans;
+    }
+}
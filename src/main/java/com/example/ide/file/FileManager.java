@@ -5,18 +5,61 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
 
+// Opening and saving source files. The dialogs run on the FX thread; reading and writing run in the background and
+// report their progress as a fraction (0 to 1) on the background thread, at most once per percent.
+// Files are UTF-8; bytes that are not valid UTF-8 are read as U+FFFD, whatever the file's size. A save never truncates
+// the file it replaces: the text goes to a temporary file next to it, is forced to disk, and is renamed over the
+// target, so a crash leaves either the old file or the new one.
+// Files over LARGE_FILE_BYTES are opened as a PagedText, which only holds a few pages of the file in memory.
 public class FileManager {
+    public static final long LARGE_FILE_BYTES = 16L * 1024 * 1024;
+    private static final int WRITE_CHUNK_CHARS = 64 * 1024;
+
     private File lastDirectory = null;
+    private final ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "file-writer"); // one thread, so saves of a file land in order
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    public String readFileContent(File file) {
-        try {
-            return new String(java.nio.file.Files.readAllBytes(file.toPath()));
-        } catch (java.io.IOException e) {
-            System.err.println("Error reading file: " + e.getMessage());
-            return null;
-        }
+    // Reads a file in the background; completes with a String, or a PagedText for a large file (close it when done)
+    public CompletableFuture<CharSequence> openAsync(File file, DoubleConsumer progress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                DoubleConsumer throttled = throttle(progress);
+                if (file.length() > LARGE_FILE_BYTES) {
+                    return PagedText.open(file.toPath(), throttled);
+                }
+                String content = PagedText.newDecoder().decode(ByteBuffer.wrap(Files.readAllBytes(file.toPath())))
+                        .toString();
+                throttled.accept(1);
+                return content;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, readers);
     }
+
     public File openFile(Stage stage) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Assembly Files", "*.asm"));
@@ -32,45 +75,142 @@ public class FileManager {
         return null;  // Return null if no file is selected or operation is canceled
     }
 
-    // This method will save content to the specified file
-    public boolean saveToFile(File file, String content) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            writer.write(content);
-            lastDirectory = file.getParentFile();  // Update the last opened directory
-            return true;  // Return true if save was successful
-        } catch (IOException e) {
-            System.out.println("Error saving file: " + e.getMessage());
-            return false;  // Return false if an error occurred
-        }
-    }
-
-    // Save method - saves the content to the current file
-    public boolean save(File currentFile, String content) {
-        if (currentFile != null) {
-            // If the file exists, just save to it
-            return saveToFile(currentFile, content);
-        } else{
-            return saveAs(new Stage(),content) != null;
-        }
-    }
-
-    // Save As method - allows the user to choose a new location and file name
-    public File saveAs(Stage stage, String content) {
+    // Shows the Save As dialog; returns the chosen file, or null if the user cancelled
+    public File chooseSaveFile(Stage stage) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Assembly Files", "*.asm"));
 
         if (lastDirectory != null && lastDirectory.exists()) {
             fileChooser.setInitialDirectory(lastDirectory);
         }
-        // Show the Save As dialog
         File file = fileChooser.showSaveDialog(stage);
-
         if (file != null) {
-            boolean success = saveToFile(file, content);
-            if (success) {
-                return file; // Return the new file if save was successful
+            lastDirectory = file.getParentFile();
+        }
+        return file;
+    }
+
+    // Saves in the background; content must not change while it is written (pass a Document snapshot)
+    public CompletableFuture<Void> saveAsync(File file, CharSequence content, DoubleConsumer progress) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                saveToFile(file.toPath(), content, throttle(progress));
+            } catch (IOException e) {
+                throw new CompletionException(e);
             }
+        }, writer);
+    }
+
+    // Completes, on the writer thread, once every save queued before the call has finished (or failed)
+    public CompletableFuture<Void> afterSaves() {
+        return CompletableFuture.runAsync(() -> {
+        }, writer);
+    }
+
+    // Blocks until the saves already queued are on disk and stops the background threads; call before exiting, since
+    // the writer is a daemon thread and would be killed mid-save
+    public void shutdown() {
+        readers.shutdownNow();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return null; // Return null if saving was unsuccessful or canceled
+    }
+
+    // Writes content to a temporary file in the target's directory, forces it to disk and renames it over the target
+    public static void saveToFile(Path target, CharSequence content, DoubleConsumer progress) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, "." + target.getFileName(), ".tmp");
+        try {
+            if (Files.exists(target)) {
+                copyPermissions(target, temp);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                write(channel, content, progress);
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        forceDirectory(directory);
+    }
+
+    // Encodes content as UTF-8 a chunk at a time, so no copy of the whole text is made
+    private static void write(FileChannel channel, CharSequence content, DoubleConsumer progress) throws IOException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        char[] chunk = new char[WRITE_CHUNK_CHARS];
+        ByteBuffer bytes = ByteBuffer.allocateDirect(WRITE_CHUNK_CHARS * 3);
+        int length = content.length();
+        int carried = 0; // chars the encoder left for the next chunk: the first half of a surrogate pair
+        int position = 0;
+        do {
+            int count = Math.min(chunk.length - carried, length - position);
+            for (int i = 0; i < count; i++) {
+                chunk[carried + i] = content.charAt(position + i);
+            }
+            position += count;
+            boolean last = position == length;
+            CharBuffer chars = CharBuffer.wrap(chunk, 0, carried + count);
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, bytes, last);
+                drain(channel, bytes);
+            } while (result.isOverflow());
+            carried = chars.remaining();
+            chars.get(chunk, 0, carried);
+            progress.accept(length == 0 ? 1 : (double) position / length);
+        } while (position < length);
+        while (encoder.flush(bytes).isOverflow()) {
+            drain(channel, bytes);
+        }
+        drain(channel, bytes);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    // The temporary file is created private to the user; keep the mode the saved file had
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system
+        }
+    }
+
+    // Makes the rename itself durable; not possible on every platform, where the rename is all there is
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // e.g. directories cannot be opened on Windows
+        }
+    }
+
+    // Forwards a fraction only when it reaches a new percent, and always the final 1
+    private static DoubleConsumer throttle(DoubleConsumer progress) {
+        int[] lastPercent = {-1};
+        return fraction -> {
+            int percent = (int) (fraction * 100);
+            if (percent != lastPercent[0]) {
+                lastPercent[0] = percent;
+                progress.accept(fraction);
+            }
+        };
     }
 }
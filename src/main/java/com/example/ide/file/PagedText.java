@@ -0,0 +1,247 @@
+package com.example.ide.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+// The text of a UTF-8 file too large to hold in memory, read a page at a time.
+// open() decodes the file once, page by page, to learn where every page starts in characters and where every line
+// starts; afterwards a character is found by binary search over the pages and served from a small LRU cache of decoded
+// pages. Page boundaries fall where the decoder stopped, never inside a multi-byte sequence, so decoding a page again
+// gives exactly the characters counted during the scan.
+// The channel stays open until close(), so the text keeps reading the file as it was opened even after a save renames
+// a new file over it. Safe for concurrent readers.
+public final class PagedText implements CharSequence, Closeable {
+    private static final int PAGE_BYTES = 1 << 16;
+    private static final int CACHED_PAGES = 64;
+
+    // A decoded page
+    private static final class Page {
+        final int index;
+        final int start; // char offset
+        final char[] chars;
+
+        Page(int index, int start, char[] chars) {
+            this.index = index;
+            this.start = start;
+            this.chars = chars;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long[] pageBytes; // byte offset of each page, plus the file size
+    private final int[] pageChars;  // char offset of each page, plus the length
+    private final int pageCount;
+    private final int[] lineStarts;
+    private final int lineCount;
+    private final Map<Integer, Page> cache = new LinkedHashMap<>(CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private volatile Page last; // sequential reads mostly stay within one page
+
+    private PagedText(FileChannel channel, long[] pageBytes, int[] pageChars, int pageCount, int[] lineStarts, int lineCount) {
+        this.channel = channel;
+        this.pageBytes = pageBytes;
+        this.pageChars = pageChars;
+        this.pageCount = pageCount;
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+    }
+
+    // Scans the file, reporting the fraction done to progress (on the calling thread)
+    public static PagedText open(Path path, DoubleConsumer progress) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            int capacity = (int) (size / PAGE_BYTES) + 2;
+            long[] pageBytes = new long[capacity];
+            int[] pageChars = new int[capacity];
+            int[] lineStarts = new int[(int) Math.min(size / 64, 1 << 20) + 16];
+            int lineCount = 1;
+
+            CharsetDecoder decoder = newDecoder();
+            ByteBuffer bytes = ByteBuffer.allocateDirect(PAGE_BYTES);
+            CharBuffer chars = CharBuffer.allocate(PAGE_BYTES);
+            long position = 0;
+            long length = 0;
+            int pageCount = 0;
+            while (position < size) {
+                bytes.clear();
+                readFully(channel, bytes, position, size);
+                bytes.flip();
+                chars.clear();
+                boolean lastPage = position + bytes.limit() == size;
+                decode(decoder, bytes, chars, lastPage);
+                if (bytes.position() == 0) {
+                    throw new IOException("Cannot decode " + path + " at byte " + position);
+                }
+                if (length + chars.position() > Integer.MAX_VALUE - 8) {
+                    throw new IOException(path + " is too large to open");
+                }
+                if (pageCount + 1 >= pageBytes.length) { // short reads give smaller pages than estimated
+                    pageBytes = Arrays.copyOf(pageBytes, pageBytes.length * 2);
+                    pageChars = Arrays.copyOf(pageChars, pageBytes.length);
+                }
+                pageBytes[pageCount] = position;
+                pageChars[pageCount] = (int) length;
+                pageCount++;
+                for (int i = 0; i < chars.position(); i++) {
+                    if (chars.get(i) == '\n') {
+                        if (lineCount == lineStarts.length) {
+                            lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+                        }
+                        lineStarts[lineCount++] = (int) (length + i + 1);
+                    }
+                }
+                position += bytes.position();
+                length += chars.position();
+                progress.accept((double) position / size);
+            }
+            pageBytes[pageCount] = size;
+            pageChars[pageCount] = (int) length;
+            return new PagedText(channel, pageBytes, pageChars, pageCount, lineStarts, lineCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Start offset of every line, valid for the first getLineCount() entries
+    public int[] getLineStarts() {
+        return lineStarts;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public int length() {
+        return pageChars[pageCount];
+    }
+
+    @Override
+    public char charAt(int index) {
+        Page page = last;
+        if (page == null || index < page.start || index >= page.start + page.chars.length) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException("Index " + index + " outside text of length " + length());
+            }
+            page = page(pageOf(index));
+            last = page;
+        }
+        return page.chars[index - page.start];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return toString(0, length());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String toString(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + ".." + end + " of " + length());
+        }
+        StringBuilder out = new StringBuilder(end - start);
+        while (start < end) {
+            Page page = page(pageOf(start));
+            int count = Math.min(end, page.start + page.chars.length) - start;
+            out.append(page.chars, start - page.start, count);
+            start += count;
+        }
+        return out.toString();
+    }
+
+    private int pageOf(int index) {
+        int low = 0;
+        int high = pageCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (pageChars[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private Page page(int index) {
+        synchronized (cache) {
+            Page page = cache.get(index);
+            if (page != null) {
+                return page;
+            }
+        }
+        Page page = new Page(index, pageChars[index], decodePage(index));
+        synchronized (cache) {
+            cache.put(index, page);
+        }
+        return page;
+    }
+
+    private char[] decodePage(int index) {
+        long start = pageBytes[index];
+        long end = pageBytes[index + 1];
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        CharBuffer chars = CharBuffer.allocate(pageChars[index + 1] - pageChars[index]);
+        try {
+            readFully(channel, bytes, start, end);
+            bytes.flip();
+            decode(newDecoder(), bytes, chars, index == pageCount - 1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading page " + index + ": " + e.getMessage(), e);
+        }
+        return chars.array();
+    }
+
+    // Malformed bytes become U+FFFD instead of failing the read; FileManager decodes smaller files the same way
+    static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    // Decodes what fits; an incomplete sequence at the end of a page that is not the last one is left in bytes
+    private static void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, boolean endOfInput) {
+        decoder.reset();
+        decoder.decode(bytes, chars, endOfInput);
+        if (endOfInput) {
+            decoder.flush(chars);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, long size) throws IOException {
+        while (buffer.hasRemaining() && position < size) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.ide.simulator;
+
+import java.lang.invoke.MethodHandles;
+
+import static com.example.ide.simulator.ClassFileWriter.*;
+
+// Translates a hot basic block of predecoded instructions into a hidden class implementing CompiledBlock, so that
+// HotSpot compiles the guest code like any other Java method.
+// A block runs from its entry up to and including the first branch or jump, stopping early before an illegal
+// instruction, at the end of the program or after MAX_BLOCK_LENGTH instructions. Registers are read and written
+// straight in the int[] register file (X0 is never written and reads as the constant 0); HotSpot keeps them in
+// machine registers within the block.
+//
+// A block whose branch or jump leads back to its own entry loops inside the translated method, for at most
+// Simulator.loopBudget passes, and publishes the passes it has completed in Simulator.loopIterations; most hot
+// loops are one such block.
+//
+// Before every memory access the block records the guest pc in Simulator.faultPc, so a trap is reported at the
+// right instruction. Stores go through Simulator.storeFromBlock; when one of them overwrites code the block leaves
+// through Simulator.exitBlock, since its own translation may just have been invalidated.
+final class BlockTranslator {
+    static final int MAX_BLOCK_LENGTH = 128;
+
+    private static final String CLASS_NAME = "com/example/ide/simulator/TranslatedBlock";
+    private static final String BLOCK = "com/example/ide/simulator/CompiledBlock";
+    private static final String MEMORY = "com/example/ide/simulator/Memory";
+    private static final String SIMULATOR = "com/example/ide/simulator/Simulator";
+    private static final String EXECUTE_DESCRIPTOR = "([IL" + MEMORY + ";L" + SIMULATOR + ";)I";
+
+    private static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    // Locals of execute(): 0 this, 1 registers, 2 memory, 3 simulator, 4 completed passes, 5 pass budget
+    private static final int ITERATIONS = 4;
+    private static final int BUDGET = 5;
+    private static final int MAX_STACK = 8;
+    private static final int MAX_LOCALS = 6;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private BlockTranslator() {
+    }
+
+    // Number of instructions in the block starting at index; 0 if it cannot be translated
+    static int blockLength(long[] code, int start) {
+        int end = start;
+        while (end < code.length && end - start < MAX_BLOCK_LENGTH) {
+            int op = Decoder.operation(code[end]);
+            if (op == Decoder.ILLEGAL) {
+                break;
+            }
+            end++;
+            if (op == Decoder.BEQ || op == Decoder.BNE || op == Decoder.JAL) {
+                break;
+            }
+        }
+        return end - start;
+    }
+
+    // Defines the hidden class for the block of length instructions at start; null if the JVM rejects it
+    static CompiledBlock translate(long[] code, int start, int length) {
+        byte[] classFile = generate(code, start, length);
+        try {
+            Class<?> blockClass = LOOKUP.defineHiddenClass(classFile, true).lookupClass();
+            return (CompiledBlock) blockClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    static byte[] generate(long[] code, int start, int length) {
+        ClassFileWriter writer = new ClassFileWriter(CLASS_NAME, "java/lang/Object", BLOCK);
+
+        ClassFileWriter.Code constructor = writer.newCode()
+                .op(ALOAD_0)
+                .invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V")
+                .op(RETURN);
+        writer.addMethod(ACC_PUBLIC, "<init>", "()V", constructor, 1, 1);
+
+        ClassFileWriter.Code body = writer.newCode();
+        body.op(ALOAD_3).field(GETFIELD, SIMULATOR, "loopBudget", "I").op(ISTORE, BUDGET);
+        body.pushInt(0).op(ISTORE, ITERATIONS);
+        int loopTop = body.position();
+        int pc = start * 4;
+        boolean terminated = false;
+        for (int i = 0; i < length; i++, pc += 4) {
+            terminated = emit(body, code[start + i], pc, i + 1, start * 4, loopTop);
+        }
+        if (!terminated) {
+            body.pushInt(pc).op(IRETURN); // fall through to the next block
+        }
+        writer.addMethod(ACC_PUBLIC, "execute", EXECUTE_DESCRIPTOR, body, MAX_STACK, MAX_LOCALS);
+
+        return writer.toByteArray(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+    }
+
+    // Emits one instruction; true if it ends the block (it has returned the next pc on every path).
+    // count is the number of instructions of the current pass executed once this one completes.
+    private static boolean emit(ClassFileWriter.Code body, long d, int pc, int count, int entryPc, int loopTop) {
+        int op = Decoder.operation(d);
+        int rd = Decoder.rd(d);
+        int rs1 = Decoder.rs1(d);
+        int rs2 = Decoder.rs2(d);
+        int imm = Decoder.imm(d);
+
+        switch (op) {
+            case Decoder.ADD, Decoder.SUB, Decoder.XOR, Decoder.OR, Decoder.AND -> {
+                if (rd != 0) {
+                    body.op(ALOAD_1).pushInt(rd);
+                    readRegister(body, rs1);
+                    readRegister(body, rs2);
+                    body.op(integerOperation(op)).op(IASTORE);
+                }
+            }
+            case Decoder.ADDI, Decoder.XORI, Decoder.ORI, Decoder.ANDI -> {
+                if (rd != 0) {
+                    body.op(ALOAD_1).pushInt(rd);
+                    readRegister(body, rs1);
+                    body.pushInt(imm).op(integerOperation(op)).op(IASTORE);
+                }
+            }
+            case Decoder.LB, Decoder.LH, Decoder.LW -> {
+                recordPc(body, pc);
+                if (rd != 0) {
+                    body.op(ALOAD_1).pushInt(rd);
+                }
+                body.op(ALOAD_2);
+                address(body, rs1, imm);
+                String method = op == Decoder.LB ? "loadByte" : op == Decoder.LH ? "loadHalf" : "loadWord";
+                body.invoke(INVOKEVIRTUAL, MEMORY, method, "(I)I");
+                body.op(rd != 0 ? IASTORE : POP);
+            }
+            case Decoder.SB, Decoder.SH, Decoder.SW -> {
+                recordPc(body, pc);
+                body.op(ALOAD_3);
+                address(body, rs1, imm);
+                readRegister(body, rs2);
+                body.pushInt(op == Decoder.SB ? 1 : op == Decoder.SH ? 2 : 4);
+                body.invoke(INVOKEVIRTUAL, SIMULATOR, "storeFromBlock", "(III)Z");
+                int codeUnchanged = body.jump(IFEQ);
+                body.op(ALOAD_3).pushInt(pc + 4).pushInt(count);
+                body.invoke(INVOKEVIRTUAL, SIMULATOR, "exitBlock", "(II)I");
+                body.op(IRETURN);
+                body.bind(codeUnchanged);
+            }
+            case Decoder.BEQ, Decoder.BNE -> {
+                readRegister(body, rs1);
+                readRegister(body, rs2);
+                int notTaken = body.jump(op == Decoder.BEQ ? IF_ICMPNE : IF_ICMPEQ);
+                jump(body, pc + imm, entryPc, loopTop);
+                body.bind(notTaken);
+                body.pushInt(pc + 4).op(IRETURN);
+                return true;
+            }
+            case Decoder.JAL -> {
+                if (rd != 0) {
+                    body.op(ALOAD_1).pushInt(rd).pushInt(pc + 4).op(IASTORE);
+                }
+                jump(body, pc + imm, entryPc, loopTop);
+                return true;
+            }
+            case Decoder.LUI -> {
+                if (rd != 0) {
+                    body.op(ALOAD_1).pushInt(rd).pushInt(imm).op(IASTORE);
+                }
+            }
+            case Decoder.FADD, Decoder.FSUB, Decoder.FMUL, Decoder.FDIV, Decoder.FMIN, Decoder.FMAX -> {
+                if (rd != 0) {
+                    body.op(ALOAD_1).pushInt(rd);
+                    readFloat(body, rs1);
+                    readFloat(body, rs2);
+                    switch (op) {
+                        case Decoder.FADD -> body.op(FADD);
+                        case Decoder.FSUB -> body.op(FSUB);
+                        case Decoder.FMUL -> body.op(FMUL);
+                        case Decoder.FDIV -> body.op(FDIV);
+                        case Decoder.FMIN -> body.invoke(INVOKESTATIC, SIMULATOR, "fmin", "(FF)F");
+                        default -> body.invoke(INVOKESTATIC, SIMULATOR, "fmax", "(FF)F");
+                    }
+                    writeFloat(body);
+                }
+            }
+            case Decoder.FSQRT -> {
+                if (rd != 0) {
+                    body.op(ALOAD_1).pushInt(rd);
+                    readFloat(body, rs1);
+                    body.op(F2D).invoke(INVOKESTATIC, "java/lang/Math", "sqrt", "(D)D").op(D2F);
+                    writeFloat(body);
+                }
+            }
+            default -> throw new IllegalArgumentException("Cannot translate operation " + op + " at pc " + pc);
+        }
+        return false;
+    }
+
+    // Continues at target: back to the top of the block while passes remain if it is the block's own entry,
+    // otherwise by returning target to the simulator
+    private static void jump(ClassFileWriter.Code body, int target, int entryPc, int loopTop) {
+        if (target == entryPc) {
+            body.op(ILOAD, ITERATIONS).pushInt(1).op(IADD).op(ILOAD, BUDGET);
+            int budgetSpent = body.jump(IF_ICMPGE);
+            body.increment(ITERATIONS, 1);
+            body.op(ALOAD_3).op(ILOAD, ITERATIONS).field(PUTFIELD, SIMULATOR, "loopIterations", "I");
+            body.jumpTo(GOTO, loopTop);
+            body.bind(budgetSpent);
+        }
+        body.pushInt(target).op(IRETURN);
+    }
+
+    private static int integerOperation(int op) {
+        return switch (op) {
+            case Decoder.ADD, Decoder.ADDI -> IADD;
+            case Decoder.SUB -> ISUB;
+            case Decoder.XOR, Decoder.XORI -> IXOR;
+            case Decoder.OR, Decoder.ORI -> IOR;
+            default -> IAND;
+        };
+    }
+
+    private static void readRegister(ClassFileWriter.Code body, int register) {
+        if (register == 0) {
+            body.pushInt(0);
+        } else {
+            body.op(ALOAD_1).pushInt(register).op(IALOAD);
+        }
+    }
+
+    private static void readFloat(ClassFileWriter.Code body, int register) {
+        readRegister(body, register);
+        body.invoke(INVOKESTATIC, "java/lang/Float", "intBitsToFloat", "(I)F");
+    }
+
+    private static void writeFloat(ClassFileWriter.Code body) {
+        body.invoke(INVOKESTATIC, "java/lang/Float", "floatToRawIntBits", "(F)I").op(IASTORE);
+    }
+
+    private static void address(ClassFileWriter.Code body, int base, int offset) {
+        readRegister(body, base);
+        if (offset != 0) {
+            body.pushInt(offset).op(IADD);
+        }
+    }
+
+    private static void recordPc(ClassFileWriter.Code body, int pc) {
+        body.op(ALOAD_3).pushInt(pc).field(PUTFIELD, SIMULATOR, "faultPc", "I");
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.ide.simulator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// Bounded single-producer, single-consumer byte queue without locks.
+// The producer only writes tail and the consumer only writes head; each publishes its index with a release store
+// and reads the other's with an acquire load, so the bytes between them are safely handed over. The producer
+// (the simulator thread) never waits: offer() fails when the buffer is full.
+public class ByteRingBuffer {
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(ByteRingBuffer.class, "head", long.class);
+            TAIL = lookup.findVarHandle(ByteRingBuffer.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final byte[] bytes;
+    private final int mask;
+    private long head;       // next byte to read, written by the consumer
+    private long tail;       // next byte to write, written by the producer
+    private long cachedHead; // producer's last view of head, refreshed only when the buffer looks full
+
+    // capacity is rounded up to a power of two
+    public ByteRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+        this.bytes = new byte[size];
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return bytes.length;
+    }
+
+    // Producer side: appends the byte, false if the buffer is full
+    public boolean offer(byte value) {
+        long t = tail;
+        if (t - cachedHead == bytes.length) {
+            cachedHead = (long) HEAD.getAcquire(this);
+            if (t - cachedHead == bytes.length) {
+                return false;
+            }
+        }
+        bytes[(int) t & mask] = value;
+        TAIL.setRelease(this, t + 1);
+        return true;
+    }
+
+    // Producer side: true if offer() would succeed
+    public boolean hasSpace() {
+        long t = tail;
+        if (t - cachedHead < bytes.length) {
+            return true;
+        }
+        cachedHead = (long) HEAD.getAcquire(this);
+        return t - cachedHead < bytes.length;
+    }
+
+    // Consumer side: moves up to destination.length bytes into destination and returns how many
+    public int drain(byte[] destination) {
+        long h = head;
+        int count = (int) Math.min(destination.length, (long) TAIL.getAcquire(this) - h);
+        int first = Math.min(count, bytes.length - ((int) h & mask));
+        System.arraycopy(bytes, (int) h & mask, destination, 0, first);
+        System.arraycopy(bytes, 0, destination, first, count - first);
+        HEAD.setRelease(this, h + count);
+        return count;
+    }
+
+    // Consumer side: bytes waiting to be drained
+    public int available() {
+        return (int) ((long) TAIL.getAcquire(this) - head);
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.ide.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Just enough of a class file writer to emit the translated blocks: one class, a constant pool, and methods made of
+// straight-line bytecode with simple jumps. Classes are written as version 49 (Java 5), which the JVM still verifies
+// by type inference, so no StackMapTable frames have to be computed.
+final class ClassFileWriter {
+    private static final int VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    // Opcodes used by the block translator
+    static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13;
+    static final int ILOAD = 0x15, ISTORE = 0x36, IINC = 0x84;
+    static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c, ALOAD_3 = 0x2d;
+    static final int IALOAD = 0x2e, IASTORE = 0x4f, POP = 0x57;
+    static final int IADD = 0x60, ISUB = 0x64, FADD = 0x62, FSUB = 0x66, FMUL = 0x6a, FDIV = 0x6e;
+    static final int IAND = 0x7e, IOR = 0x80, IXOR = 0x82, F2D = 0x8d, D2F = 0x90;
+    static final int IFEQ = 0x99, IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, IF_ICMPGE = 0xa2, GOTO = 0xa7;
+    static final int IRETURN = 0xac, RETURN = 0xb1;
+    static final int GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+    private final ByteArrayOutputStream constants = new ByteArrayOutputStream();
+    private final DataOutputStream constantPool = new DataOutputStream(constants);
+    private final Map<String, Integer> constantIndex = new HashMap<>();
+    private int constantCount = 1;
+
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private final DataOutputStream methodTable = new DataOutputStream(methods);
+    private int methodCount;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+
+    ClassFileWriter(String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    // Bytecode of one method; jumps are emitted with placeholder offsets and patched when their label is bound
+    final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Code op(int opcode) {
+            bytes.write(opcode);
+            return this;
+        }
+
+        Code op(int opcode, int operand) {
+            bytes.write(opcode);
+            bytes.write(operand);
+            return this;
+        }
+
+        Code pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                bytes.write(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(BIPUSH, value & 0xFF);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                bytes.write(SIPUSH);
+                u2(value);
+            } else {
+                int index = integerConstant(value);
+                if (index < 256) {
+                    op(LDC, index);
+                } else {
+                    bytes.write(LDC_W);
+                    u2(index);
+                }
+            }
+            return this;
+        }
+
+        Code invoke(int opcode, String owner, String name, String descriptor) {
+            bytes.write(opcode);
+            u2(memberRef(CONSTANT_METHODREF, owner, name, descriptor));
+            return this;
+        }
+
+        Code field(int opcode, String owner, String name, String descriptor) {
+            bytes.write(opcode);
+            u2(memberRef(CONSTANT_FIELDREF, owner, name, descriptor));
+            return this;
+        }
+
+        Code increment(int local, int amount) {
+            bytes.write(IINC);
+            bytes.write(local);
+            bytes.write(amount);
+            return this;
+        }
+
+        // Current position, as a target for jumpTo()
+        int position() {
+            return bytes.size();
+        }
+
+        // Emits a jump back to an earlier position
+        Code jumpTo(int opcode, int target) {
+            int offset = target - bytes.size();
+            bytes.write(opcode);
+            u2(offset);
+            return this;
+        }
+
+        // Emits a jump and returns its position, to be passed to bind() once the target is known
+        int jump(int opcode) {
+            int position = bytes.size();
+            bytes.write(opcode);
+            u2(0);
+            return position;
+        }
+
+        // Points the jump emitted at position to the current end of the code
+        void bind(int position) {
+            byte[] code = bytes.toByteArray();
+            int offset = code.length - position;
+            code[position + 1] = (byte) (offset >>> 8);
+            code[position + 2] = (byte) offset;
+            bytes.reset();
+            bytes.write(code, 0, code.length);
+        }
+
+        private void u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+    }
+
+    Code newCode() {
+        return new Code();
+    }
+
+    void addMethod(int access, String name, String descriptor, Code code, int maxStack, int maxLocals) {
+        try {
+            byte[] body = code.bytes.toByteArray();
+            methodTable.writeShort(access);
+            methodTable.writeShort(utf8(name));
+            methodTable.writeShort(utf8(descriptor));
+            methodTable.writeShort(1); // attributes: Code
+            methodTable.writeShort(utf8("Code"));
+            methodTable.writeInt(12 + body.length);
+            methodTable.writeShort(maxStack);
+            methodTable.writeShort(maxLocals);
+            methodTable.writeInt(body.length);
+            methodTable.write(body);
+            methodTable.writeShort(0); // exception table
+            methodTable.writeShort(0); // code attributes
+            methodCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    byte[] toByteArray(int access) {
+        try {
+            ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(classBytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(constantCount);
+            constants.writeTo(out);
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(0); // fields
+            out.writeShort(methodCount);
+            methods.writeTo(out);
+            out.writeShort(0); // class attributes
+            return classBytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int utf8(String value) {
+        Integer index = constantIndex.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            constantPool.writeByte(CONSTANT_UTF8);
+            constantPool.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return register("U" + value);
+    }
+
+    private int classRef(String internalName) {
+        Integer index = constantIndex.get("C" + internalName);
+        if (index != null) {
+            return index;
+        }
+        int name = utf8(internalName);
+        write(CONSTANT_CLASS, name);
+        return register("C" + internalName);
+    }
+
+    private int integerConstant(int value) {
+        Integer index = constantIndex.get("I" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            constantPool.writeByte(CONSTANT_INTEGER);
+            constantPool.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return register("I" + value);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + "." + name + descriptor;
+        Integer index = constantIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        int ownerIndex = classRef(owner);
+        String nameAndTypeKey = "N" + name + descriptor;
+        Integer nameAndType = constantIndex.get(nameAndTypeKey);
+        if (nameAndType == null) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            write(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+            nameAndType = register(nameAndTypeKey);
+        }
+        write(tag, ownerIndex, nameAndType);
+        return register(key);
+    }
+
+    private void write(int tag, int... indexes) {
+        try {
+            constantPool.writeByte(tag);
+            for (int index : indexes) {
+                constantPool.writeShort(index);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int register(String key) {
+        int index = constantCount++;
+        constantIndex.put(key, index);
+        return index;
+    }
+}
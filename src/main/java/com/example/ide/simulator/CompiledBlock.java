@@ -0,0 +1,7 @@
+package com.example.ide.simulator;
+
+// A basic block translated to JVM bytecode by BlockTranslator.
+// Runs the block against the register file and memory and returns the guest pc to continue at.
+interface CompiledBlock {
+    int execute(int[] registers, Memory memory, Simulator simulator);
+}
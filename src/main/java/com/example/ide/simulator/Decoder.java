@@ -0,0 +1,147 @@
+package com.example.ide.simulator;
+
+// Predecodes machine words into a compact operation form, once per word, so the interpreter loop never looks at
+// opcode/funct fields again. A decoded instruction is packed into a long:
+//   bits 0-7 operation, 8-12 rd, 13-17 rs1, 18-22 rs2, 32-63 sign-extended immediate.
+// The decoding mirrors the encodings in Instruction.convert*Instruction, including the project's F-type funct5 table.
+public final class Decoder {
+    // Operations
+    public static final int ILLEGAL = 0;
+    public static final int ADD = 1, SUB = 2, XOR = 3, OR = 4, AND = 5;
+    public static final int ADDI = 6, XORI = 7, ORI = 8, ANDI = 9;
+    public static final int LB = 10, LH = 11, LW = 12;
+    public static final int SB = 13, SH = 14, SW = 15;
+    public static final int BEQ = 16, BNE = 17;
+    public static final int JAL = 18, LUI = 19;
+    public static final int FADD = 20, FSUB = 21, FMUL = 22, FDIV = 23, FMIN = 24, FMAX = 25, FSQRT = 26;
+
+    private static final int[] F_OPERATIONS = {FADD, FSUB, FMUL, FDIV, FMIN, FMAX, FSQRT}; // indexed by funct5
+
+    private Decoder() {
+    }
+
+    public static long decode(int word) {
+        int opcode = word & 0x7F;
+        int rd = (word >>> 7) & 0x1F;
+        int funct3 = (word >>> 12) & 0x7;
+        int rs1 = (word >>> 15) & 0x1F;
+        int rs2 = (word >>> 20) & 0x1F;
+
+        switch (opcode) {
+            case 0b0110011: { // R-type
+                int funct7 = word >>> 25;
+                int op = ILLEGAL;
+                if (funct7 == 0b0000000) {
+                    op = switch (funct3) {
+                        case 0b000 -> ADD;
+                        case 0b100 -> XOR;
+                        case 0b110 -> OR;
+                        case 0b111 -> AND;
+                        default -> ILLEGAL;
+                    };
+                } else if (funct7 == 0b0100000 && funct3 == 0b000) {
+                    op = SUB;
+                }
+                return pack(op, rd, rs1, rs2, 0);
+            }
+            case 0b0010011: { // I-type arithmetic
+                int op = switch (funct3) {
+                    case 0b000 -> ADDI;
+                    case 0b100 -> XORI;
+                    case 0b110 -> ORI;
+                    case 0b111 -> ANDI;
+                    default -> ILLEGAL;
+                };
+                return pack(op, rd, rs1, 0, word >> 20);
+            }
+            case 0b0000011: { // Loads
+                int op = switch (funct3) {
+                    case 0b000 -> LB;
+                    case 0b001 -> LH;
+                    case 0b010 -> LW;
+                    default -> ILLEGAL;
+                };
+                return pack(op, rd, rs1, 0, word >> 20);
+            }
+            case 0b0100011: { // S-type
+                int op = switch (funct3) {
+                    case 0b000 -> SB;
+                    case 0b001 -> SH;
+                    case 0b010 -> SW;
+                    default -> ILLEGAL;
+                };
+                return pack(op, 0, rs1, rs2, storeOffset(word));
+            }
+            case 0b1100011: { // B-type
+                int op = switch (funct3) {
+                    case 0b000 -> BEQ;
+                    case 0b001 -> BNE;
+                    default -> ILLEGAL;
+                };
+                return pack(op, 0, rs1, rs2, branchOffset(word));
+            }
+            case 0b1101111: // J-type
+                return pack(JAL, rd, 0, 0, jumpOffset(word));
+            case 0b0110111: // U-type
+                return pack(LUI, rd, 0, 0, word & 0xFFFFF000);
+            case 0b1010011: { // F-type, fmt must be 00 (single precision)
+                int funct5 = word >>> 27;
+                int fmt = (word >>> 25) & 0x3;
+                int op = fmt == 0 && funct5 < F_OPERATIONS.length ? F_OPERATIONS[funct5] : ILLEGAL;
+                return pack(op, rd, rs1, rs2, 0);
+            }
+            default:
+                return pack(ILLEGAL, 0, 0, 0, 0);
+        }
+    }
+
+    public static long[] decode(int[] words) {
+        long[] decoded = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            decoded[i] = decode(words[i]);
+        }
+        return decoded;
+    }
+
+    public static int storeOffset(int word) {
+        return ((word >> 25) << 5) | ((word >>> 7) & 0x1F);
+    }
+
+    public static int branchOffset(int word) {
+        return ((word >> 31) << 12)
+                | (((word >>> 7) & 0x1) << 11)
+                | (((word >>> 25) & 0x3F) << 5)
+                | (((word >>> 8) & 0xF) << 1);
+    }
+
+    public static int jumpOffset(int word) {
+        return ((word >> 31) << 20)
+                | (((word >>> 12) & 0xFF) << 12)
+                | (((word >>> 20) & 0x1) << 11)
+                | (((word >>> 21) & 0x3FF) << 1);
+    }
+
+    static long pack(int op, int rd, int rs1, int rs2, int imm) {
+        return (long) imm << 32 | rs2 << 18 | rs1 << 13 | rd << 8 | op;
+    }
+
+    public static int operation(long decoded) {
+        return (int) decoded & 0xFF;
+    }
+
+    public static int rd(long decoded) {
+        return (int) (decoded >>> 8) & 0x1F;
+    }
+
+    public static int rs1(long decoded) {
+        return (int) (decoded >>> 13) & 0x1F;
+    }
+
+    public static int rs2(long decoded) {
+        return (int) (decoded >>> 18) & 0x1F;
+    }
+
+    public static int imm(long decoded) {
+        return (int) (decoded >> 32);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.ide.simulator;
+
+import com.example.ide.assembler.RISCV.AssemblerError;
+import com.example.ide.assembler.RISCV.IncrementalAssembler;
+
+import java.util.List;
+
+// Assembles source text in memory, runs it on the Simulator, with profiling on unless asked otherwise, and maps the
+// profile back to the source lines. A Uart passed in is mapped into the program's address space for the run.
+// Nothing is written to disk; a program with assembler errors is not run.
+public class ExecutionHarness {
+
+    public static class Result {
+        private final List<AssemblerError> errors;
+        private final Simulator simulator;
+        private final Simulator.RunResult runResult;
+        private final SimulationException trap;
+        private final long elapsedNanos;
+        private final SourceProfile profile;
+
+        Result(List<AssemblerError> errors, Simulator simulator, Simulator.RunResult runResult,
+               SimulationException trap, long elapsedNanos, SourceProfile profile) {
+            this.errors = errors;
+            this.simulator = simulator;
+            this.runResult = runResult;
+            this.trap = trap;
+            this.elapsedNanos = elapsedNanos;
+            this.profile = profile;
+        }
+
+        public List<AssemblerError> getErrors() {
+            return errors;
+        }
+
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+
+        // null if the program was not run
+        public Simulator getSimulator() {
+            return simulator;
+        }
+
+        // null if the program was not run or trapped
+        public Simulator.RunResult getRunResult() {
+            return runResult;
+        }
+
+        public SimulationException getTrap() {
+            return trap;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        // null if the program was not run or profiling was off
+        public SourceProfile getProfile() {
+            return profile;
+        }
+    }
+
+    public static Result run(CharSequence source, long maxInstructions) {
+        return run(source, maxInstructions, true, null);
+    }
+
+    // uart may be null
+    public static Result run(CharSequence source, long maxInstructions, boolean profiling, Uart uart) {
+        IncrementalAssembler assembler = new IncrementalAssembler();
+        List<AssemblerError> errors = assembler.update(source);
+        if (!errors.isEmpty()) {
+            return new Result(errors, null, null, null, 0, null);
+        }
+
+        Simulator simulator = new Simulator(assembler.getWords());
+        if (profiling) {
+            simulator.enableProfiling();
+        }
+        if (uart != null) {
+            uart.attach(simulator);
+        }
+        Simulator.RunResult runResult = null;
+        SimulationException trap = null;
+        long startTime = System.nanoTime();
+        try {
+            runResult = simulator.run(maxInstructions);
+        } catch (SimulationException e) {
+            trap = e;
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+
+        SourceProfile profile = profiling
+                ? SourceProfile.of(simulator.getProfile(), assembler.getWordLines(), assembler.getLineCount())
+                : null;
+        return new Result(errors, simulator, runResult, trap, elapsedNanos, profile);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.ide.simulator;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+// Command line runner: Main [--interpret] [--profile] <program.bin|.img|.hex> [maxInstructions]
+// Prints the final registers, the instruction count and the simulation speed. --interpret disables block translation,
+// --profile also prints the most executed instructions with their branch outcomes. A Uart is mapped at Uart.BASE and
+// whatever the program transmits is copied to standard output while it runs.
+public class Main {
+    private static final int HOTTEST_SHOWN = 10;
+    private static final long CONSOLE_POLL_MILLIS = 1;
+
+    public static void main(String[] args) {
+        boolean interpretOnly = false;
+        boolean profile = false;
+        while (args.length > 0 && args[0].startsWith("--")) {
+            switch (args[0]) {
+                case "--interpret" -> interpretOnly = true;
+                case "--profile" -> profile = true;
+                default -> {
+                    System.err.println("Unknown option: " + args[0]);
+                    System.exit(2);
+                }
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length == 0) {
+            System.err.println("Usage: Main [--interpret] [--profile] <program.bin|.img|.hex> [maxInstructions]");
+            System.exit(2);
+        }
+        long maxInstructions = args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE;
+
+        Simulator simulator;
+        try {
+            simulator = Simulator.load(Paths.get(args[0]));
+        } catch (IOException e) {
+            System.err.println("Error loading " + args[0] + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        if (interpretOnly) {
+            simulator.setTranslationThreshold(0);
+        }
+        if (profile) {
+            simulator.enableProfiling();
+        }
+        Uart uart = new Uart().attach(simulator);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread console = new Thread(() -> copyOutput(uart, running), "uart-console");
+        console.setDaemon(true);
+        console.start();
+
+        long startTime = System.nanoTime();
+        int status = 0;
+        try {
+            Simulator.RunResult result = simulator.run(maxInstructions);
+            System.out.println(result == Simulator.RunResult.FINISHED ? "Program finished." : "Instruction limit reached.");
+        } catch (SimulationException e) {
+            System.out.println("Trap: " + e.getMessage());
+            status = 1;
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - startTime);
+        running.set(false);
+        try {
+            console.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (uart.getOverruns() > 0) {
+            System.err.println("UART output buffer overran, " + uart.getOverruns() + " byte(s) dropped");
+        }
+
+        int[] registers = simulator.getRegisters();
+        for (int i = 0; i < registers.length; i++) {
+            System.out.printf("X%-2d = 0x%08x (%d, %g)%n", i, registers[i], registers[i], Float.intBitsToFloat(registers[i]));
+        }
+        long count = simulator.getInstructionCount();
+        System.out.printf("%d instructions in %.3f ms (%.1f MIPS), %d translated blocks%n",
+                count, elapsedNanos / 1e6, count * 1e3 / elapsedNanos, simulator.getTranslatedBlockCount());
+        if (profile) {
+            printHottest(simulator.getProfile());
+        }
+        System.exit(status);
+    }
+
+    // Drains the UART to standard output until the run is over and nothing is left
+    private static void copyOutput(Uart uart, AtomicBoolean running) {
+        byte[] chunk = new byte[8192];
+        while (true) {
+            boolean finished = !running.get(); // checked before draining, so bytes sent last are not missed
+            int count = uart.getOutput().drain(chunk);
+            if (count > 0) {
+                System.out.write(chunk, 0, count);
+            } else if (finished) {
+                System.out.flush();
+                return;
+            } else {
+                System.out.flush();
+                LockSupport.parkNanos(CONSOLE_POLL_MILLIS * 1_000_000);
+            }
+        }
+    }
+
+    private static void printHottest(Profile profile) {
+        Integer[] slots = new Integer[profile.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = i;
+        }
+        Arrays.sort(slots, (a, b) -> Long.compare(profile.getExecutions(b), profile.getExecutions(a)));
+        long total = Math.max(1, profile.getTotal());
+        System.out.println("Hottest instructions:");
+        for (int i = 0; i < Math.min(HOTTEST_SHOWN, slots.length) && profile.getExecutions(slots[i]) > 0; i++) {
+            int slot = slots[i];
+            long executions = profile.getExecutions(slot);
+            System.out.printf("  pc 0x%08x %14d %5.1f%%", slot * 4, executions, executions * 100.0 / total);
+            if (profile.getTaken(slot) + profile.getNotTaken(slot) > 0) {
+                System.out.printf("  taken %d, not taken %d", profile.getTaken(slot), profile.getNotTaken(slot));
+            }
+            System.out.println();
+        }
+    }
+}
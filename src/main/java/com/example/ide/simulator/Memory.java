@@ -0,0 +1,120 @@
+package com.example.ide.simulator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Flat, byte-addressed little-endian memory starting at address 0.
+// Devices can be mapped at addresses above the end of RAM; accesses past RAM are checked against them on a slow path,
+// so RAM accesses cost one unsigned compare more. Accesses that hit neither surface as IndexOutOfBoundsException,
+// which the simulator turns into a trap.
+public class Memory {
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] bytes;
+    private MemoryMappedDevice[] devices = new MemoryMappedDevice[0];
+    private int[] deviceBases = new int[0];
+    private int[] deviceSizes = new int[0];
+
+    public Memory(int size) {
+        this.bytes = new byte[size];
+    }
+
+    public int size() {
+        return bytes.length;
+    }
+
+    public int loadByte(int address) {
+        if (Integer.compareUnsigned(address, bytes.length) >= 0) {
+            return loadDevice(address, 1);
+        }
+        return bytes[address]; // sign-extended
+    }
+
+    public int loadHalf(int address) {
+        if (Integer.compareUnsigned(address, bytes.length) >= 0) {
+            return loadDevice(address, 2);
+        }
+        return (short) SHORT.get(bytes, address); // sign-extended
+    }
+
+    public int loadWord(int address) {
+        if (Integer.compareUnsigned(address, bytes.length) >= 0) {
+            return loadDevice(address, 4);
+        }
+        return (int) INT.get(bytes, address);
+    }
+
+    public void storeByte(int address, int value) {
+        if (Integer.compareUnsigned(address, bytes.length) >= 0) {
+            storeDevice(address, value, 1);
+            return;
+        }
+        bytes[address] = (byte) value;
+    }
+
+    public void storeHalf(int address, int value) {
+        if (Integer.compareUnsigned(address, bytes.length) >= 0) {
+            storeDevice(address, value, 2);
+            return;
+        }
+        SHORT.set(bytes, address, (short) value);
+    }
+
+    public void storeWord(int address, int value) {
+        if (Integer.compareUnsigned(address, bytes.length) >= 0) {
+            storeDevice(address, value, 4);
+            return;
+        }
+        INT.set(bytes, address, value);
+    }
+
+    // Copies words into memory, e.g. a program image at address 0
+    public void storeWords(int address, int[] words) {
+        for (int i = 0; i < words.length; i++) {
+            storeWord(address + 4 * i, words[i]);
+        }
+    }
+
+    // Maps a device's size bytes of registers at base, which must lie above RAM and clear of the other devices
+    public void map(int base, int size, MemoryMappedDevice device) {
+        if (Integer.compareUnsigned(base, bytes.length) < 0 || Integer.compareUnsigned(base + size - 1, base) < 0) {
+            throw new IllegalArgumentException(String.format("Device at 0x%08x overlaps RAM or wraps around", base));
+        }
+        for (int i = 0; i < devices.length; i++) {
+            if (Integer.compareUnsigned(base, deviceBases[i] + deviceSizes[i]) < 0
+                    && Integer.compareUnsigned(deviceBases[i], base + size) < 0) {
+                throw new IllegalArgumentException(String.format("Device at 0x%08x overlaps another device", base));
+            }
+        }
+        int count = devices.length;
+        devices = Arrays.copyOf(devices, count + 1);
+        deviceBases = Arrays.copyOf(deviceBases, count + 1);
+        deviceSizes = Arrays.copyOf(deviceSizes, count + 1);
+        devices[count] = device;
+        deviceBases[count] = base;
+        deviceSizes[count] = size;
+    }
+
+    private int loadDevice(int address, int size) {
+        int i = findDevice(address, size);
+        return devices[i].load(address - deviceBases[i], size);
+    }
+
+    private void storeDevice(int address, int value, int size) {
+        int i = findDevice(address, size);
+        devices[i].store(address - deviceBases[i], value, size);
+    }
+
+    private int findDevice(int address, int size) {
+        for (int i = 0; i < devices.length; i++) {
+            int offset = address - deviceBases[i];
+            if (Integer.compareUnsigned(offset, deviceSizes[i]) < 0 && offset + size <= deviceSizes[i]) {
+                return i;
+            }
+        }
+        throw new IndexOutOfBoundsException(String.format("No memory or device at 0x%08x", address));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.ide.simulator;
+
+// A device whose registers are mapped into the simulated address space, above the end of RAM (see Memory.map).
+// Accesses arrive with the offset from the device's base address and their size in bytes (1, 2 or 4); loads return
+// the value already sign-extended like a memory load of that size would be.
+public interface MemoryMappedDevice {
+
+    int load(int offset, int size);
+
+    void store(int offset, int value, int size);
+}
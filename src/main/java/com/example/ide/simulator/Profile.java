@@ -0,0 +1,53 @@
+package com.example.ide.simulator;
+
+// Execution counts per instruction slot (pc / 4), and taken / not-taken counts for the branches.
+// Filled by the Simulator as it runs: the interpreter counts every instruction, translated blocks are counted per
+// pass and folded in when the profile is read, so profiling adds no code to the translated blocks themselves.
+public class Profile {
+    final long[] executions;
+    final long[] taken;
+    final long[] notTaken;
+
+    Profile(int slots) {
+        executions = new long[slots];
+        taken = new long[slots];
+        notTaken = new long[slots];
+    }
+
+    // One interpreted instruction at pc, continuing at next
+    void record(int index, long decoded, int pc, int next) {
+        executions[index]++;
+        int op = Decoder.operation(decoded);
+        if (op == Decoder.BEQ || op == Decoder.BNE) {
+            if (next != pc + 4) {
+                taken[index]++;
+            } else {
+                notTaken[index]++;
+            }
+        }
+    }
+
+    public int size() {
+        return executions.length;
+    }
+
+    public long getExecutions(int slot) {
+        return executions[slot];
+    }
+
+    public long getTaken(int slot) {
+        return taken[slot];
+    }
+
+    public long getNotTaken(int slot) {
+        return notTaken[slot];
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (long count : executions) {
+            total += count;
+        }
+        return total;
+    }
+}
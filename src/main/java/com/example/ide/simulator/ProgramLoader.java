@@ -0,0 +1,133 @@
+package com.example.ide.simulator;
+
+import com.example.ide.assembler.OutputFormat;
+import com.example.ide.assembler.RISCV.Instruction;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Reads the machine code RiscVAssembler writes, in any of its OutputFormats, back into words.
+// The format is picked from the file extension (.bin text listing, .img raw words, .hex Intel HEX).
+public class ProgramLoader {
+    // Largest image a HEX file may describe; far above any program the assembler writes, but it keeps a corrupt or
+    // hostile extended address from allocating gigabytes
+    private static final int MAX_IMAGE_BYTES = 64 * 1024 * 1024;
+
+    public static int[] load(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        if (name.endsWith(OutputFormat.INTEL_HEX.getExtension())) {
+            return loadIntelHex(file);
+        } else if (name.endsWith(OutputFormat.RAW.getExtension())) {
+            return loadRaw(file);
+        }
+        return loadText(file);
+    }
+
+    // Little-endian 32-bit words
+    public static int[] loadRaw(Path file) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        int[] words = new int[bytes.remaining() / 4];
+        bytes.asIntBuffer().get(words);
+        return words;
+    }
+
+    // One binary string per line; ERROR lines become the invalid (all-zero) word
+    public static int[] loadText(Path file) throws IOException {
+        int[] words = new int[256];
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (count == words.length) {
+                    words = Arrays.copyOf(words, count * 2);
+                }
+                try {
+                    words[count++] = line.equals("ERROR") ? Instruction.INVALID : Integer.parseUnsignedInt(line, 2);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid machine code at line " + lineNumber + " of " + file + ": " + line);
+                }
+            }
+        }
+        return Arrays.copyOf(words, count);
+    }
+
+    // Data (00), end of file (01) and extended linear address (04) records
+    public static int[] loadIntelHex(Path file) throws IOException {
+        byte[] image = new byte[1024];
+        int imageSize = 0;
+        int upperAddress = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                byte[] record = parseRecord(line, file, lineNumber);
+                int length = record[0] & 0xFF;
+                int address = (record[1] & 0xFF) << 8 | (record[2] & 0xFF);
+                int type = record[3] & 0xFF;
+                if (type == 0x01) {
+                    break;
+                } else if (type == 0x04) {
+                    if (length != 2) {
+                        throw new IOException("Invalid extended address record at line " + lineNumber + " of " + file);
+                    }
+                    upperAddress = (record[4] & 0xFF) << 8 | (record[5] & 0xFF);
+                } else if (type == 0x00) {
+                    long start = (long) upperAddress << 16 | address;
+                    if (start + length > MAX_IMAGE_BYTES) {
+                        throw new IOException("Address 0x" + Long.toHexString(start) + " at line " + lineNumber + " of "
+                                + file + " is beyond the " + (MAX_IMAGE_BYTES >> 20) + " MiB a program may use");
+                    }
+                    int end = (int) start + length;
+                    if (end > image.length) {
+                        image = Arrays.copyOf(image, Math.min(Math.max(image.length * 2, end), MAX_IMAGE_BYTES));
+                    }
+                    System.arraycopy(record, 4, image, (int) start, length);
+                    imageSize = Math.max(imageSize, end);
+                }
+            }
+        }
+        int[] words = new int[(imageSize + 3) / 4];
+        if (image.length < words.length * 4) {
+            image = Arrays.copyOf(image, words.length * 4); // a trailing partial word is padded with zeros
+        }
+        ByteBuffer.wrap(image, 0, words.length * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(words);
+        return words;
+    }
+
+    private static byte[] parseRecord(String line, Path file, int lineNumber) throws IOException {
+        if (line.charAt(0) != ':' || line.length() < 11 || line.length() % 2 == 0) {
+            throw new IOException("Invalid Intel HEX record at line " + lineNumber + " of " + file);
+        }
+        byte[] record = new byte[(line.length() - 1) / 2];
+        int checksum = 0;
+        for (int i = 0; i < record.length; i++) {
+            int value = Character.digit(line.charAt(1 + 2 * i), 16) << 4 | Character.digit(line.charAt(2 + 2 * i), 16);
+            if (value < 0) {
+                throw new IOException("Invalid hex digit at line " + lineNumber + " of " + file);
+            }
+            record[i] = (byte) value;
+            checksum += value;
+        }
+        if ((checksum & 0xFF) != 0 || (record[0] & 0xFF) != record.length - 5) {
+            throw new IOException("Bad Intel HEX checksum or length at line " + lineNumber + " of " + file);
+        }
+        return record;
+    }
+}
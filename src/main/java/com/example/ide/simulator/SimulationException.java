@@ -0,0 +1,17 @@
+package com.example.ide.simulator;
+
+// Trap raised while running a program: illegal instruction, bad jump target or memory access out of range
+public class SimulationException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int pc;
+
+    public SimulationException(int pc, String message) {
+        super(String.format("%s at pc 0x%08x", message, pc));
+        this.pc = pc;
+    }
+
+    public int getPc() {
+        return pc;
+    }
+}
@@ -0,0 +1,402 @@
+package com.example.ide.simulator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// RV32 instruction-set simulator for the programs RiscVAssembler produces.
+// The program is copied to address 0 of a byte-addressed memory and every word is predecoded once (see Decoder);
+// the interpreter then runs straight off the decoded array with the register file in an int[].
+// Execution is tiered: blocks are interpreted while cold, and a basic block entered translationThreshold times is
+// translated by BlockTranslator into a hidden class that HotSpot compiles to native code. Stores into the program
+// redecode the overwritten words and invalidate the translated blocks that contain them.
+//
+// The assembler names every operand Xn and loads float constants with LUI, so the F-type operations work on the
+// same 32 registers, reading and writing their IEEE 754 bit patterns. X0 always reads as zero. A program ends when
+// execution falls off the last instruction.
+public class Simulator {
+    public static final int DEFAULT_MEMORY_SIZE = 1 << 20;
+    public static final int DEFAULT_TRANSLATION_THRESHOLD = 100;
+
+    public enum RunResult {
+        FINISHED,   // ran past the end of the program
+        STEP_LIMIT  // maxInstructions reached first
+    }
+
+    private final int[] registers = new int[32];
+    private final Memory memory;
+    private final long[] decoded;
+    private final int codeSize; // bytes of program at address 0
+    private int pc;
+    private long instructionCount;
+
+    // Block translation: entry counts, translated blocks and their lengths, indexed by the word at the block entry
+    private final int[] entryCounts;
+    private final CompiledBlock[] blocks;
+    private final int[] blockLengths;
+    private int translationThreshold = DEFAULT_TRANSLATION_THRESHOLD;
+    int faultPc;        // set by translated code before each memory access
+    int loopBudget;     // passes a self-looping translated block may run
+    int loopIterations; // passes it has completed and looped back from
+    private int exitCount; // instructions of its last pass if it left early, 0 if it ran to the end
+
+    // Profiling, off until enableProfiling(): passes of each translated block not yet folded into the profile
+    private Profile profile;
+    private long[] blockPasses;
+
+    public Simulator(int[] program, int memorySize) {
+        if ((long) program.length * 4 > memorySize) {
+            throw new IllegalArgumentException("Program of " + program.length + " words does not fit in " + memorySize + " bytes");
+        }
+        this.memory = new Memory(memorySize);
+        this.memory.storeWords(0, program);
+        this.decoded = Decoder.decode(program);
+        this.codeSize = program.length * 4;
+        this.entryCounts = new int[program.length];
+        this.blocks = new CompiledBlock[program.length];
+        this.blockLengths = new int[program.length];
+    }
+
+    public Simulator(int[] program) {
+        this(program, DEFAULT_MEMORY_SIZE);
+    }
+
+    public static Simulator load(Path binary) throws IOException {
+        return new Simulator(ProgramLoader.load(binary));
+    }
+
+    public int[] getRegisters() {
+        return registers;
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+
+    public int getPc() {
+        return pc;
+    }
+
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    public boolean isFinished() {
+        return pc == codeSize;
+    }
+
+    // Blocks entered this many times are translated to bytecode; 0 keeps the simulator in the interpreter
+    public void setTranslationThreshold(int translationThreshold) {
+        this.translationThreshold = translationThreshold;
+    }
+
+    // Counts executions per instruction and branch outcomes from here on
+    public void enableProfiling() {
+        if (profile == null) {
+            profile = new Profile(decoded.length);
+            blockPasses = new long[decoded.length];
+        }
+    }
+
+    // The profile so far, or null if profiling is off
+    public Profile getProfile() {
+        if (profile != null) {
+            for (int start = 0; start < blocks.length; start++) {
+                foldBlockPasses(start);
+            }
+        }
+        return profile;
+    }
+
+    public int getTranslatedBlockCount() {
+        int count = 0;
+        for (CompiledBlock block : blocks) {
+            if (block != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public RunResult run(long maxInstructions) {
+        return translationThreshold > 0 ? runTiered(maxInstructions) : interpret(maxInstructions);
+    }
+
+    // Executes a single instruction; false once the program has finished
+    public boolean step() {
+        return interpret(1) == RunResult.STEP_LIMIT && !isFinished();
+    }
+
+    private RunResult interpret(long maxInstructions) {
+        final long[] code = decoded;
+        int pc = this.pc;
+        long executed = 0;
+
+        try {
+            while (executed < maxInstructions) {
+                int index = pc >>> 2;
+                if (index >= code.length || (pc & 3) != 0) {
+                    if (pc == codeSize) {
+                        return finish(pc, executed, RunResult.FINISHED);
+                    }
+                    throw new SimulationException(pc, "Jump outside the program");
+                }
+                long d = code[index];
+                int next = execute(d, pc);
+                if (profile != null) {
+                    profile.record(index, d, pc, next);
+                }
+                pc = next;
+                executed++;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            finish(pc, executed, null);
+            throw new SimulationException(pc, "Memory access out of range");
+        } catch (SimulationException e) {
+            finish(pc, executed, null);
+            throw e;
+        }
+        return finish(pc, executed, RunResult.STEP_LIMIT);
+    }
+
+    // Tier 0 interprets one basic block at a time and counts how often each block is entered; a block that reaches
+    // the threshold is translated (tier 1) and from then on runs as a single call into its hidden class
+    private RunResult runTiered(long maxInstructions) {
+        final int[] x = registers;
+        final long[] code = decoded;
+        final Memory mem = memory;
+        int pc = this.pc;
+        long executed = 0;
+        int blockStart = -1; // pc of the translated block running, for traps inside it
+
+        try {
+            while (executed < maxInstructions) {
+                int index = pc >>> 2;
+                if (index >= code.length || (pc & 3) != 0) {
+                    if (pc == codeSize) {
+                        return finish(pc, executed, RunResult.FINISHED);
+                    }
+                    throw new SimulationException(pc, "Jump outside the program");
+                }
+
+                CompiledBlock block = blocks[index];
+                if (block == null && ++entryCounts[index] == translationThreshold) {
+                    block = translate(index);
+                }
+                int length = blockLengths[index];
+                if (block != null && executed + length <= maxInstructions) {
+                    blockStart = pc;
+                    exitCount = 0;
+                    loopIterations = 0;
+                    loopBudget = (int) Math.min(Integer.MAX_VALUE, (maxInstructions - executed) / length);
+                    int next = block.execute(x, mem, this);
+                    executed += (long) loopIterations * length + (exitCount != 0 ? exitCount : length);
+                    if (profile != null) {
+                        recordBlock(index, length, exitCount != 0 ? exitCount : -1, next);
+                    }
+                    pc = next;
+                    blockStart = -1;
+                    continue;
+                }
+
+                // Interpret up to the end of the block
+                int op;
+                do {
+                    long d = code[pc >>> 2];
+                    int next = execute(d, pc);
+                    if (profile != null) {
+                        profile.record(pc >>> 2, d, pc, next);
+                    }
+                    pc = next;
+                    executed++;
+                    op = Decoder.operation(d);
+                } while (op != Decoder.BEQ && op != Decoder.BNE && op != Decoder.JAL
+                        && executed < maxInstructions && (pc >>> 2) < code.length);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            if (blockStart >= 0) {
+                int index = blockStart >>> 2;
+                int partial = (faultPc - blockStart) >>> 2;
+                executed += (long) loopIterations * blockLengths[index] + partial;
+                if (profile != null) {
+                    recordBlock(index, blockLengths[index], partial, faultPc);
+                }
+                pc = faultPc;
+            }
+            finish(pc, executed, null);
+            throw new SimulationException(pc, "Memory access out of range");
+        } catch (SimulationException e) {
+            finish(pc, executed, null);
+            throw e;
+        }
+        return finish(pc, executed, RunResult.STEP_LIMIT);
+    }
+
+    // Executes the decoded instruction at pc and returns the next pc
+    private int execute(long d, int pc) {
+        final int[] x = registers;
+        final Memory mem = memory;
+        int rd = (int) (d >>> 8) & 0x1F;
+        int rs1 = (int) (d >>> 13) & 0x1F;
+        int rs2 = (int) (d >>> 18) & 0x1F;
+        int imm = (int) (d >> 32);
+        int next = pc + 4;
+
+        switch ((int) d & 0xFF) {
+            case Decoder.ADD -> x[rd] = x[rs1] + x[rs2];
+            case Decoder.SUB -> x[rd] = x[rs1] - x[rs2];
+            case Decoder.XOR -> x[rd] = x[rs1] ^ x[rs2];
+            case Decoder.OR -> x[rd] = x[rs1] | x[rs2];
+            case Decoder.AND -> x[rd] = x[rs1] & x[rs2];
+            case Decoder.ADDI -> x[rd] = x[rs1] + imm;
+            case Decoder.XORI -> x[rd] = x[rs1] ^ imm;
+            case Decoder.ORI -> x[rd] = x[rs1] | imm;
+            case Decoder.ANDI -> x[rd] = x[rs1] & imm;
+            case Decoder.LB -> x[rd] = mem.loadByte(x[rs1] + imm);
+            case Decoder.LH -> x[rd] = mem.loadHalf(x[rs1] + imm);
+            case Decoder.LW -> x[rd] = mem.loadWord(x[rs1] + imm);
+            case Decoder.SB -> store(x[rs1] + imm, x[rs2], 1);
+            case Decoder.SH -> store(x[rs1] + imm, x[rs2], 2);
+            case Decoder.SW -> store(x[rs1] + imm, x[rs2], 4);
+            case Decoder.BEQ -> {
+                if (x[rs1] == x[rs2]) next = pc + imm;
+            }
+            case Decoder.BNE -> {
+                if (x[rs1] != x[rs2]) next = pc + imm;
+            }
+            case Decoder.JAL -> {
+                x[rd] = next;
+                next = pc + imm;
+            }
+            case Decoder.LUI -> x[rd] = imm;
+            case Decoder.FADD -> x[rd] = Float.floatToRawIntBits(f(x[rs1]) + f(x[rs2]));
+            case Decoder.FSUB -> x[rd] = Float.floatToRawIntBits(f(x[rs1]) - f(x[rs2]));
+            case Decoder.FMUL -> x[rd] = Float.floatToRawIntBits(f(x[rs1]) * f(x[rs2]));
+            case Decoder.FDIV -> x[rd] = Float.floatToRawIntBits(f(x[rs1]) / f(x[rs2]));
+            case Decoder.FMIN -> x[rd] = Float.floatToRawIntBits(fmin(f(x[rs1]), f(x[rs2])));
+            case Decoder.FMAX -> x[rd] = Float.floatToRawIntBits(fmax(f(x[rs1]), f(x[rs2])));
+            case Decoder.FSQRT -> x[rd] = Float.floatToRawIntBits((float) Math.sqrt(f(x[rs1])));
+            default -> throw new SimulationException(pc, "Illegal instruction");
+        }
+        x[0] = 0;
+        return next;
+    }
+
+    // Profiles a run of the translated block at index that continued at next. partial is the number of instructions
+    // its last pass ran if that pass was cut short (by a store into code or a trap), -1 if it ran to the end.
+    private void recordBlock(int index, int length, int partial, int next) {
+        blockPasses[index] += loopIterations;
+        if (partial < 0) {
+            blockPasses[index]++;
+        } else {
+            for (int i = index; i < index + partial; i++) {
+                profile.executions[i]++;
+            }
+        }
+        int last = index + length - 1;
+        int op = Decoder.operation(decoded[last]);
+        if (op == Decoder.BEQ || op == Decoder.BNE) {
+            profile.taken[last] += loopIterations; // every pass that looped back took the branch
+            if (partial < 0) {
+                if (next != last * 4 + 4) {
+                    profile.taken[last]++;
+                } else {
+                    profile.notTaken[last]++;
+                }
+            }
+        }
+    }
+
+    private void foldBlockPasses(int start) {
+        long passes = blockPasses[start];
+        if (passes != 0) {
+            for (int i = start; i < start + blockLengths[start]; i++) {
+                profile.executions[i] += passes;
+            }
+            blockPasses[start] = 0;
+        }
+    }
+
+    private RunResult finish(int pc, long executed, RunResult result) {
+        this.pc = pc;
+        this.instructionCount += executed;
+        return result;
+    }
+
+    private CompiledBlock translate(int index) {
+        int length = BlockTranslator.blockLength(decoded, index);
+        CompiledBlock block = length > 0 ? BlockTranslator.translate(decoded, index, length) : null;
+        if (block == null) {
+            entryCounts[index] = Integer.MIN_VALUE; // not translatable, stay in the interpreter
+            return null;
+        }
+        blocks[index] = block;
+        blockLengths[index] = length;
+        return block;
+    }
+
+    // Stores from translated code; true if the store overwrote code, which ends the running block
+    boolean storeFromBlock(int address, int value, int size) {
+        return store(address, value, size);
+    }
+
+    // Leaves a translated block early after executed of its instructions, continuing at nextPc
+    int exitBlock(int nextPc, int executed) {
+        exitCount = executed;
+        return nextPc;
+    }
+
+    private boolean store(int address, int value, int size) {
+        switch (size) {
+            case 1 -> memory.storeByte(address, value);
+            case 2 -> memory.storeHalf(address, value);
+            default -> memory.storeWord(address, value);
+        }
+        if (Integer.compareUnsigned(address, codeSize) >= 0) {
+            return false;
+        }
+        // Self-modifying code: keep the predecoded copy of an overwritten instruction in step and drop every
+        // translated block that contains it
+        for (int word = address & ~3; word < address + size && word < codeSize; word += 4) {
+            int index = word >>> 2;
+            decoded[index] = Decoder.decode(memory.loadWord(word));
+            invalidate(index);
+        }
+        return true;
+    }
+
+    private void invalidate(int index) {
+        for (int start = Math.max(0, index - BlockTranslator.MAX_BLOCK_LENGTH + 1); start <= index; start++) {
+            if (blocks[start] != null && start + blockLengths[start] > index) {
+                if (profile != null) {
+                    foldBlockPasses(start);
+                }
+                blocks[start] = null;
+                entryCounts[start] = 0;
+            }
+        }
+        if (entryCounts[index] < 0) {
+            entryCounts[index] = 0; // the new instruction may be translatable
+        }
+    }
+
+    private static float f(int bits) {
+        return Float.intBitsToFloat(bits);
+    }
+
+    // FMIN.S and FMAX.S as RISC-V defines them, unlike Math.min and Math.max: a NaN operand is ignored and the result
+    // is the other one, or the canonical NaN (Float.NaN) if both are NaN; -0.0 is less than +0.0. Translated blocks
+    // call these too.
+    static float fmin(float a, float b) {
+        if (Float.isNaN(a)) {
+            return Float.isNaN(b) ? Float.NaN : b;
+        }
+        return Float.isNaN(b) ? a : Math.min(a, b);
+    }
+
+    static float fmax(float a, float b) {
+        if (Float.isNaN(a)) {
+            return Float.isNaN(b) ? Float.NaN : b;
+        }
+        return Float.isNaN(b) ? a : Math.max(a, b);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.ide.simulator;
+
+import java.util.stream.IntStream;
+
+// A Profile summed per source line, through the line each instruction slot was assembled from.
+// Lines are numbered from 1 like AssemblerError lines; lines without instructions stay at zero.
+public class SourceProfile {
+    private final long[] executions;
+    private final long[] taken;
+    private final long[] notTaken;
+    private final long maxExecutions;
+
+    private SourceProfile(long[] executions, long[] taken, long[] notTaken) {
+        this.executions = executions;
+        this.taken = taken;
+        this.notTaken = notTaken;
+        long max = 0;
+        for (long count : executions) {
+            max = Math.max(max, count);
+        }
+        this.maxExecutions = max;
+    }
+
+    // slotLines[i] is the source line of instruction slot i
+    public static SourceProfile of(Profile profile, int[] slotLines, int lineCount) {
+        long[] executions = new long[lineCount + 1];
+        long[] taken = new long[lineCount + 1];
+        long[] notTaken = new long[lineCount + 1];
+        int slots = Math.min(profile.size(), slotLines.length);
+        for (int i = 0; i < slots; i++) {
+            int line = slotLines[i];
+            if (line > 0 && line <= lineCount) {
+                executions[line] += profile.executions[i];
+                taken[line] += profile.taken[i];
+                notTaken[line] += profile.notTaken[i];
+            }
+        }
+        return new SourceProfile(executions, taken, notTaken);
+    }
+
+    public int getLineCount() {
+        return executions.length - 1;
+    }
+
+    public long getExecutions(int line) {
+        return line < executions.length ? executions[line] : 0;
+    }
+
+    public long getTaken(int line) {
+        return line < taken.length ? taken[line] : 0;
+    }
+
+    public long getNotTaken(int line) {
+        return line < notTaken.length ? notTaken[line] : 0;
+    }
+
+    public long getMaxExecutions() {
+        return maxExecutions;
+    }
+
+    // Up to count executed lines, most executed first
+    public int[] hottestLines(int count) {
+        return IntStream.rangeClosed(1, getLineCount())
+                .filter(line -> executions[line] > 0)
+                .boxed()
+                .sorted((a, b) -> Long.compare(executions[b], executions[a]))
+                .limit(count)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+}
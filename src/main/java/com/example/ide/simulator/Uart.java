@@ -0,0 +1,71 @@
+package com.example.ide.simulator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// Transmit side of a 16550-style UART, mapped at BASE by attach().
+// A byte stored to the transmit holding register (offset 0) is queued in a ByteRingBuffer for whoever displays the
+// output; the line status register (offset 5) reports the transmitter ready while the queue has room, so a program
+// that polls it never loses output. Bytes written while the queue is full are dropped and counted as overruns.
+// There is no receive side: the receive buffer reads as 0 and data-ready is never set.
+public class Uart implements MemoryMappedDevice {
+    public static final int BASE = 0x10000000;
+    public static final int SIZE = 8;
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    static final int THR = 0; // transmit holding register (write), receive buffer (read)
+    static final int LSR = 5; // line status register
+    private static final int LSR_TRANSMITTER_READY = 0x60; // THR empty | transmitter empty
+
+    private static final VarHandle OVERRUNS;
+
+    static {
+        try {
+            OVERRUNS = MethodHandles.lookup().findVarHandle(Uart.class, "overruns", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ByteRingBuffer output;
+    private long overruns; // written by the simulator thread only
+
+    public Uart(int bufferSize) {
+        this.output = new ByteRingBuffer(bufferSize);
+    }
+
+    public Uart() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    // Maps the UART into the simulator's address space and returns it
+    public Uart attach(Simulator simulator) {
+        simulator.getMemory().map(BASE, SIZE, this);
+        return this;
+    }
+
+    // Transmitted bytes, to be drained by a single consumer thread
+    public ByteRingBuffer getOutput() {
+        return output;
+    }
+
+    // Bytes dropped because the output buffer was full; safe to read from any thread
+    public long getOverruns() {
+        return (long) OVERRUNS.getOpaque(this);
+    }
+
+    @Override
+    public int load(int offset, int size) {
+        if (offset == LSR) {
+            return output.hasSpace() ? LSR_TRANSMITTER_READY : 0;
+        }
+        return 0;
+    }
+
+    @Override
+    public void store(int offset, int value, int size) {
+        if (offset == THR && !output.offer((byte) value)) {
+            OVERRUNS.setOpaque(this, overruns + 1);
+        }
+    }
+}
@@ -1,8 +1,13 @@
 module com.example.ide {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.prefs;
 
 
     opens com.example.ide to javafx.fxml;
     exports com.example.ide;
+    exports com.example.ide.assembler;
+    exports com.example.ide.assembler.RISCV;
+    exports com.example.ide.disassembler;
+    exports com.example.ide.simulator;
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+package com.example.ide.assembler.RISCV;
+
+import com.example.ide.simulator.Simulator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Programs assembled with and without the PeepholeOptimizer must leave the Simulator in the same state
+class PeepholeOptimizerTest {
+    private static final long MAX_INSTRUCTIONS = 10_000;
+    private static final int DATA = 4096; // LUI X31,1: past any generated program
+    private static final String[] OPCODES = {"ADD", "SUB", "XOR", "OR", "AND", "ADDI", "XORI", "ORI", "ANDI", "LUI",
+            "LW", "LH", "LB", "SW", "SH", "SB", "FADD", "FMUL", "FMIN", "FSQRT", "BEQ", "BNE"};
+
+    @Test
+    void randomProgramsBehaveTheSame() {
+        int changed = 0;
+        for (long seed = 0; seed < 3000; seed++) {
+            String source = randomProgram(new Random(seed));
+            PeepholeOptimizer.Report report = assertSameBehaviour(source);
+            assertFalse(report.isSkipped(), () -> report.getSkipReason() + "\n" + source);
+            if (report.getInstructionsAfter() < report.getInstructionsBefore()) {
+                changed++;
+            }
+        }
+        assertTrue(changed > 100, "only " + changed + " programs were optimized");
+    }
+
+    @Test
+    void pinnedRegisterKeepsItsAddressAcrossBackEdge() {
+        PeepholeOptimizer.Report report = assertSameBehaviour("""
+                LUI X31,1
+                ADDI X7,X7,5
+                LOOP:
+                LW X1,X31,0
+                LW X1,X31,0
+                ADDI X1,X1,1
+                SW 0,X1,X31
+                ADDI X7,X7,-1
+                BNE LOOP,X7,X8
+                """);
+        assertFalse(report.isSkipped(), report.getSkipReason());
+        assertEquals(List.of("redundant"), rules(report));
+    }
+
+    @Test
+    void registerWrittenInsideTheLoopIsNotPinned() {
+        PeepholeOptimizer.Report report = assertSameBehaviour("""
+                LUI X5,1
+                ADDI X7,X7,3
+                LOOP:
+                LW X6,X5,0
+                ADDI X5,X5,4
+                ADDI X7,X7,-1
+                BNE LOOP,X7,X8
+                """);
+        assertTrue(report.isSkipped());
+    }
+
+    @Test
+    void registerWrittenAfterABranchIsNotPinned() {
+        // The branch is taken, so X5 is still 0 at SKIP and the load reads the program's own first word
+        PeepholeOptimizer.Report report = assertSameBehaviour("""
+                BEQ SKIP,X1,X2
+                LUI X5,1
+                SKIP:
+                LW X6,X5,0
+                ADDI X3,X3,0
+                """);
+        assertTrue(report.isSkipped());
+    }
+
+    @Test
+    void mergeThatWouldOverflowTwelveBitsIsKept() {
+        PeepholeOptimizer.Report report = assertSameBehaviour("""
+                ADDI X1,X1,2000
+                ADDI X1,X1,2000
+                ADDI X2,X2,1000
+                ADDI X2,X2,1000
+                """);
+        assertEquals(List.of("merged"), rules(report));
+        assertEquals(3, report.getInstructionsAfter());
+    }
+
+    @Test
+    void labelOnRemovedInstructionMovesToTheNextOne() {
+        PeepholeOptimizer.Report report = assertSameBehaviour("""
+                ADDI X1,X1,1
+                ADDI X2,X2,1
+                BEQ TARGET,X1,X2
+                ADDI X3,X3,5
+                TARGET:
+                ADDI X4,X4,0
+                ADDI X4,X4,7
+                BEQ END,X1,X2
+                ADDI X5,X5,9
+                END:
+                """);
+        assertEquals(List.of("redundant"), rules(report));
+        assertEquals(7, report.getInstructionsAfter());
+    }
+
+    @Test
+    void loadAboveRamLimitIsNeverMerged() {
+        List<AssemblerError> errors = new ArrayList<>();
+        PeepholeOptimizer.Report report = new PeepholeOptimizer.Report();
+        String source = "LUI X5," + (PeepholeOptimizer.RAM_LIMIT >> 12) + "\nLW X6,X5,0\nLW X6,X5,0\n";
+        RiscVAssembler.assembleOptimized(source, errors, report);
+        assertTrue(errors.isEmpty(), errors::toString);
+        assertFalse(report.isSkipped(), report.getSkipReason());
+        assertTrue(report.getChanges().isEmpty(), report.getChanges()::toString);
+
+        report = assertSameBehaviour("LUI X5," + ((PeepholeOptimizer.RAM_LIMIT >> 12) - 1)
+                + "\nLW X6,X5,0\nLW X6,X5,0\n");
+        assertEquals(List.of("redundant"), rules(report));
+    }
+
+    @Test
+    void fminAndFmaxIgnoreANaNOperand() {
+        // 523264 and 523265 put the canonical NaN and a NaN with a payload in X1 and X6, 260096 puts 1.0 in X2. The
+        // LUI on line 5 is redundant only if FMIN was folded to 1.0. The FMAX on line 6 runs once, interpreted; the loop
+        // runs long enough to be translated.
+        String source = """
+                LUI X1,523264
+                LUI X2,260096
+                LUI X6,523265
+                FMIN X9,X1,X2
+                LUI X9,260096
+                FMAX X10,X6,X2
+                ADDI X7,X7,200
+                LOOP:
+                FMIN X3,X1,X2
+                FMAX X4,X2,X1
+                FMIN X5,X1,X6
+                ADDI X7,X7,-1
+                BNE LOOP,X7,X8
+                """;
+        PeepholeOptimizer.Report report = assertSameBehaviour(source);
+        assertTrue(report.getChanges().stream().anyMatch(change -> change.getLine() == 5), report.getChanges()::toString);
+
+        Simulator simulator = new Simulator(RiscVAssembler.assemble(source, new ArrayList<>()));
+        simulator.run(MAX_INSTRUCTIONS);
+        assertTrue(simulator.isFinished());
+        assertEquals(0x3F800000, simulator.getRegisters()[3]);
+        assertEquals(0x3F800000, simulator.getRegisters()[4]);
+        assertEquals(0x7FC00000, simulator.getRegisters()[5]); // two NaNs give the canonical one, not a payload
+        assertEquals(0x3F800000, simulator.getRegisters()[10]);
+    }
+
+    private static PeepholeOptimizer.Report assertSameBehaviour(String source) {
+        List<AssemblerError> plainErrors = new ArrayList<>();
+        int[] plain = RiscVAssembler.assemble(source, plainErrors);
+        List<AssemblerError> optimizedErrors = new ArrayList<>();
+        PeepholeOptimizer.Report report = new PeepholeOptimizer.Report();
+        int[] optimized = RiscVAssembler.assembleOptimized(source, optimizedErrors, report);
+        assertTrue(plainErrors.isEmpty(), plainErrors::toString);
+        assertTrue(optimizedErrors.isEmpty(), optimizedErrors::toString);
+        assertNotNull(plain);
+        assertEquals(plain.length - optimized.length,
+                report.getInstructionsBefore() - report.getInstructionsAfter());
+
+        Simulator before = new Simulator(plain);
+        Simulator after = new Simulator(optimized);
+        before.run(MAX_INSTRUCTIONS);
+        after.run(MAX_INSTRUCTIONS);
+        assertEquals(before.isFinished(), after.isFinished(), source);
+        if (before.isFinished()) {
+            assertArrayEquals(before.getRegisters(), after.getRegisters(), source);
+            for (int address = DATA; address < DATA + 64; address += 4) {
+                assertEquals(before.getMemory().loadWord(address), after.getMemory().loadWord(address), source);
+            }
+        }
+        return report;
+    }
+
+    private static List<String> rules(PeepholeOptimizer.Report report) {
+        return report.getChanges().stream().map(PeepholeOptimizer.Change::getRule).distinct().toList();
+    }
+
+    // Straight-line code over six registers with forward and backward branches; memory is only reached through X31
+    private static String randomProgram(Random random) {
+        StringBuilder source = new StringBuilder("LUI X31,1\n");
+        int count = 5 + random.nextInt(40);
+        int labels = 0;
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(8) == 0) {
+                source.append('L').append(labels++).append(":\n");
+            }
+            String opcode = OPCODES[random.nextInt(OPCODES.length)];
+            int rd = 1 + random.nextInt(6);
+            int rs1 = random.nextInt(3) == 0 ? rd : 1 + random.nextInt(6);
+            int rs2 = 1 + random.nextInt(6);
+            int imm = random.nextBoolean() ? random.nextInt(5) - 2 : random.nextInt(4096) - 2048;
+            source.append(switch (opcode) {
+                case "ADDI", "XORI", "ORI", "ANDI" -> opcode + " X" + rd + ",X" + rs1 + "," + imm;
+                case "LUI" -> opcode + " X" + rd + "," + random.nextInt(3);
+                case "LW", "LH", "LB" -> opcode + " X" + rd + ",X31," + 4 * random.nextInt(4);
+                case "SW", "SH", "SB" -> opcode + " " + 4 * random.nextInt(4) + ",X" + rs1 + ",X31";
+                case "BEQ", "BNE" -> opcode + " " + (labels > 0 && random.nextBoolean() ? "L" + random.nextInt(labels)
+                        : "F" + random.nextInt(3)) + ",X" + rs1 + ",X" + rs2;
+                default -> opcode + " X" + rd + ",X" + rs1 + ",X" + rs2;
+            }).append('\n');
+        }
+        for (int i = 0; i < 3; i++) {
+            source.append('F').append(i).append(":\nADDI X7,X7,1\n");
+        }
+        return source.toString();
+    }
+}
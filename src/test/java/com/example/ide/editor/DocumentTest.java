@@ -0,0 +1,97 @@
+package com.example.ide.editor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Document and its PieceTable against a StringBuilder doing the same edits
+class DocumentTest {
+    private static final String ALPHABET = "ab\n\nxyz ";
+
+    @Test
+    void randomEditsMatchStringBuilder() {
+        for (long seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            String initial = randomText(random, random.nextInt(200));
+            Document document = new Document(initial);
+            StringBuilder expected = new StringBuilder(initial);
+            List<CharSequence> snapshots = new ArrayList<>();
+            List<String> snapshotTexts = new ArrayList<>();
+            int[] lineCount = {document.getLineCount()};
+            document.addLineChangeListener(change -> lineCount[0] += change.getAddedLines() - change.getRemovedLines());
+
+            for (int edit = 0; edit < 300; edit++) {
+                int offset = random.nextInt(expected.length() + 1);
+                int length = random.nextInt(Math.min(expected.length() - offset, 20) + 1);
+                String replacement = random.nextInt(3) == 0 ? ""
+                        : randomText(random, random.nextBoolean() ? 1 : 1 + random.nextInt(30)); // typing or pasting
+                if (length == 0 && replacement.isEmpty()) {
+                    continue;
+                }
+                document.replace(offset, length, replacement);
+                expected.replace(offset, offset + length, replacement);
+
+                assertEquals(expected.toString(), document.getText(), "seed " + seed + ", edit " + edit);
+                assertEquals(lineCount[0], document.getLineCount(), "seed " + seed + ", edit " + edit);
+                assertLines(expected.toString(), document);
+                if (edit % 25 == 0) {
+                    snapshots.add(document.snapshot());
+                    snapshotTexts.add(expected.toString());
+                }
+            }
+            for (int i = 0; i < snapshots.size(); i++) {
+                assertEquals(snapshotTexts.get(i), snapshots.get(i).toString(), "snapshot changed after later edits");
+            }
+
+            String edited = expected.toString();
+            while (document.canUndo()) {
+                document.undo();
+            }
+            assertEquals(initial, document.getText());
+            assertLines(initial, document);
+            while (document.canRedo()) {
+                document.redo();
+            }
+            assertEquals(edited, document.getText());
+            assertLines(edited, document);
+        }
+    }
+
+    @Test
+    void typingMergesIntoOneUndo() {
+        Document document = new Document("ADD X1,X2,X3\n");
+        String typed = "ADDI X4,X4,1";
+        for (int i = 0; i < typed.length(); i++) {
+            document.replace(13 + i, 0, String.valueOf(typed.charAt(i)));
+        }
+        assertEquals("ADD X1,X2,X3\nADDI X4,X4,1", document.getText());
+        document.undo();
+        assertEquals("ADD X1,X2,X3\n", document.getText());
+        assertFalse(document.canUndo());
+    }
+
+    private static void assertLines(String text, Document document) {
+        String[] lines = text.split("\n", -1);
+        assertEquals(lines.length, document.getLineCount());
+        int start = 0;
+        for (int line = 0; line < lines.length; line++) {
+            assertEquals(start, document.getLineStart(line));
+            assertEquals(lines[line], document.getLine(line));
+            assertEquals(line, document.lineOfOffset(start));
+            start += lines[line].length() + 1;
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+}